@@ -1,7 +1,12 @@
 package ch.ethz.rse;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import ch.ethz.rse.numerical.Degradation;
 import ch.ethz.rse.utils.Constants;
 
 /**
@@ -15,10 +20,27 @@ public class VerificationResult {
 	 */
 	public final boolean isSafe;
 
+	/**
+	 * Precision given up to reach this result in time (not considered by
+	 * {@link #equals(Object)})
+	 */
+	private final Set<Degradation> degradations;
+
 	// CONSTRUCTOR
 
 	public VerificationResult(boolean isSafe) {
+		this(isSafe, EnumSet.noneOf(Degradation.class));
+	}
+
+	public VerificationResult(boolean isSafe, Set<Degradation> degradations) {
 		this.isSafe = isSafe;
+		Set<Degradation> copy = EnumSet.noneOf(Degradation.class);
+		copy.addAll(degradations);
+		this.degradations = Collections.unmodifiableSet(copy);
+	}
+
+	public Set<Degradation> getDegradations() {
+		return this.degradations;
 	}
 
 	// UTILITY
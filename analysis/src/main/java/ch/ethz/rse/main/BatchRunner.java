@@ -0,0 +1,169 @@
+package ch.ethz.rse.main;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.testing.VerificationTestCaseCollector;
+import ch.ethz.rse.utils.Constants;
+import ch.ethz.rse.utils.FileUtilsWrapper;
+import ch.ethz.rse.verify.AVerifier;
+
+/**
+ * Verifies all tasks listed in a manifest in a single JVM, amortizing startup
+ * costs across tasks. The manifest is a CSV file with rows
+ * <code>packageName,property[,expected]</code>, as written by
+ * {@link VerificationTestCaseCollector#main(String[])}.
+ */
+public class BatchRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+
+	/**
+	 * Header of the manifest (skipped if present)
+	 */
+	public static final String MANIFEST_HEADER = "packageName,property,expected";
+
+	/**
+	 * Header of the produced output
+	 */
+	public static final String OUTPUT_HEADER = "packageName,property,expected,actual,comparison";
+
+	/**
+	 * Verify all tasks in the manifest, writing one line per task as soon as it
+	 * completes
+	 * 
+	 * @param manifest path to the CSV manifest
+	 * @param out      destination of the result lines
+	 * @return number of tasks whose result does not match the expected result
+	 */
+	public static int run(String manifest, PrintStream out) {
+		return BatchRunner.run(manifest, out, null);
+	}
+
+	/**
+	 * Verify all tasks in the manifest
+	 * 
+	 * @param manifest path to the CSV manifest
+	 * @param out      destination of the result lines
+	 * @param pool     workers to distribute the tasks to, or null to verify all
+	 *                 tasks in this JVM. With workers, the result lines are written
+	 *                 in manifest order once all tasks completed.
+	 * @return number of tasks whose result does not match the expected result
+	 */
+	public static int run(String manifest, PrintStream out, WorkerPool pool) {
+		List<String[]> rows = BatchRunner.readManifest(manifest);
+		out.println(OUTPUT_HEADER);
+		out.flush();
+
+		long startTime = System.nanoTime();
+		int mismatches = 0;
+		if (pool == null) {
+			for (String[] row : rows) {
+				VerificationTask t = BatchRunner.toTask(row);
+				String actual = t == null ? Constants.crash : Runner.verifyOrCrash(t);
+				mismatches += BatchRunner.report(out, row, actual);
+			}
+		} else {
+			List<VerificationTask> tasks = new ArrayList<VerificationTask>();
+			List<Integer> taskRows = new ArrayList<Integer>();
+			for (int i = 0; i < rows.size(); i++) {
+				VerificationTask t = BatchRunner.toTask(rows.get(i));
+				if (t != null) {
+					tasks.add(t);
+					taskRows.add(i);
+				}
+			}
+			String[] actual = new String[rows.size()];
+			Arrays.fill(actual, Constants.crash);
+			List<String> results = pool.verify(tasks);
+			for (int k = 0; k < results.size(); k++) {
+				actual[taskRows.get(k)] = results.get(k);
+			}
+			for (int i = 0; i < rows.size(); i++) {
+				mismatches += BatchRunner.report(out, rows.get(i), actual[i]);
+			}
+		}
+		long durationMilliseconds = (System.nanoTime() - startTime) / 1000000;
+		logger.info("Runtime: Verified {} tasks in {}ms ({} mismatches)", rows.size(), durationMilliseconds, mismatches);
+		if (pool == null && AnalysisConfiguration.isRefinement()) {
+			logger.info("Checks reaching each domain of the refinement ladder: {}", AVerifier.getRungsReached());
+		}
+
+		return mismatches;
+	}
+
+	/**
+	 * 
+	 * @return the rows <code>packageName,property,expected</code> of the manifest
+	 *         (with an empty string for missing columns)
+	 */
+	private static List<String[]> readManifest(String manifest) {
+		List<String[]> rows = new ArrayList<String[]>();
+		for (String line : FileUtilsWrapper.readFileInList(manifest)) {
+			line = line.trim();
+			if (line.isEmpty() || line.equals(MANIFEST_HEADER)) {
+				continue;
+			}
+			String[] columns = line.split(",");
+			String[] row = new String[3];
+			for (int i = 0; i < row.length; i++) {
+				row[i] = i < columns.length ? columns[i].trim() : "";
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * 
+	 * @return the task described by row, or null if row is invalid
+	 */
+	private static VerificationTask toTask(String[] row) {
+		try {
+			return new VerificationTask(row[0], VerificationProperty.valueOf(row[1]));
+		} catch (RuntimeException e) {
+			logger.error("Invalid task {},{}: {}", row[0], row[1], e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Write the result line for row
+	 * 
+	 * @return 1 if the result does not match the expected result, 0 otherwise
+	 */
+	private static int report(PrintStream out, String[] row, String actual) {
+		String comparison = BatchRunner.compare(row[2], actual);
+		out.println(String.join(",", row[0], row[1], row[2], actual, comparison));
+		out.flush();
+		return comparison.isEmpty() || comparison.equals("CORRECT") ? 0 : 1;
+	}
+
+	/**
+	 * 
+	 * @param expected expected result (may be empty)
+	 * @param actual   final output of the verification
+	 * @return outcome of comparing actual to expected (see
+	 *         {@link VerificationResult#compare(VerificationResult)})
+	 */
+	private static String compare(String expected, String actual) {
+		if (expected.isEmpty()) {
+			return "";
+		} else if (!actual.equals(Constants.safe) && !actual.equals(Constants.unsafe)) {
+			return "ERROR";
+		}
+		VerificationResult e = new VerificationResult(expected.equals(Constants.safe));
+		VerificationResult a = new VerificationResult(actual.equals(Constants.safe));
+		return a.compare(e);
+	}
+
+}
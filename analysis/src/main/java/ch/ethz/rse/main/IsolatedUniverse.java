@@ -0,0 +1,160 @@
+package ch.ethz.rse.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.numerical.ManagerPool;
+import ch.ethz.rse.utils.Constants;
+import soot.SootHelper;
+
+/**
+ * A Soot universe isolated from all other universes of the JVM.
+ *
+ * Soot keeps its whole state in static singletons (most importantly
+ * {@link soot.G}). Each universe therefore loads Soot, {@link SootHelper} and
+ * the analysis through its own class loader, so that tasks verified in
+ * different universes can run on different threads without interfering. Apron,
+ * logging and the {@link ManagerPool} are shared with the application class
+ * loader (the native Apron library can only be loaded once per JVM).
+ *
+ * A universe must only be used by one thread at a time.
+ */
+public class IsolatedUniverse implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(IsolatedUniverse.class);
+
+	/**
+	 * Classes (or package prefixes) loaded by the application class loader, and
+	 * hence shared by all universes
+	 */
+	private static final String[] SHARED = { "java.", "javax.", "sun.", "jdk.", "apron.", "gmp.", "org.slf4j.",
+			"ch.qos.logback.", ManagerPool.class.getName() };
+
+	private final IsolatingClassLoader loader;
+
+	/**
+	 * {@link VerificationDaemon#process(String)} as loaded by this universe
+	 */
+	private final Method process;
+
+	public IsolatedUniverse() {
+		this.loader = new IsolatingClassLoader(IsolatedUniverse.getClasspath(), IsolatedUniverse.class.getClassLoader());
+		try {
+			// forward the configuration of the application
+			Class<?> runner = this.loader.loadClass(Runner.class.getName());
+			runner.getMethod("applySettings", String.class).invoke(null, Runner.exportSettings());
+
+			Class<?> daemon = this.loader.loadClass(VerificationDaemon.class.getName());
+			this.process = daemon.getMethod("process", String.class);
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param request a request of the form <code>packageName property</code> (see
+	 *                {@link VerificationDaemon#toRequest})
+	 * @return the final output for the requested task
+	 */
+	public String process(String request) {
+		ClassLoader previous = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(this.loader);
+		try {
+			return (String) this.process.invoke(null, request);
+		} catch (InvocationTargetException e) {
+			logger.error("Request {} failed: {}", request, e.getCause());
+			return Constants.crash;
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} finally {
+			Thread.currentThread().setContextClassLoader(previous);
+		}
+	}
+
+	/**
+	 *
+	 * @param name fully qualified name of a class
+	 * @return the class as seen from within this universe
+	 * @throws ClassNotFoundException
+	 */
+	public Class<?> loadClass(String name) throws ClassNotFoundException {
+		return this.loader.loadClass(name);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.loader.close();
+	}
+
+	private static URL[] getClasspath() {
+		List<URL> urls = new ArrayList<URL>();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (entry.isEmpty()) {
+				continue;
+			}
+			try {
+				urls.add(new File(entry).toURI().toURL());
+			} catch (MalformedURLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return urls.toArray(new URL[0]);
+	}
+
+	/**
+	 * Class loader preferring its own classpath over its parent, except for the
+	 * classes in {@link IsolatedUniverse#SHARED}
+	 */
+	private static class IsolatingClassLoader extends URLClassLoader {
+
+		static {
+			ClassLoader.registerAsParallelCapable();
+		}
+
+		public IsolatingClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (IsolatingClassLoader.isShared(name)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (this.getClassLoadingLock(name)) {
+				Class<?> c = this.findLoadedClass(name);
+				if (c == null) {
+					try {
+						c = this.findClass(name);
+					} catch (ClassNotFoundException e) {
+						c = super.loadClass(name, false);
+					}
+				}
+				if (resolve) {
+					this.resolveClass(c);
+				}
+				return c;
+			}
+		}
+
+		private static boolean isShared(String name) {
+			for (String prefix : SHARED) {
+				if (name.startsWith(prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -1,42 +1,276 @@
 package ch.ethz.rse.main;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import ch.ethz.rse.VerificationProperty;
 import ch.ethz.rse.VerificationResult;
 import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.DeadVariables;
+import ch.ethz.rse.numerical.MethodSummaries;
+import ch.ethz.rse.numerical.NumericalDomain;
+import ch.ethz.rse.numerical.PropertySlice;
+import ch.ethz.rse.numerical.VariablePacks;
+import ch.ethz.rse.numerical.WideningThresholds;
+import ch.ethz.rse.numerical.WtoFixpoint;
+import ch.ethz.rse.pointer.PointsToInitializer;
+import ch.ethz.rse.pointer.PointsToMode;
+import ch.ethz.rse.utils.Constants;
 import org.apache.commons.cli.*;
-
-// DO NOT MODIFY THIS FILE
+import soot.SootHelper;
 
 /**
  * Entry point for verifying a given program
  */
 public class Main {
-	
-	public static void main(String[] args) throws ParseException {
+
+	public static void main(String[] args) throws ParseException, IOException {
 		// prepare parser
 		Options options = new Options();
 		// parse package name
         Option packageNameOption = new Option("n", "packageName", true, "Fully qualified name of class to check");
-        packageNameOption.setRequired(true);
         options.addOption(packageNameOption);
 		// parse property to verify
         Option propertyOption = new Option("p", "property", true, "Property to check");
-        propertyOption.setRequired(true);
 		options.addOption(propertyOption);
+		// run as daemon, serving tasks from stdin or from --port
+		options.addOption(new Option("d", "daemon", false, "Serve verification tasks until SHUTDOWN is received"));
+		// port of the daemon
+		options.addOption(new Option(null, "port", true, "Local port the daemon listens on"));
+		// verify all tasks of a manifest
+		options.addOption(new Option(null, "batch", true, "CSV manifest of tasks (packageName,property[,expected]), exiting with status 1 if a result does not match its expected result"));
+		options.addOption(new Option("o", "output", true, "File receiving the results of --batch (default: stdout)"));
+		// verify the tasks of --batch in parallel worker processes
+		options.addOption(new Option(null, "workers", true, "Number of worker processes for --batch"));
+		options.addOption(new Option(null, "timeout", true, "Time limit per task of a worker, in seconds (default: 10)"));
+		options.addOption(new Option(null, "memory", true, "Heap limit of each worker (default: 1G)"));
+		// keep the Soot Scene loaded across tasks of --daemon and --batch
+		options.addOption(new Option(null, "reuse-scene", false, "Keep library classes loaded between tasks"));
+		// do not load the Java library into Soot
+		options.addOption(new Option(null, "minimal-classpath", false, "Model all classes except the analyzed class and Frog as phantoms"));
+		// cache the Jimple of analyzed classes on disk
+		options.addOption(new Option(null, "jimple-cache", true, "Directory caching the Jimple of analyzed classes"));
+		// reuse results of earlier runs
+		options.addOption(new Option(null, "result-cache", true, "File storing verification results across runs"));
+		// degrade precision instead of exceeding a time budget
+		options.addOption(new Option(null, "budget", true, "Time budget per task in milliseconds, after which the analysis gets cheaper"));
+		// points-to analysis
+		options.addOption(new Option(null, "points-to", true, "Points-to analysis: spark (default), spark-cheap, spark-alias, type-based or intraprocedural"));
+		// numerical domain
+		options.addOption(new Option(null, "domain", true, "Numerical domain: box, octagon, polka-eq, polka-loose or polka-strict, optionally per property (e.g., NON_NEGATIVE=octagon,OVERALL_PROFIT=polka-strict). Default: polka-strict"));
+		// try cheaper domains first
+		options.addOption(new Option(null, "refine", false, "Check properties with box, then octagon, then the selected domain, until one proves them SAFE"));
+		// run cheaper domains concurrently
+		options.addOption(new Option(null, "portfolio", false, "Run box, octagon and the selected domain concurrently, stopping once one proves the property SAFE"));
+		// split the state into independent packs of variables
+		options.addOption(new Option(null, "packing", false, "Keep one abstract element per pack of related variables"));
+		// iterate in weak topological order
+		options.addOption(new Option(null, "wto", false, "Compute fixpoints in weak topological order, widening at component heads"));
+		// widen to program constants instead of infinity
+		options.addOption(new Option(null, "thresholds", false, "Widen early to constants of the program, then narrow"));
+		// only track locals relevant to the property
+		options.addOption(new Option(null, "slicing", false, "Only track locals flowing into sell arguments and branch conditions"));
+		// drop constraints on variables after their last use
+		options.addOption(new Option(null, "forget-dead", false, "Forget dead variables after their last use, so that they do not take part in joins"));
+		// analyze calls between methods of the analyzed class
+		options.addOption(new Option(null, "interprocedural", false, "Apply cached summaries at calls to other methods of the analyzed class"));
 		// build parser
 		CommandLineParser parser = new DefaultParser();
 		CommandLine cmd = parser.parse(options, args);
-		
+
+		Integer port = cmd.hasOption("port") ? Main.parsePort(cmd.getOptionValue("port"), options)
+				: VerificationClient.getPortFromEnvironment();
+
+		// configure Soot
+		if (cmd.hasOption("reuse-scene")) {
+			SootHelper.setReuseScene(true);
+		}
+		if (cmd.hasOption("minimal-classpath")) {
+			SootHelper.setMinimalClasspath(true);
+		}
+		if (cmd.hasOption("jimple-cache")) {
+			SootHelper.setJimpleCache(new File(cmd.getOptionValue("jimple-cache")));
+		}
+		if (cmd.hasOption("points-to")) {
+			PointsToInitializer.setMode(PointsToMode.fromOption(cmd.getOptionValue("points-to")));
+		}
+		if (cmd.hasOption("domain")) {
+			Main.setDomains(cmd.getOptionValue("domain"));
+		}
+		if (cmd.hasOption("refine")) {
+			AnalysisConfiguration.setRefinement(true);
+		}
+		if (cmd.hasOption("portfolio")) {
+			AnalysisConfiguration.setPortfolio(true);
+		}
+		if (cmd.hasOption("packing")) {
+			VariablePacks.setEnabled(true);
+		}
+		if (cmd.hasOption("wto")) {
+			WtoFixpoint.setEnabled(true);
+		}
+		if (cmd.hasOption("thresholds")) {
+			WideningThresholds.setEnabled(true);
+		}
+		if (cmd.hasOption("slicing")) {
+			PropertySlice.setEnabled(true);
+		}
+		if (cmd.hasOption("forget-dead")) {
+			DeadVariables.setEnabled(true);
+		}
+		if (cmd.hasOption("interprocedural")) {
+			MethodSummaries.setEnabled(true);
+		}
+		if (cmd.hasOption("budget")) {
+			// 0 disables the budget
+			Runner.setBudget(Main.parseAtLeast("budget", cmd.getOptionValue("budget"), 0, options));
+		}
+		if (cmd.hasOption("result-cache")) {
+			Runner.setResultCache(new File(cmd.getOptionValue("result-cache")));
+		}
+
+		if (cmd.hasOption("d")) {
+			if (port == null) {
+				VerificationDaemon.serve(System.in, System.out);
+			} else {
+				VerificationDaemon.listen(port);
+			}
+			return;
+		}
+		if (cmd.hasOption("batch")) {
+			WorkerPool pool = null;
+			if (cmd.hasOption("workers")) {
+				int workers = (int) Main.parseAtLeast("workers", cmd.getOptionValue("workers"), 1, options);
+				long timeout = Main.parseAtLeast("timeout", cmd.getOptionValue("timeout", "10"), 1, options) * 1000;
+				String memory = cmd.getOptionValue("memory", "1G");
+				pool = new WorkerPool(workers, timeout, memory, Main.getWorkerArgs(cmd));
+			}
+			int mismatches;
+			if (cmd.hasOption("o")) {
+				try (PrintStream out = new PrintStream(new FileOutputStream(cmd.getOptionValue("o")), true)) {
+					mismatches = BatchRunner.run(cmd.getOptionValue("batch"), out, pool);
+				}
+			} else {
+				mismatches = BatchRunner.run(cmd.getOptionValue("batch"), System.out, pool);
+			}
+			if (mismatches > 0) {
+				// let scripts and CI detect wrong results
+				System.out.flush();
+				System.exit(1);
+			}
+			return;
+		}
+		if (!cmd.hasOption("n") || !cmd.hasOption("p")) {
+			throw new MissingOptionException("Missing required options: n, p");
+		}
+
 		// prepare task
 		String packageName = cmd.getOptionValue("n");
 		String property = cmd.getOptionValue("p");
 		VerificationTask t = new VerificationTask(packageName, VerificationProperty.valueOf(property));
 
-		// run verification
-		VerificationResult result = Runner.verify(t);
+		// run verification, preferring a running daemon with the same settings
+		String output = null;
+		if (port != null) {
+			output = VerificationClient.tryVerify(port, t, VerificationClient.getDaemonTimeout());
+		}
+		if (output == null) {
+			VerificationResult result = Runner.verify(t);
+			output = result.toString();
+		}
 		System.out.flush();
 		System.err.flush();
-		System.out.println("FINAL OUTPUT:" + result.toString());
+		System.out.println(Constants.finalOutput + output);
+	}
+
+	/**
+	 * Parse the value of --port, printing the usage if it is invalid
+	 * 
+	 * @param value   value of --port
+	 * @param options all options, for the usage
+	 * @return the port
+	 * @throws ParseException if value is not a valid port
+	 */
+	private static int parsePort(String value, Options options) throws ParseException {
+		try {
+			int port = Integer.parseInt(value);
+			if (VerificationClient.isValidPort(port)) {
+				return port;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		new HelpFormatter().printHelp("analysis", options);
+		throw new ParseException("Invalid port: " + value + " (expected 1-65535)");
+	}
+
+	/**
+	 * Parse the value of a numerical option, printing the usage if it is invalid
+	 * 
+	 * @param option  name of the option
+	 * @param value   value of the option
+	 * @param min     smallest valid value
+	 * @param options all options, for the usage
+	 * @return the value
+	 * @throws ParseException if value is not a number of at least min
+	 */
+	private static long parseAtLeast(String option, String value, long min, Options options) throws ParseException {
+		try {
+			long ret = Long.parseLong(value);
+			if (ret >= min && ret <= Integer.MAX_VALUE) {
+				return ret;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		new HelpFormatter().printHelp("analysis", options);
+		throw new ParseException("Invalid --" + option + ": " + value + " (expected a number of at least " + min + ")");
+	}
+
+	/**
+	 * Apply the value of --domain
+	 * 
+	 * @param spec a domain for all properties (e.g., "box"), or a comma-separated
+	 *             list of property=domain pairs
+	 */
+	private static void setDomains(String spec) {
+		for (String entry : spec.split(",")) {
+			String[] parts = entry.split("=");
+			if (parts.length == 1) {
+				AnalysisConfiguration.setDomain(NumericalDomain.fromOption(parts[0].trim()));
+			} else {
+				AnalysisConfiguration.setDomain(VerificationProperty.valueOf(parts[0].trim()),
+						NumericalDomain.fromOption(parts[1].trim()));
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param cmd parsed command line
+	 * @return the options of <code>cmd</code> that configure the analysis itself,
+	 *         to be passed on to worker processes
+	 */
+	private static List<String> getWorkerArgs(CommandLine cmd) {
+		List<String> ignored = Arrays.asList("n", "p", "d", "port", "batch", "o", "workers", "timeout", "memory");
+		List<String> args = new ArrayList<String>();
+		for (Option option : cmd.getOptions()) {
+			String name = option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+			if (ignored.contains(name)) {
+				continue;
+			}
+			args.add(option.getLongOpt() != null ? "--" + option.getLongOpt() : "-" + option.getOpt());
+			if (option.hasArg()) {
+				args.add(option.getValue());
+			}
+		}
+		return args;
 	}
 
-}
\ No newline at end of file
+}
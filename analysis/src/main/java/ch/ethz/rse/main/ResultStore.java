@@ -0,0 +1,246 @@
+package ch.ethz.rse.main;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+
+/**
+ * Persistent store of verification results, keyed by the content hash of the
+ * verified class (see {@link ch.ethz.rse.verify.ClassToVerify#getContentHash()}),
+ * the verified property and the configuration of the analyzer (see
+ * {@link Runner#getConfigurationKey}).
+ *
+ * The store is an append-only file of fixed-size records, which is read
+ * through memory mappings. Appending takes an exclusive file lock, so several
+ * processes (e.g., the workers of a {@link WorkerPool}) can share one store.
+ * Each record carries a checksum, so that records torn by a crash are ignored.
+ * If a key was stored several times, the last record wins.
+ */
+public class ResultStore implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ResultStore.class);
+
+	/**
+	 * "RSERES01"
+	 */
+	private static final long MAGIC = 0x5253455245533031L;
+
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * class hash (32 bytes), configuration key (8), property (2), result (1),
+	 * reserved (1), CRC32 of the preceding bytes (4)
+	 */
+	private static final int RECORD_SIZE = 48;
+
+	private static final int HASH_SIZE = 32;
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	/**
+	 * All records read so far
+	 */
+	private final Map<String, Boolean> index = new HashMap<String, Boolean>();
+
+	/**
+	 * Offset up to which the file was read into {@link #index}
+	 */
+	private long scanned = HEADER_SIZE;
+
+	/**
+	 *
+	 * @param file file backing the store (created if needed)
+	 * @throws IOException if file cannot be opened or is not a result store
+	 */
+	@SuppressWarnings("try") // the lock is only held, never referenced
+	public ResultStore(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		try (FileLock lock = this.lock()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if (this.channel.size() == 0) {
+				header.putLong(MAGIC).flip();
+				this.channel.write(header, 0);
+			} else if (this.channel.read(header, 0) != HEADER_SIZE || header.getLong(0) != MAGIC) {
+				this.channel.close();
+				throw new IOException(file + " is not a result store");
+			}
+		}
+		this.refresh();
+		logger.debug("Opened result store {} with {} results", file, this.index.size());
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 *
+	 * @param classHash content hash of the verified class
+	 * @param property  verified property
+	 * @param config    configuration key of the analyzer
+	 * @return the stored result, or null if there is none
+	 */
+	public synchronized VerificationResult lookup(String classHash, VerificationProperty property, long config) {
+		String key = ResultStore.getKey(classHash, property.ordinal(), config);
+		Boolean isSafe = this.index.get(key);
+		if (isSafe == null) {
+			// other processes may have appended the result in the meantime
+			try {
+				if (this.refresh()) {
+					isSafe = this.index.get(key);
+				}
+			} catch (IOException e) {
+				logger.warn("Could not read result store {}: {}", this.file, e.toString());
+			}
+		}
+		return isSafe == null ? null : new VerificationResult(isSafe);
+	}
+
+	/**
+	 * Append a result to the store, failing silently
+	 *
+	 * @param classHash content hash of the verified class
+	 * @param property  verified property
+	 * @param config    configuration key of the analyzer
+	 * @param result    result to store
+	 */
+	@SuppressWarnings("try") // the lock is only held, never referenced
+	public synchronized void store(String classHash, VerificationProperty property, long config,
+			VerificationResult result) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.put(ResultStore.fromHex(classHash));
+		record.putLong(config);
+		record.putShort((short) property.ordinal());
+		record.put((byte) (result.isSafe ? 1 : 0));
+		record.put((byte) 0);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, record.position());
+		record.putInt((int) crc.getValue());
+		record.flip();
+
+		try (FileLock lock = this.lock()) {
+			// skip a record torn by a crashed writer
+			long position = ResultStore.alignToRecord(this.channel.size());
+			while (record.hasRemaining()) {
+				position += this.channel.write(record, position);
+			}
+		} catch (IOException e) {
+			logger.warn("Could not append to result store {}: {}", this.file, e.toString());
+			return;
+		}
+		this.index.put(ResultStore.getKey(classHash, property.ordinal(), config), result.isSafe);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Read all records appended since the last call
+	 *
+	 * @return true if new records were found
+	 * @throws IOException
+	 */
+	private boolean refresh() throws IOException {
+		long end = ResultStore.alignToRecord(this.channel.size());
+		if (end <= this.scanned) {
+			return false;
+		}
+		MappedByteBuffer records = this.channel.map(FileChannel.MapMode.READ_ONLY, this.scanned, end - this.scanned);
+		byte[] record = new byte[RECORD_SIZE];
+		int torn = 0;
+		while (records.remaining() >= RECORD_SIZE) {
+			records.get(record);
+			ByteBuffer r = ByteBuffer.wrap(record);
+			CRC32 crc = new CRC32();
+			crc.update(record, 0, RECORD_SIZE - 4);
+			if ((int) crc.getValue() != r.getInt(RECORD_SIZE - 4)) {
+				torn++;
+				continue;
+			}
+			String classHash = ResultStore.toHex(record, 0, HASH_SIZE);
+			long config = r.getLong(HASH_SIZE);
+			short property = r.getShort(HASH_SIZE + 8);
+			boolean isSafe = r.get(HASH_SIZE + 10) != 0;
+			this.index.put(ResultStore.getKey(classHash, property, config), isSafe);
+		}
+		if (torn > 0) {
+			logger.warn("Ignored {} corrupted records in result store {}", torn, this.file);
+		}
+		this.scanned = end;
+		return true;
+	}
+
+	/**
+	 * Lock the whole file. Retries if the file is already locked by a different
+	 * store in this JVM (e.g., in a different {@link IsolatedUniverse}).
+	 *
+	 * @return the lock
+	 * @throws IOException
+	 */
+	private FileLock lock() throws IOException {
+		while (true) {
+			try {
+				return this.channel.lock();
+			} catch (OverlappingFileLockException e) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new IOException(ie);
+				}
+			}
+		}
+	}
+
+	private static long alignToRecord(long size) {
+		if (size < HEADER_SIZE) {
+			return HEADER_SIZE;
+		}
+		return HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+	}
+
+	private static String getKey(String classHash, int property, long config) {
+		return classHash + ":" + property + ":" + config;
+	}
+
+	private static byte[] fromHex(String hex) {
+		if (hex.length() != 2 * HASH_SIZE) {
+			throw new IllegalArgumentException("Expected SHA-256 hash, got " + hex);
+		}
+		byte[] ret = new byte[HASH_SIZE];
+		for (int i = 0; i < HASH_SIZE; i++) {
+			ret[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return ret;
+	}
+
+	private static String toHex(byte[] bytes, int offset, int length) {
+		StringBuilder ret = new StringBuilder();
+		for (int i = offset; i < offset + length; i++) {
+			ret.append(String.format("%02x", bytes[i]));
+		}
+		return ret.toString();
+	}
+
+}
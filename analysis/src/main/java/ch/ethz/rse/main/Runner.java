@@ -1,7 +1,50 @@
 package ch.ethz.rse.main;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ch.ethz.rse.VerificationProperty;
 import ch.ethz.rse.VerificationTask;
 import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.DeadVariables;
+import ch.ethz.rse.numerical.MethodSummaries;
+import ch.ethz.rse.numerical.NumericalDomain;
+import ch.ethz.rse.numerical.PropertySlice;
+import ch.ethz.rse.numerical.VariablePacks;
+import ch.ethz.rse.numerical.WideningThresholds;
+import ch.ethz.rse.numerical.WtoFixpoint;
+import ch.ethz.rse.pointer.PointsToInitializer;
+import ch.ethz.rse.pointer.PointsToMode;
+import ch.ethz.rse.utils.Constants;
+import ch.ethz.rse.utils.Deadline;
 import ch.ethz.rse.verify.AVerifier;
 import ch.ethz.rse.verify.ClassToVerify;
 import ch.ethz.rse.verify.Verifier;
@@ -16,11 +59,99 @@ import soot.SootHelper;
 public class Runner {
 	
 	private static final Logger logger = LoggerFactory.getLogger(Runner.class);
-	
+
+	/**
+	 * If set, {@link #verify(VerificationTask)} reuses results of earlier runs
+	 */
+	private static ResultStore resultStore = null;
+
+	/**
+	 * Time budget of each verification in milliseconds (0 for no budget)
+	 */
+	private static long budget = 0;
+
+	/**
+	 * Hash of the analyzer code, see {@link #getAnalyzerVersion()}
+	 */
+	private static String analyzerVersion = null;
+
+	/**
+	 * Hash of the Frog class of each class path, see
+	 * {@link #describeConfiguration(ClassToVerify)}
+	 */
+	private static final Map<File, String> frogHashes = new ConcurrentHashMap<File, String>();
+
+	/**
+	 * Configuration key of each class path and description of the settings, see
+	 * {@link #getConfigurationKey(ClassToVerify)}
+	 */
+	private static final Map<String, Long> configurationKeys = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Enable or disable the persistent result cache
+	 * 
+	 * @param file file backing the {@link ResultStore}, or null to disable caching
+	 */
+	public static synchronized void setResultCache(File file) {
+		if (resultStore != null) {
+			try {
+				resultStore.close();
+			} catch (IOException e) {
+				logger.warn("Could not close result store: {}", e.toString());
+			}
+			resultStore = null;
+		}
+		if (file != null) {
+			try {
+				resultStore = new ResultStore(file);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	public static File getResultCache() {
+		return resultStore == null ? null : resultStore.getFile();
+	}
+
+	/**
+	 * Set the time budget of each verification, including loading the class. If
+	 * the budget is about to run out, the analysis degrades its precision (see
+	 * {@link AVerifier#setDeadline(Deadline)}).
+	 * 
+	 * @param millis budget in milliseconds, or 0 for no budget
+	 */
+	public static void setBudget(long millis) {
+		Runner.budget = millis;
+	}
+
+	public static long getBudget() {
+		return Runner.budget;
+	}
+
 	public static VerificationResult verify(VerificationTask t) {
 		long startTime = System.nanoTime();
+		Deadline deadline = Runner.newDeadline();
 
-		VerificationResult ret = Runner.verifyInternal(t);
+		ResultStore store = resultStore;
+		VerificationResult ret = null;
+		String classHash = null;
+		long config = 0;
+		if (store != null) {
+			classHash = t.getTestClass().getContentHash();
+			config = Runner.getConfigurationKey(t.getTestClass());
+			ret = store.lookup(classHash, t.property, config);
+			if (ret != null) {
+				logger.debug("Found cached result for {}", t);
+			}
+		}
+		if (ret == null) {
+			ret = Runner.verifyInternal(t, deadline);
+			// degraded results depend on timing, so do not reuse them
+			if (store != null && ret.getDegradations().isEmpty()) {
+				store.store(classHash, t.property, config, ret);
+			}
+		}
 
 		long endTime = System.nanoTime();
 		long durationMilliseconds = (endTime - startTime) / 1000000;
@@ -29,7 +160,329 @@ public class Runner {
 		return ret;
 	}
 
-	private static VerificationResult verifyInternal(VerificationTask t) {
+	/**
+	 * Like {@link #verify(VerificationTask)}, but reports failures as
+	 * {@link Constants#crash} instead of propagating them (needed when verifying
+	 * several tasks in one JVM)
+	 * 
+	 * @param t task to verify
+	 * @return the final output for t
+	 */
+	public static String verifyOrCrash(VerificationTask t) {
+		try {
+			return Runner.verify(t).toString();
+		} catch (RuntimeException | AssertionError e) {
+			logger.error("Verification of {} failed: {}", t, e);
+			return Constants.crash;
+		}
+	}
+
+	/**
+	 * Verify all {@link VerificationProperty}s of a class, loading and analyzing it
+	 * only once (see {@link AVerifier#checkAll()})
+	 * 
+	 * @param tc class to verify
+	 * @return the result for each property
+	 */
+	public static Map<VerificationProperty, VerificationResult> verifyAll(ClassToVerify tc) {
+		long startTime = System.nanoTime();
+		logger.debug("Verifying all properties of {}", tc);
+
+		Deadline deadline = Runner.newDeadline();
+		SootClass c = SootHelper.loadClassAndAnalyze(tc);
+		AVerifier v = new Verifier(c);
+		v.setDeadline(deadline);
+		Map<VerificationProperty, VerificationResult> ret = new EnumMap<VerificationProperty, VerificationResult>(
+				VerificationProperty.class);
+		for (Map.Entry<VerificationProperty, Boolean> e : v.checkAll().entrySet()) {
+			ret.put(e.getKey(), new VerificationResult(e.getValue(), v.getDegradations()));
+		}
+
+		long endTime = System.nanoTime();
+		long durationMilliseconds = (endTime - startTime) / 1000000;
+		logger.debug("Runtime: Verified all properties of {} in {}ms", tc, durationMilliseconds);
+
+		return ret;
+	}
+
+	/**
+	 * Verify several tasks in parallel threads of this JVM, each thread using its
+	 * own {@link IsolatedUniverse}
+	 * 
+	 * @param tasks     tasks to verify
+	 * @param universes number of universes (and threads) to use
+	 * @return the final output for each task, in the order of tasks
+	 */
+	public static List<String> verifyIsolated(List<VerificationTask> tasks, int universes) {
+		long startTime = System.nanoTime();
+
+		BlockingQueue<IsolatedUniverse> idle = new LinkedBlockingQueue<IsolatedUniverse>();
+		for (int i = 0; i < universes; i++) {
+			idle.add(new IsolatedUniverse());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(universes);
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>();
+			for (VerificationTask t : tasks) {
+				String request = VerificationDaemon.toRequest(t);
+				futures.add(executor.submit(() -> {
+					IsolatedUniverse universe = idle.take();
+					try {
+						return universe.process(request);
+					} finally {
+						idle.add(universe);
+					}
+				}));
+			}
+			List<String> ret = new ArrayList<String>();
+			for (Future<String> f : futures) {
+				ret.add(f.get());
+			}
+
+			long endTime = System.nanoTime();
+			long durationMilliseconds = (endTime - startTime) / 1000000;
+			logger.debug("Runtime: Verified {} tasks in {} universes in {}ms", tasks.size(), universes,
+					durationMilliseconds);
+
+			return ret;
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			// stop tasks waiting for a universe, and let running tasks finish before
+			// closing the universes they use
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (IsolatedUniverse universe : idle) {
+				try {
+					universe.close();
+				} catch (IOException e) {
+					logger.warn("Could not close universe: {}", e.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Describe everything (except the verified class and property) that may
+	 * influence the result of verifying a class. Results verified under different
+	 * descriptions are never mixed up by the {@link ResultStore}.
+	 * 
+	 * @param tc class to verify
+	 * @return the description
+	 */
+	public static String describeConfiguration(ClassToVerify tc) {
+		return "analyzer=" + Runner.getAnalyzerVersion() + ";frog=" + Runner.getFrogHash(tc.getClassPath()) + ";"
+				+ Runner.describeSettings();
+	}
+
+	/**
+	 * 
+	 * @return the settings of the analyzer that may influence verification results
+	 */
+	public static String describeSettings() {
+		return "minimalClasspath=" + SootHelper.isMinimalClasspath() + ";pointsTo=" + PointsToInitializer.getMode()
+				+ ";interprocedural=" + MethodSummaries.isEnabled() + ";domains=" + Runner.describeDomains()
+				+ ";refinement=" + AnalysisConfiguration.isRefinement() + ";portfolio="
+				+ AnalysisConfiguration.isPortfolio() + ";packing=" + VariablePacks.isEnabled()
+				+ ";wto=" + WtoFixpoint.isEnabled() + ";thresholds=" + WideningThresholds.isEnabled() + ";slicing="
+				+ PropertySlice.isEnabled() + ";forgetDead=" + DeadVariables.isEnabled();
+	}
+
+	/**
+	 * 
+	 * @return all settings of the analyzer, including those that do not influence
+	 *         results, in the form accepted by {@link #applySettings(String)}
+	 */
+	public static String exportSettings() {
+		return Runner.describeSettings() + ";reuseScene=" + SootHelper.isReuseScene() + ";jimpleCache="
+				+ Runner.describePath(SootHelper.getJimpleCache()) + ";resultCache="
+				+ Runner.describePath(Runner.getResultCache()) + ";budget=" + Runner.getBudget();
+	}
+
+	/**
+	 * Apply settings exported by {@link #exportSettings()}, e.g., by another class
+	 * loader (see {@link IsolatedUniverse})
+	 * 
+	 * @param settings semicolon-separated list of key=value pairs
+	 */
+	public static void applySettings(String settings) {
+		for (String entry : settings.split(";")) {
+			int split = entry.indexOf('=');
+			String key = entry.substring(0, split);
+			String value = entry.substring(split + 1);
+			switch (key) {
+			case "minimalClasspath":
+				SootHelper.setMinimalClasspath(Boolean.parseBoolean(value));
+				break;
+			case "pointsTo":
+				PointsToInitializer.setMode(PointsToMode.valueOf(value));
+				break;
+			case "interprocedural":
+				MethodSummaries.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "domains":
+				for (String domain : value.split(",")) {
+					String[] parts = domain.split(":");
+					AnalysisConfiguration.setDomain(VerificationProperty.valueOf(parts[0]),
+							NumericalDomain.valueOf(parts[1]));
+				}
+				break;
+			case "refinement":
+				AnalysisConfiguration.setRefinement(Boolean.parseBoolean(value));
+				break;
+			case "portfolio":
+				AnalysisConfiguration.setPortfolio(Boolean.parseBoolean(value));
+				break;
+			case "packing":
+				VariablePacks.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "wto":
+				WtoFixpoint.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "thresholds":
+				WideningThresholds.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "slicing":
+				PropertySlice.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "forgetDead":
+				DeadVariables.setEnabled(Boolean.parseBoolean(value));
+				break;
+			case "reuseScene":
+				SootHelper.setReuseScene(Boolean.parseBoolean(value));
+				break;
+			case "jimpleCache":
+				SootHelper.setJimpleCache(value.isEmpty() ? null : new File(value));
+				break;
+			case "resultCache":
+				if (!value.equals(Runner.describePath(Runner.getResultCache()))) {
+					Runner.setResultCache(value.isEmpty() ? null : new File(value));
+				}
+				break;
+			case "budget":
+				Runner.setBudget(Long.parseLong(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown setting " + entry);
+			}
+		}
+	}
+
+	private static String describePath(File file) {
+		return file == null ? "" : file.getAbsolutePath();
+	}
+
+	/**
+	 * 
+	 * @param classPath class path containing the Frog class
+	 * @return hash of the Frog class, computed once per class path
+	 */
+	private static String getFrogHash(File classPath) {
+		return frogHashes.computeIfAbsent(classPath.getAbsoluteFile(), cp -> {
+			try {
+				return new ClassToVerify(cp, Constants.FrogClassName).getContentHash();
+			} catch (FileNotFoundException e) {
+				return "missing";
+			}
+		});
+	}
+
+	private static String describeDomains() {
+		StringBuilder ret = new StringBuilder();
+		for (VerificationProperty p : VerificationProperty.values()) {
+			if (ret.length() > 0) {
+				ret.append(',');
+			}
+			ret.append(p).append(':').append(AnalysisConfiguration.getDomain(p));
+		}
+		return ret.toString();
+	}
+
+	/**
+	 * 
+	 * @param tc class to verify
+	 * @return a key identifying {@link #describeConfiguration(ClassToVerify)},
+	 *         computed once per class path and settings
+	 */
+	public static long getConfigurationKey(ClassToVerify tc) {
+		String settings = tc.getClassPath().getAbsolutePath() + "\n" + Runner.describeSettings();
+		return configurationKeys.computeIfAbsent(settings, k -> {
+			try {
+				byte[] digest = MessageDigest.getInstance("SHA-256")
+						.digest(Runner.describeConfiguration(tc).getBytes(StandardCharsets.UTF_8));
+				return ByteBuffer.wrap(digest).getLong();
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @return a hash of the class files of the analyzer (in the jar or class
+	 *         directory containing this class), so that changing the analyzer
+	 *         invalidates cached results while rebuilding unchanged code does not
+	 */
+	private static synchronized String getAnalyzerVersion() {
+		if (analyzerVersion != null) {
+			return analyzerVersion;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			Path location = Paths.get(Runner.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isDirectory(location)) {
+				List<Path> files;
+				try (Stream<Path> walk = Files.walk(location)) {
+					files = walk.filter(f -> f.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+				}
+				for (Path f : files) {
+					String name = location.relativize(f).toString().replace(File.separatorChar, '/');
+					digest.update(name.getBytes(StandardCharsets.UTF_8));
+					digest.update(Files.readAllBytes(f));
+				}
+			} else {
+				// hash only the entries, as the jar itself contains timestamps
+				try (JarFile jar = new JarFile(location.toFile())) {
+					List<JarEntry> entries = jar.stream().filter(e -> e.getName().endsWith(".class"))
+							.sorted(Comparator.comparing(JarEntry::getName)).collect(Collectors.toList());
+					byte[] buffer = new byte[4096];
+					for (JarEntry e : entries) {
+						digest.update(e.getName().getBytes(StandardCharsets.UTF_8));
+						try (InputStream in = jar.getInputStream(e)) {
+							int n;
+							while ((n = in.read(buffer)) != -1) {
+								digest.update(buffer, 0, n);
+							}
+						}
+					}
+				}
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			analyzerVersion = hex.toString();
+			logger.debug("Analyzer version: {}", analyzerVersion);
+			return analyzerVersion;
+		} catch (IOException | URISyntaxException | NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the deadline of a verification starting now, according to the
+	 *         budget (see {@link #setBudget(long)})
+	 */
+	public static Deadline newDeadline() {
+		return Runner.budget > 0 ? Deadline.after(Runner.budget) : Deadline.NONE;
+	}
+
+	private static VerificationResult verifyInternal(VerificationTask t, Deadline deadline) {
 		logger.debug("Verifying {}", t.toString());
 
 		ClassToVerify tc = t.getTestClass();
@@ -40,8 +493,9 @@ public class Runner {
 		VerificationResult ret;
 
 		AVerifier v = new Verifier(c);
+		v.setDeadline(deadline);
 		boolean isSafe = v.check(t.property);
-		ret = new VerificationResult(isSafe);
+		ret = new VerificationResult(isSafe, v.getDegradations());
 
 		return ret;
 	}
@@ -0,0 +1,128 @@
+package ch.ethz.rse.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Thin client forwarding a {@link VerificationTask} to a running
+ * {@link VerificationDaemon}
+ */
+public class VerificationClient {
+
+	private static final Logger logger = LoggerFactory.getLogger(VerificationClient.class);
+
+	/**
+	 * Environment variable holding the daemon port, used if no port is passed
+	 * explicitly (allows using the daemon through run.sh)
+	 */
+	public static final String PORT_VARIABLE = "RSE_DAEMON_PORT";
+
+	/**
+	 * Time limit of a run (see run.sh), in milliseconds
+	 */
+	public static final int RUN_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * 
+	 * @return the time a daemon is given to answer, in milliseconds: a third of
+	 *         what remains of {@link #RUN_TIMEOUT_MILLIS}, so that verifying
+	 *         locally after giving up on the daemon still fits in the run
+	 */
+	public static int getDaemonTimeout() {
+		long elapsed = ManagementFactory.getRuntimeMXBean().getUptime();
+		return (int) Math.max(0, (RUN_TIMEOUT_MILLIS - elapsed) / 3);
+	}
+
+	/**
+	 * 
+	 * @param port          port of the daemon
+	 * @param t             task to verify, with the settings of this process
+	 * @param timeoutMillis time the daemon is given to accept and answer the
+	 *                      request
+	 * @return the final output computed by the daemon, or null if no daemon with
+	 *         the same settings could answer the request in time
+	 */
+	public static String tryVerify(int port, VerificationTask t, int timeoutMillis) {
+		if (timeoutMillis <= 0) {
+			// a zero socket timeout would wait forever
+			logger.debug("No time left to ask the daemon");
+			return null;
+		}
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+			socket.setSoTimeout(timeoutMillis);
+			PrintWriter writer = new PrintWriter(
+					new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+			writer.println(VerificationDaemon.toRequest(t, Runner.describeSettings()));
+			String line = reader.readLine();
+			if (line != null && line.startsWith(VerificationDaemon.SETTINGS_MISMATCH)) {
+				logger.warn("Daemon on port {} runs with other settings ({}), verifying locally", port,
+						line.substring(VerificationDaemon.SETTINGS_MISMATCH.length()));
+				return null;
+			} else if (line == null || !line.startsWith(Constants.finalOutput)) {
+				logger.warn("Unexpected answer from daemon: {}", line);
+				return null;
+			}
+			return line.substring(Constants.finalOutput.length());
+		} catch (ConnectException e) {
+			logger.debug("No daemon listening on port {}", port);
+			return null;
+		} catch (SocketTimeoutException e) {
+			logger.warn("Daemon on port {} did not answer within {}ms", port, timeoutMillis);
+			return null;
+		} catch (IOException e) {
+			logger.warn("Communication with daemon failed: {}", e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * 
+	 * @param port
+	 * @return true if port can be listened on or connected to
+	 */
+	public static boolean isValidPort(int port) {
+		return port > 0 && port <= 65535;
+	}
+
+	/**
+	 * 
+	 * @return the port configured through {@link #PORT_VARIABLE}, or null
+	 */
+	public static Integer getPortFromEnvironment() {
+		String port = System.getenv(PORT_VARIABLE);
+		if (port == null || port.isEmpty()) {
+			return null;
+		}
+		try {
+			Integer ret = Integer.valueOf(port);
+			if (VerificationClient.isValidPort(ret)) {
+				return ret;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		logger.warn("Ignoring invalid {}={}", PORT_VARIABLE, port);
+		return null;
+	}
+
+}
@@ -0,0 +1,151 @@
+package ch.ethz.rse.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Long-lived verification process, which avoids paying for JVM startup, native
+ * library loading and JIT warm-up on every {@link VerificationTask}.
+ * 
+ * Requests are read line by line, each of the form
+ * <code>packageName property [settings]</code>, and are answered by a single
+ * line <code>FINAL OUTPUT:result</code>. Requests are handled one at a time, as
+ * Soot relies on global state.
+ * 
+ * The optional settings are those of the client (see
+ * {@link Runner#describeSettings()}). If they differ from the settings of the
+ * daemon, the request is answered by <code>SETTINGS MISMATCH:settings</code>
+ * instead, as the daemon could compute another result than the client.
+ */
+public class VerificationDaemon {
+
+	private static final Logger logger = LoggerFactory.getLogger(VerificationDaemon.class);
+
+	/**
+	 * Request that stops the daemon
+	 */
+	public static final String SHUTDOWN = "SHUTDOWN";
+
+	/**
+	 * Prefix of the answer to a request sent with other settings than those of the
+	 * daemon
+	 */
+	public static final String SETTINGS_MISMATCH = "SETTINGS MISMATCH:";
+
+	/**
+	 * Serve requests arriving on a local socket until {@link #SHUTDOWN} is received
+	 * 
+	 * @param port port to listen on (loopback only)
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public static void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+			logger.info("Listening for verification tasks on port {}", port);
+			boolean running = true;
+			while (running) {
+				try (Socket socket = server.accept()) {
+					running = VerificationDaemon.serve(socket.getInputStream(), socket.getOutputStream());
+				} catch (IOException e) {
+					logger.error("Connection failed: {}", e.toString());
+				}
+			}
+		}
+		logger.info("Daemon stopped");
+	}
+
+	/**
+	 * Serve requests from <code>in</code> until it is closed or {@link #SHUTDOWN}
+	 * is received. Note that when serving stdin, the console log is interleaved
+	 * with the answers, so clients should only consider lines starting with
+	 * {@link Constants#finalOutput}.
+	 * 
+	 * @param in  source of requests
+	 * @param out destination of answers
+	 * @return false if {@link #SHUTDOWN} was requested
+	 * @throws IOException
+	 */
+	public static boolean serve(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			} else if (line.equals(SHUTDOWN)) {
+				return false;
+			}
+			String settings = Runner.describeSettings();
+			String[] parts = line.split("\\s+");
+			if (parts.length == 3 && !parts[2].equals(settings)) {
+				logger.warn("Rejecting {}: daemon runs with {}", line, settings);
+				writer.println(SETTINGS_MISMATCH + settings);
+				continue;
+			}
+			String output = VerificationDaemon.process(line);
+			writer.println(Constants.finalOutput + output);
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param request a request of the form
+	 *                <code>packageName property [settings]</code>, whose settings
+	 *                have already been checked
+	 * @return the final output for the requested task
+	 */
+	public static String process(String request) {
+		String[] parts = request.split("\\s+");
+		if (parts.length != 2 && parts.length != 3) {
+			logger.error("Malformed request: {}", request);
+			return Constants.crash;
+		}
+		VerificationTask t;
+		try {
+			t = new VerificationTask(parts[0], VerificationProperty.valueOf(parts[1]));
+		} catch (RuntimeException e) {
+			logger.error("Invalid request {}: {}", request, e.toString());
+			return Constants.crash;
+		}
+		return Runner.verifyOrCrash(t);
+	}
+
+	/**
+	 * 
+	 * @param t task to send
+	 * @return the request line describing t
+	 */
+	public static String toRequest(VerificationTask t) {
+		return t.getTestClass().getPackageName() + " " + t.property.toString();
+	}
+
+	/**
+	 * 
+	 * @param t        task to send
+	 * @param settings settings the task must be verified with
+	 * @return the request line describing t, which the daemon rejects if it runs
+	 *         with other settings
+	 */
+	public static String toRequest(VerificationTask t, String settings) {
+		return VerificationDaemon.toRequest(t) + " " + settings;
+	}
+
+}
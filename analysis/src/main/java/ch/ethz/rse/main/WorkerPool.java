@@ -0,0 +1,314 @@
+package ch.ethz.rse.main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Verifies many {@link VerificationTask}s in parallel using a pool of worker
+ * JVMs, each running a {@link VerificationDaemon} on its stdin. Soot relies on
+ * global state, so separate processes are the only safe way to run tasks in
+ * parallel.
+ * 
+ * Tasks are distributed round-robin, and idle workers steal tasks from the
+ * other workers. As in run.sh, each task gets a time limit and each worker a
+ * memory limit. A worker exceeding the time limit is killed (reporting
+ * {@link Constants#timeout}), a worker dying reports {@link Constants#crash},
+ * and both are replaced by a fresh worker. A worker answering
+ * {@link Constants#crash} itself (e.g., the analysis threw) is still healthy
+ * and keeps serving tasks.
+ */
+public class WorkerPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+	/**
+	 * number of worker processes
+	 */
+	private final int size;
+
+	/**
+	 * time limit per task, in milliseconds
+	 */
+	private final long timeoutMillis;
+
+	/**
+	 * maximum heap size of each worker, e.g. "1G"
+	 */
+	private final String memory;
+
+	/**
+	 * additional arguments passed to {@link Main} in each worker
+	 */
+	private final List<String> workerArgs;
+
+	/**
+	 * 
+	 * @param size          number of worker processes
+	 * @param timeoutMillis time limit per task, in milliseconds
+	 * @param memory        maximum heap size of each worker, e.g. "1G"
+	 * @param workerArgs    additional arguments passed to {@link Main} in each
+	 *                      worker
+	 */
+	public WorkerPool(int size, long timeoutMillis, String memory, List<String> workerArgs) {
+		assert size >= 1 : "a pool needs at least one worker";
+		assert timeoutMillis > 0;
+		this.size = size;
+		this.timeoutMillis = timeoutMillis;
+		this.memory = memory;
+		this.workerArgs = workerArgs;
+	}
+
+	/**
+	 * 
+	 * @param tasks tasks to verify
+	 * @return the final output for each task, in the order of <code>tasks</code>
+	 */
+	public List<String> verify(List<VerificationTask> tasks) {
+		List<String> requests = new ArrayList<String>(tasks.size());
+		for (VerificationTask t : tasks) {
+			requests.add(VerificationDaemon.toRequest(t));
+		}
+		return this.verifyRequests(requests);
+	}
+
+	/**
+	 * 
+	 * @param requests requests to send to the workers (see
+	 *                 {@link VerificationDaemon})
+	 * @return the final output for each request, in the order of
+	 *         <code>requests</code>
+	 */
+	List<String> verifyRequests(List<String> requests) {
+		long startTime = System.nanoTime();
+
+		String[] results = new String[requests.size()];
+
+		// distribute tasks round-robin
+		List<LinkedBlockingDeque<Integer>> queues = new ArrayList<LinkedBlockingDeque<Integer>>();
+		for (int w = 0; w < this.size; w++) {
+			queues.add(new LinkedBlockingDeque<Integer>());
+		}
+		for (int i = 0; i < requests.size(); i++) {
+			queues.get(i % this.size).addLast(i);
+		}
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int w = 0; w < this.size; w++) {
+			final int self = w;
+			Thread thread = new Thread(() -> this.runWorker(self, queues, requests, results), "worker-" + w);
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		// a worker thread that died left its remaining results unset
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				results[i] = Constants.crash;
+			}
+		}
+
+		long durationMilliseconds = (System.nanoTime() - startTime) / 1000000;
+		logger.info("Runtime: Verified {} tasks on {} workers in {}ms", requests.size(), this.size,
+				durationMilliseconds);
+
+		return Arrays.asList(results);
+	}
+
+	private void runWorker(int self, List<LinkedBlockingDeque<Integer>> queues, List<String> requests,
+			String[] results) {
+		Worker worker = null;
+		try {
+			Integer next;
+			while ((next = WorkerPool.nextTask(self, queues)) != null) {
+				String request = requests.get(next);
+				String result;
+				boolean broken = false;
+				try {
+					if (worker == null) {
+						worker = this.startWorker();
+					}
+					result = worker.verify(request, this.timeoutMillis);
+					broken = result.equals(Constants.timeout) || worker.hasExited();
+				} catch (RuntimeException e) {
+					logger.error("Task {} crashed worker {}: {}", request, self, e.toString());
+					result = Constants.crash;
+					broken = true;
+				}
+				if (result.equals(Constants.timeout) || result.equals(Constants.crash)) {
+					logger.warn("Task {} failed on worker {}: {}", request, self, result);
+				}
+				if (broken && worker != null) {
+					// worker state is unknown, start from scratch for the next task
+					worker.kill();
+					worker = null;
+				}
+				results[next] = result;
+			}
+		} finally {
+			if (worker != null) {
+				worker.stop();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return the next task of worker <code>self</code>, stealing from the back of
+	 *         the other queues if its own queue is empty, or null if there is no
+	 *         task left
+	 */
+	private static Integer nextTask(int self, List<LinkedBlockingDeque<Integer>> queues) {
+		Integer next = queues.get(self).pollFirst();
+		for (int k = 1; next == null && k < queues.size(); k++) {
+			next = queues.get((self + k) % queues.size()).pollLast();
+		}
+		return next;
+	}
+
+	/**
+	 * 
+	 * @return the command starting a worker, which serves requests on its stdin
+	 */
+	List<String> workerCommand() {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.add("-enableassertions");
+		command.add("-Xmx" + this.memory);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Main.class.getName());
+		command.add("--daemon");
+		command.addAll(this.workerArgs);
+		return command;
+	}
+
+	private Worker startWorker() {
+		List<String> command = this.workerCommand();
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		try {
+			return new Worker(builder.start());
+		} catch (IOException e) {
+			throw new RuntimeException("Could not start worker " + command, e);
+		}
+	}
+
+	/**
+	 * Handle to a single worker process
+	 */
+	private static class Worker {
+
+		private final Process process;
+
+		private final PrintWriter requests;
+
+		/**
+		 * Marks the end of the output in {@link #answers}. Compared by identity, so
+		 * that it differs from a {@link Constants#crash} answered by the worker.
+		 */
+		private static final String EXITED = new String(Constants.crash);
+
+		/**
+		 * answers of the worker, with {@link #EXITED} marking its end
+		 */
+		private final BlockingQueue<String> answers = new LinkedBlockingQueue<String>();
+
+		/**
+		 * Set once {@link #verify} received {@link #EXITED}
+		 */
+		private boolean exited = false;
+
+		Worker(Process process) {
+			this.process = process;
+			this.requests = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8),
+					true);
+
+			// the console log is interleaved with the answers, so keep reading
+			Thread reader = new Thread(() -> {
+				try (BufferedReader r = new BufferedReader(
+						new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = r.readLine()) != null) {
+						if (line.startsWith(Constants.finalOutput)) {
+							this.answers.add(line.substring(Constants.finalOutput.length()));
+						}
+					}
+				} catch (IOException e) {
+					logger.debug("Lost connection to worker: {}", e.toString());
+				}
+				this.answers.add(EXITED);
+			});
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		String verify(String request, long timeoutMillis) {
+			this.requests.println(request);
+			try {
+				String answer = this.answers.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+				if (answer == EXITED) {
+					this.exited = true;
+				}
+				return answer == null ? Constants.timeout : answer;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return Constants.crash;
+			}
+		}
+
+		/**
+		 * 
+		 * @return true if the worker process ended (its answers then report
+		 *         {@link Constants#crash})
+		 */
+		boolean hasExited() {
+			return this.exited || !this.process.isAlive();
+		}
+
+		void kill() {
+			this.requests.close();
+			this.process.destroyForcibly();
+		}
+
+		void stop() {
+			this.requests.println(VerificationDaemon.SHUTDOWN);
+			this.requests.close();
+			try {
+				if (!this.process.waitFor(1, TimeUnit.SECONDS)) {
+					this.process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				this.process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
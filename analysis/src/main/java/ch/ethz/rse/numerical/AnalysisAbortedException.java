@@ -0,0 +1,15 @@
+package ch.ethz.rse.numerical;
+
+/**
+ * Thrown by {@link NumericalAnalysis} when its deadline expires or its thread is
+ * interrupted
+ */
+public class AnalysisAbortedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public AnalysisAbortedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,261 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.utils.Deadline;
+
+/**
+ * Settings of a {@link NumericalAnalysis}, trading precision for speed
+ */
+public class AnalysisConfiguration {
+
+	/**
+	 * We apply widening after updating the state at a given merge point for the
+	 * {@link #DEFAULT_WIDENING_THRESHOLD}th time
+	 */
+	public static final int DEFAULT_WIDENING_THRESHOLD = 6;
+
+	/**
+	 * Most precise settings, without deadline
+	 */
+	public static final AnalysisConfiguration DEFAULT = new AnalysisConfiguration(NumericalDomain.POLKA_STRICT,
+			DEFAULT_WIDENING_THRESHOLD, true, Deadline.NONE);
+
+	/**
+	 * Domain used for each property, see {@link #setDomain(NumericalDomain)}
+	 */
+	private static final Map<VerificationProperty, NumericalDomain> domains = AnalysisConfiguration
+			.getDefaultDomains();
+
+	/**
+	 * If true, properties are first checked in cheaper domains, see
+	 * {@link #getRefinementDomains(VerificationProperty)}
+	 */
+	private static boolean refinement = false;
+
+	/**
+	 * If true, the domains of {@link #getRefinementDomains(VerificationProperty)}
+	 * are run concurrently
+	 */
+	private static boolean portfolio = false;
+
+	public final NumericalDomain domain;
+
+	/**
+	 * Number of times a loop head is updated before widening
+	 */
+	public final int wideningThreshold;
+
+	/**
+	 * If false, the overall profit is only tracked by intervals
+	 */
+	public final boolean relationalProfit;
+
+	/**
+	 * Time by which the analysis must finish (it is aborted by an
+	 * {@link AnalysisAbortedException} otherwise). Once half of the time has
+	 * passed, the analysis widens immediately.
+	 */
+	public final Deadline deadline;
+
+	/**
+	 * Domain selected for the run, {@link #domain} is a degradation if it differs
+	 */
+	private final NumericalDomain selectedDomain;
+
+	public AnalysisConfiguration(NumericalDomain domain, int wideningThreshold, boolean relationalProfit,
+			Deadline deadline) {
+		this(domain, wideningThreshold, relationalProfit, deadline, domain);
+	}
+
+	private AnalysisConfiguration(NumericalDomain domain, int wideningThreshold, boolean relationalProfit,
+			Deadline deadline, NumericalDomain selectedDomain) {
+		this.domain = domain;
+		this.wideningThreshold = wideningThreshold;
+		this.relationalProfit = relationalProfit;
+		this.deadline = deadline;
+		this.selectedDomain = selectedDomain;
+	}
+
+	public AnalysisConfiguration withDeadline(Deadline deadline) {
+		return new AnalysisConfiguration(this.domain, this.wideningThreshold, this.relationalProfit, deadline,
+				this.selectedDomain);
+	}
+
+	/**
+	 * Select the domain of all properties
+	 * 
+	 * @param domain
+	 */
+	public static void setDomain(NumericalDomain domain) {
+		for (VerificationProperty p : VerificationProperty.values()) {
+			AnalysisConfiguration.setDomain(p, domain);
+		}
+	}
+
+	/**
+	 * Select the domain used when verifying property
+	 * 
+	 * @param property
+	 * @param domain
+	 */
+	public static synchronized void setDomain(VerificationProperty property, NumericalDomain domain) {
+		AnalysisConfiguration.domains.put(property, domain);
+	}
+
+	public static synchronized NumericalDomain getDomain(VerificationProperty property) {
+		return AnalysisConfiguration.domains.get(property);
+	}
+
+	/**
+	 * Restore the domain of each property to its default
+	 */
+	public static synchronized void resetDomains() {
+		AnalysisConfiguration.domains.putAll(AnalysisConfiguration.getDefaultDomains());
+	}
+
+	/**
+	 * 
+	 * @return the default domain of each property. Strict polyhedra are needed to
+	 *         relate sell arguments and the overall profit to loop counters.
+	 *         Cheaper domains are available through
+	 *         {@link #setDomain(VerificationProperty, NumericalDomain)}.
+	 */
+	private static Map<VerificationProperty, NumericalDomain> getDefaultDomains() {
+		Map<VerificationProperty, NumericalDomain> ret = new EnumMap<VerificationProperty, NumericalDomain>(
+				VerificationProperty.class);
+		ret.put(VerificationProperty.NON_NEGATIVE, NumericalDomain.POLKA_STRICT);
+		ret.put(VerificationProperty.ITEM_PROFIT, NumericalDomain.POLKA_STRICT);
+		ret.put(VerificationProperty.OVERALL_PROFIT, NumericalDomain.POLKA_STRICT);
+		return ret;
+	}
+
+	/**
+	 * Enable or disable the refinement ladder: a property is checked in
+	 * increasingly precise domains until it is proven SAFE, and only the verdict
+	 * of the last domain is reported
+	 * 
+	 * @param enabled
+	 */
+	public static void setRefinement(boolean enabled) {
+		AnalysisConfiguration.refinement = enabled;
+	}
+
+	public static boolean isRefinement() {
+		return AnalysisConfiguration.refinement;
+	}
+
+	/**
+	 * Enable or disable the domain portfolio: the domains of the refinement
+	 * ladder are run concurrently, and checking stops once one proves the
+	 * property SAFE or the last one finishes. Takes precedence over
+	 * {@link #setRefinement(boolean)}.
+	 * 
+	 * @param enabled
+	 */
+	public static void setPortfolio(boolean enabled) {
+		AnalysisConfiguration.portfolio = enabled;
+	}
+
+	public static boolean isPortfolio() {
+		return AnalysisConfiguration.portfolio;
+	}
+
+	/**
+	 * 
+	 * @param property the property about to be verified
+	 * @return the domains to check property in (sequentially or as a portfolio),
+	 *         from cheapest to the one selected
+	 *         by {@link #setDomain(VerificationProperty, NumericalDomain)}
+	 */
+	public static List<NumericalDomain> getRefinementDomains(VerificationProperty property) {
+		NumericalDomain selected = AnalysisConfiguration.getDomain(property);
+		List<NumericalDomain> ret = new ArrayList<NumericalDomain>();
+		if (selected != NumericalDomain.BOX) {
+			ret.add(NumericalDomain.BOX);
+			if (selected != NumericalDomain.OCTAGON) {
+				ret.add(NumericalDomain.OCTAGON);
+			}
+		}
+		ret.add(selected);
+		return Collections.unmodifiableList(ret);
+	}
+
+	/**
+	 * 
+	 * @param property
+	 * @return the most precise settings for property (using the domain selected
+	 *         by {@link #setDomain(VerificationProperty, NumericalDomain)}),
+	 *         without deadline
+	 */
+	public static AnalysisConfiguration forProperty(VerificationProperty property) {
+		return AnalysisConfiguration.forDomain(AnalysisConfiguration.getDomain(property));
+	}
+
+	/**
+	 * 
+	 * @param domain
+	 * @return the most precise settings using domain, without deadline
+	 */
+	public static AnalysisConfiguration forDomain(NumericalDomain domain) {
+		return new AnalysisConfiguration(domain, DEFAULT_WIDENING_THRESHOLD, true, Deadline.NONE);
+	}
+
+	/**
+	 * 
+	 * @return the settings of this configuration that are less precise than
+	 *         selected for the run
+	 */
+	public Set<Degradation> getDegradations() {
+		Set<Degradation> ret = EnumSet.noneOf(Degradation.class);
+		if (this.wideningThreshold == 0) {
+			ret.add(Degradation.IMMEDIATE_WIDENING);
+		}
+		if (this.domain != this.selectedDomain) {
+			ret.add(Degradation.BOX_DOMAIN);
+		}
+		if (!this.relationalProfit) {
+			ret.add(Degradation.DROPPED_RELATIONAL);
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param property the property about to be verified
+	 * @return configurations to try one after the other until one finishes in
+	 *         time, from most to least precise (without deadline)
+	 */
+	public static List<AnalysisConfiguration> getLadder(VerificationProperty property) {
+		return AnalysisConfiguration.getLadder(AnalysisConfiguration.getDomain(property));
+	}
+
+	/**
+	 * 
+	 * @param domain the domain selected for the run
+	 * @return configurations to try one after the other until one finishes in
+	 *         time, starting with {@link #forDomain(NumericalDomain)}
+	 */
+	public static List<AnalysisConfiguration> getLadder(NumericalDomain domain) {
+		AnalysisConfiguration first = AnalysisConfiguration.forDomain(domain);
+		List<AnalysisConfiguration> ret = new ArrayList<AnalysisConfiguration>();
+		ret.add(first);
+		ret.add(new AnalysisConfiguration(NumericalDomain.BOX, 0, true, Deadline.NONE, first.domain));
+		ret.add(new AnalysisConfiguration(NumericalDomain.BOX, 0, false, Deadline.NONE, first.domain));
+		return Collections.unmodifiableList(ret);
+	}
+
+	@Override
+	public String toString() {
+		return this.domain + " (widening after " + this.wideningThreshold + ", relational profit: "
+				+ this.relationalProfit + ", " + this.deadline + ")";
+	}
+
+}
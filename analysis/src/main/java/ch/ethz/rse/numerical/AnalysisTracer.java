@@ -0,0 +1,131 @@
+package ch.ethz.rse.numerical;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.Abstract1;
+import apron.ApronException;
+import apron.Manager;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * Structured tracing of the {@link NumericalAnalysis}.
+ *
+ * Tracing is disabled unless the JVM is started with
+ * <code>-Drse.trace=true</code>. Since {@link #ENABLED} is a compile-time
+ * constant for the JIT, guarding calls with <code>if
+ * (AnalysisTracer.ENABLED)</code> removes them (and the computation of their
+ * arguments) from the hot path.
+ *
+ * Events are logged to the logger <code>ch.ethz.rse.trace</code>, one per line
+ * as <code>key=value</code> pairs. They can be restricted to units whose Jimple
+ * contains one of the comma-separated strings in
+ * <code>-Drse.trace.units</code>, and to loop heads by
+ * <code>-Drse.trace.loopHeads=true</code>.
+ */
+public final class AnalysisTracer {
+
+	public static final boolean ENABLED = Boolean.getBoolean("rse.trace");
+
+	private static final Logger logger = LoggerFactory.getLogger("ch.ethz.rse.trace");
+
+	private static final String[] UNITS = AnalysisTracer.parseUnits(System.getProperty("rse.trace.units"));
+
+	private static final boolean LOOP_HEADS_ONLY = Boolean.getBoolean("rse.trace.loopHeads");
+
+	public enum Event {
+		/**
+		 * state before and after a statement (fall-through and branch)
+		 */
+		FLOW,
+		/**
+		 * two states joined before a statement
+		 */
+		MERGE,
+		/**
+		 * previous, current and widened state at a loop head
+		 */
+		WIDEN,
+		/**
+		 * state after a call to sell
+		 */
+		SELL
+	}
+
+	private AnalysisTracer() {
+	}
+
+	/**
+	 * 
+	 * @param unit       unit the event is about
+	 * @param isLoopHead true if unit is a loop head
+	 * @return true if events about unit pass the filters
+	 */
+	public static boolean accepts(Unit unit, boolean isLoopHead) {
+		if (LOOP_HEADS_ONLY && !isLoopHead) {
+			return false;
+		}
+		if (UNITS.length == 0) {
+			return true;
+		}
+		String s = unit.toString();
+		for (String u : UNITS) {
+			if (s.contains(u)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Log an event, if it passes the filters. Only call this if {@link #ENABLED}.
+	 * 
+	 * @param event      kind of event
+	 * @param method     analyzed method
+	 * @param unit       unit the event is about
+	 * @param isLoopHead true if unit is a loop head
+	 * @param man        manager of the states
+	 * @param names      name of each state (e.g., "in", "out")
+	 * @param states     states (may contain null for absent states)
+	 */
+	public static void trace(Event event, SootMethod method, Unit unit, boolean isLoopHead, Manager man,
+			String[] names, Abstract1... states) {
+		if (!AnalysisTracer.accepts(unit, isLoopHead)) {
+			return;
+		}
+		StringBuilder s = new StringBuilder();
+		s.append("event=").append(event);
+		s.append(" method=").append(method.getName());
+		s.append(" unit=\"").append(unit).append('"');
+		s.append(" loopHead=").append(isLoopHead);
+		try {
+			for (int i = 0; i < states.length; i++) {
+				Abstract1 state = states[i];
+				if (state == null) {
+					continue;
+				}
+				s.append(' ').append(names[i]).append("=\"").append(state.toString(man)).append('"');
+				if (!state.getEnvironment().hasVar("FROG_OVERALL_PROFIT")) {
+					// profit is not tracked for this property (see PropertySlice)
+					continue;
+				}
+				s.append(' ').append(names[i]).append(".profit=")
+						.append(state.getBound(man, "FROG_OVERALL_PROFIT"));
+				s.append(' ').append(names[i]).append(".profitInterval=")
+						.append(state.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL"));
+			}
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+		logger.trace(s.toString());
+	}
+
+	private static String[] parseUnits(String units) {
+		if (units == null || units.isEmpty()) {
+			return new String[0];
+		}
+		return units.split(",");
+	}
+
+}
@@ -0,0 +1,150 @@
+package ch.ethz.rse.numerical;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.Environment;
+import soot.Local;
+import soot.Unit;
+import soot.UnitBox;
+import soot.ValueBox;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.LiveLocals;
+import soot.toolkits.scalar.SimpleLiveLocals;
+
+/**
+ * Variables of the environment that die on each edge of a method, based on
+ * Soot's liveness analysis. {@link NumericalAnalysis} forgets them, so that a
+ * variable is unconstrained wherever it is dead and temporaries do not take
+ * part in joins and widening after their last use.
+ *
+ * Forgetting dead variables is a projection, which does not change the bounds
+ * of live variables, but it does not commute with widening, so loop invariants
+ * may change. It is disabled by default, see {@link #setEnabled(boolean)}.
+ */
+public class DeadVariables {
+
+	private static final Logger logger = LoggerFactory.getLogger(DeadVariables.class);
+
+	private static final String[] NONE = new String[0];
+
+	/**
+	 * If false, {@link #of} forgets no variables
+	 */
+	private static boolean enabled = false;
+
+	/**
+	 * Variables to forget when falling through each unit
+	 */
+	private final Map<Unit, String[]> onFallOut = new HashMap<Unit, String[]>();
+
+	/**
+	 * Variables to forget when a unit branches to its target
+	 */
+	private final Map<Unit, String[]> onBranchOut = new HashMap<Unit, String[]>();
+
+	private DeadVariables() {
+	}
+
+	/**
+	 * Enable or disable forgetting dead variables
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		DeadVariables.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return DeadVariables.enabled;
+	}
+
+	/**
+	 *
+	 * @param g   graph of the analyzed method
+	 * @param env variables of the analysis (other locals are ignored)
+	 * @return the dead variables of g, or none if forgetting is disabled
+	 */
+	public static DeadVariables of(UnitGraph g, Environment env) {
+		if (!DeadVariables.enabled) {
+			return new DeadVariables();
+		}
+		return new DeadVariables(g, env);
+	}
+
+	private DeadVariables(UnitGraph g, Environment env) {
+		LiveLocals live = new SimpleLiveLocals(g);
+		int count = 0;
+		for (Unit unit : g.getBody().getUnits()) {
+			// variables that may be constrained after unit
+			Set<String> candidates = new LinkedHashSet<String>();
+			for (Local local : live.getLiveLocalsBefore(unit)) {
+				candidates.add(local.getName());
+			}
+			for (ValueBox box : unit.getDefBoxes()) {
+				if (box.getValue() instanceof Local) {
+					candidates.add(((Local) box.getValue()).getName());
+				}
+			}
+			candidates.removeIf(name -> !env.hasVar(name));
+			if (candidates.isEmpty()) {
+				continue;
+			}
+
+			if (unit.fallsThrough()) {
+				Unit succ = g.getBody().getUnits().getSuccOf(unit);
+				if (succ != null) {
+					String[] dead = DeadVariables.deadAt(candidates, live.getLiveLocalsBefore(succ));
+					this.onFallOut.put(unit, dead);
+					count += dead.length;
+				}
+			}
+			if (unit.branches()) {
+				List<UnitBox> targets = unit.getUnitBoxes();
+				if (targets.size() == 1) {
+					String[] dead = DeadVariables.deadAt(candidates,
+							live.getLiveLocalsBefore(targets.get(0).getUnit()));
+					this.onBranchOut.put(unit, dead);
+					count += dead.length;
+				}
+			}
+		}
+		logger.debug("Forgetting {} dead variables in {}", count, g.getBody().getMethod().getName());
+	}
+
+	/**
+	 *
+	 * @param unit
+	 * @return variables to forget after falling through unit
+	 */
+	public String[] getDeadOnFallOut(Unit unit) {
+		return this.onFallOut.getOrDefault(unit, NONE);
+	}
+
+	/**
+	 *
+	 * @param unit
+	 * @return variables to forget after unit branched to its target
+	 */
+	public String[] getDeadOnBranchOut(Unit unit) {
+		return this.onBranchOut.getOrDefault(unit, NONE);
+	}
+
+	private static String[] deadAt(Set<String> candidates, List<Local> liveAtTarget) {
+		if (liveAtTarget.isEmpty()) {
+			return candidates.toArray(NONE);
+		}
+		Set<String> ret = new LinkedHashSet<String>(candidates);
+		for (Local local : liveAtTarget) {
+			ret.remove(local.getName());
+		}
+		return ret.isEmpty() ? NONE : ret.toArray(NONE);
+	}
+
+}
@@ -0,0 +1,30 @@
+package ch.ethz.rse.numerical;
+
+/**
+ * Precision given up by the numerical analysis to meet its deadline (see
+ * {@link AnalysisConfiguration}). All degradations keep the analysis sound.
+ */
+public enum Degradation {
+	/**
+	 * Widening is applied the first time a loop head is revisited
+	 */
+	IMMEDIATE_WIDENING,
+	/**
+	 * The analysis used intervals instead of the selected domain
+	 */
+	BOX_DOMAIN,
+	/**
+	 * The overall profit was tracked by intervals only, without relating it to
+	 * other variables
+	 */
+	DROPPED_RELATIONAL,
+	/**
+	 * The decreasing passes after the fixpoint were stopped early, keeping the
+	 * (sound) states reached so far
+	 */
+	STOPPED_NARROWING,
+	/**
+	 * No analysis finished in time, so the verdict is UNSAFE
+	 */
+	GAVE_UP
+}
@@ -0,0 +1,94 @@
+package ch.ethz.rse.numerical;
+
+import apron.Box;
+import apron.Manager;
+import apron.Octagon;
+import apron.Polka;
+import apron.PolkaEq;
+
+/**
+ * Pool of Apron domain managers, handing out one manager per thread.
+ *
+ * Apron managers wrap native state and are not thread-safe, but can be reused
+ * by consecutive analyses on the same thread. This class is always loaded by
+ * the application class loader (see {@link ch.ethz.rse.main.IsolatedUniverse}),
+ * so that all isolated Soot universes of a JVM share the same native managers.
+ */
+public class ManagerPool {
+
+	private static final ThreadLocal<Manager> polka = new ThreadLocal<Manager>() {
+		@Override
+		protected Manager initialValue() {
+			return new Polka(true);
+		}
+	};
+
+	private static final ThreadLocal<Manager> polkaLoose = new ThreadLocal<Manager>() {
+		@Override
+		protected Manager initialValue() {
+			return new Polka(false);
+		}
+	};
+
+	private static final ThreadLocal<Manager> polkaEq = new ThreadLocal<Manager>() {
+		@Override
+		protected Manager initialValue() {
+			return new PolkaEq();
+		}
+	};
+
+	private static final ThreadLocal<Manager> octagon = new ThreadLocal<Manager>() {
+		@Override
+		protected Manager initialValue() {
+			return new Octagon();
+		}
+	};
+
+	private static final ThreadLocal<Manager> box = new ThreadLocal<Manager>() {
+		@Override
+		protected Manager initialValue() {
+			return new Box();
+		}
+	};
+
+	/**
+	 *
+	 * @return the convex polyhedra manager (strict) of the current thread
+	 */
+	public static Manager getPolka() {
+		return polka.get();
+	}
+
+	/**
+	 *
+	 * @return the convex polyhedra manager (loose) of the current thread
+	 */
+	public static Manager getPolkaLoose() {
+		return polkaLoose.get();
+	}
+
+	/**
+	 *
+	 * @return the linear equalities manager of the current thread
+	 */
+	public static Manager getPolkaEq() {
+		return polkaEq.get();
+	}
+
+	/**
+	 *
+	 * @return the octagon manager of the current thread
+	 */
+	public static Manager getOctagon() {
+		return octagon.get();
+	}
+
+	/**
+	 *
+	 * @return the interval manager of the current thread
+	 */
+	public static Manager getBox() {
+		return box.get();
+	}
+
+}
@@ -0,0 +1,296 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.Environment;
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.pointer.PointsToInitializer;
+import ch.ethz.rse.verify.EnvironmentGenerator;
+import soot.SootClass;
+import soot.SootHelper;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.jimple.toolkits.annotation.logic.LoopFinder;
+import soot.toolkits.graph.LoopNestTree;
+import soot.toolkits.graph.PseudoTopologicalOrderer;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Everything the {@link NumericalAnalysis} of a method derives from Soot for a
+ * property, independently of the numerical domain: the graph, the
+ * {@link PropertySlice}, the variables and their packs, the
+ * {@link DeadVariables}, the loop heads, the {@link WideningThresholds} and the
+ * calls to helpers.
+ *
+ * Soot is not thread-safe (e.g., resolving the method of a call or building a
+ * hierarchy changes the Scene), so {@link #ofClass} builds the structures of
+ * all methods of a class on the calling thread. Afterwards they are only read,
+ * and the members of the domain portfolio share them. Apron objects are not
+ * part of the structure, each analysis creates its own (see
+ * {@link #getVariables()}).
+ */
+public class MethodStructure {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodStructure.class);
+
+	private final SootMethod method;
+
+	private final VerificationProperty property;
+
+	private final UnitGraph graph;
+
+	private final PropertySlice slice;
+
+	/**
+	 * Variables of the environment of the analysis
+	 */
+	private final String[] variables;
+
+	/**
+	 * Variables of each pack (see {@link VariablePacks#partition})
+	 */
+	private final String[][] packs;
+
+	private final DeadVariables dead;
+
+	/**
+	 * Order of the units if {@link WtoFixpoint} is enabled, null otherwise
+	 */
+	private final WeakTopologicalOrder wto;
+
+	/**
+	 * Units where the analysis widens
+	 */
+	private final List<Unit> loopHeads = new ArrayList<Unit>();
+
+	/**
+	 * Thresholds if {@link WideningThresholds} is enabled, null otherwise
+	 */
+	private final WideningThresholds thresholds;
+
+	/**
+	 * Order of the decreasing passes if {@link #thresholds} is set, null
+	 * otherwise
+	 */
+	private final List<Unit> narrowingOrder;
+
+	/**
+	 * Structure of the callee of each call to a helper (see
+	 * {@link MethodSummaries#isHelperCall}), set by {@link #ofClass}
+	 */
+	private final Map<Unit, MethodStructure> helperCalls = new LinkedHashMap<Unit, MethodStructure>();
+
+	/**
+	 * Describes this method and the helpers it calls for the cache of
+	 * {@link MethodSummaries}, null unless {@link MethodSummaries#isEnabled()}
+	 */
+	private String summaryKey = null;
+
+	private MethodStructure(SootMethod method, VerificationProperty property, PointsToInitializer pointsTo) {
+		this.method = method;
+		this.property = property;
+		this.graph = SootHelper.getUnitGraph(method);
+		this.slice = PropertySlice.of(method, property);
+
+		Environment env = new EnvironmentGenerator(method, pointsTo, this.slice).getEnvironment();
+		this.variables = env.getVars();
+		this.packs = VariablePacks.partition(method, this.variables, property);
+		this.dead = DeadVariables.of(this.graph, env);
+
+		if (WtoFixpoint.isEnabled()) {
+			// widen at the heads of components
+			this.wto = new WeakTopologicalOrder(this.graph);
+			this.loopHeads.addAll(this.wto.getHeads());
+		} else {
+			this.wto = null;
+			// reuse the graph: new LoopNestTree(body) builds an ExceptionalUnitGraph
+			for (Loop l : new LoopNestTree(new LoopFinder().getLoops(this.graph))) {
+				this.loopHeads.add(l.getHead());
+			}
+		}
+
+		if (WideningThresholds.isEnabled()) {
+			this.thresholds = WideningThresholds.of(method);
+			this.narrowingOrder = new PseudoTopologicalOrderer<Unit>().newList(this.graph, false);
+		} else {
+			this.thresholds = null;
+			this.narrowingOrder = null;
+		}
+	}
+
+	/**
+	 *
+	 * @param c        class to analyze
+	 * @param property the property we are verifying
+	 * @param pointsTo pointer analysis of c
+	 * @return the structure of each method of c except its constructors, in the
+	 *         order of {@link SootClass#getMethods()}
+	 */
+	public static Map<SootMethod, MethodStructure> ofClass(SootClass c, VerificationProperty property,
+			PointsToInitializer pointsTo) {
+		long startTime = System.nanoTime();
+
+		Map<SootMethod, MethodStructure> ret = new LinkedHashMap<SootMethod, MethodStructure>();
+		for (SootMethod method : c.getMethods()) {
+			if (method.getName().contains("<init>")) {
+				continue;
+			}
+			ret.put(method, new MethodStructure(method, property, pointsTo));
+		}
+		MethodStructure.linkHelperCalls(ret, pointsTo);
+
+		long endTime = System.nanoTime();
+		long durationMilliseconds = (endTime - startTime) / 1000000;
+		logger.debug("Runtime: Built structure of {} methods of {} in {}ms", ret.size(), c.getName(),
+				durationMilliseconds);
+
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param method   method to analyze
+	 * @param property the property we are verifying
+	 * @param pointsTo pointer analysis of the class of method
+	 * @return the structure of method (building the structures of the other
+	 *         methods of its class only if it calls helpers)
+	 */
+	public static MethodStructure of(SootMethod method, VerificationProperty property, PointsToInitializer pointsTo) {
+		if (MethodSummaries.isEnabled() && MethodSummaries.getMaxArguments(method) >= 0) {
+			return MethodStructure.ofClass(method.getDeclaringClass(), property, pointsTo).get(method);
+		}
+		MethodStructure ret = new MethodStructure(method, property, pointsTo);
+		MethodStructure.linkHelperCalls(Collections.singletonMap(method, ret), pointsTo);
+		return ret;
+	}
+
+	/**
+	 * Resolve the calls to helpers among structures
+	 */
+	private static void linkHelperCalls(Map<SootMethod, MethodStructure> structures, PointsToInitializer pointsTo) {
+		if (!MethodSummaries.isEnabled()) {
+			return;
+		}
+		for (MethodStructure structure : structures.values()) {
+			for (Unit unit : structure.method.getActiveBody().getUnits()) {
+				Stmt s = (Stmt) unit;
+				if (s.containsInvokeExpr() && MethodSummaries.isHelperCall(structure.method, s.getInvokeExpr())) {
+					SootMethod callee = s.getInvokeExpr().getMethod();
+					MethodStructure calleeStructure = structures.get(callee);
+					if (calleeStructure == null) {
+						throw new IllegalStateException("No structure of helper " + callee.getSignature());
+					}
+					structure.helperCalls.put(unit, calleeStructure);
+				}
+			}
+		}
+		for (MethodStructure structure : structures.values()) {
+			structure.summaryKey = MethodSummaries.describe(structure, pointsTo);
+		}
+	}
+
+	public SootMethod getMethod() {
+		return this.method;
+	}
+
+	public VerificationProperty getProperty() {
+		return this.property;
+	}
+
+	public UnitGraph getGraph() {
+		return this.graph;
+	}
+
+	public PropertySlice getSlice() {
+		return this.slice;
+	}
+
+	/**
+	 *
+	 * @return the variables of the environment of the analysis (see
+	 *         {@link EnvironmentGenerator})
+	 */
+	public String[] getVariables() {
+		return this.variables;
+	}
+
+	/**
+	 *
+	 * @return the variables of each pack (see {@link VariablePacks#partition})
+	 */
+	public String[][] getPacks() {
+		return this.packs;
+	}
+
+	public DeadVariables getDeadVariables() {
+		return this.dead;
+	}
+
+	/**
+	 *
+	 * @return the order of the units if {@link WtoFixpoint} is enabled, null
+	 *         otherwise
+	 */
+	public WeakTopologicalOrder getWeakTopologicalOrder() {
+		return this.wto;
+	}
+
+	public List<Unit> getLoopHeads() {
+		return this.loopHeads;
+	}
+
+	/**
+	 *
+	 * @return the thresholds if {@link WideningThresholds} is enabled, null
+	 *         otherwise. They cache Apron constraints, so each analysis needs a
+	 *         {@link WideningThresholds#copy()}.
+	 */
+	public WideningThresholds getThresholds() {
+		return this.thresholds;
+	}
+
+	/**
+	 *
+	 * @return the order of the decreasing passes if {@link #getThresholds()} is
+	 *         set, null otherwise
+	 */
+	public List<Unit> getNarrowingOrder() {
+		return this.narrowingOrder;
+	}
+
+	/**
+	 *
+	 * @param unit
+	 * @return the structure of the callee if unit calls a helper, null otherwise
+	 */
+	public MethodStructure getHelperCall(Unit unit) {
+		return this.helperCalls.get(unit);
+	}
+
+	/**
+	 *
+	 * @return the structure of the callee of each call to a helper
+	 */
+	public Map<Unit, MethodStructure> getHelperCalls() {
+		return Collections.unmodifiableMap(this.helperCalls);
+	}
+
+	String getSummaryKey() {
+		return this.summaryKey;
+	}
+
+	@Override
+	public String toString() {
+		return this.method.getName() + " for " + this.property;
+	}
+
+}
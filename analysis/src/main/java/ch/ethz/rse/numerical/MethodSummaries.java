@@ -0,0 +1,262 @@
+package ch.ethz.rse.numerical;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.Environment;
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.main.Runner;
+import ch.ethz.rse.pointer.PointsToInitializer;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.internal.JVirtualInvokeExpr;
+
+/**
+ * Interprocedural mode of the {@link NumericalAnalysis}: calls to other
+ * methods of the analyzed class ("helpers") are handled by applying a
+ * {@link MethodSummary} of the callee, instead of being rejected.
+ *
+ * Summaries are computed once per callee and cached, keyed by the signature
+ * and body of the callee (and, transitively, of the helpers it calls), the
+ * verified property, the production costs at its calls to sell, the
+ * configuration of the analysis and all settings of the analyzer (see
+ * {@link Runner#describeSettings()}), as the cache outlives tasks.
+ */
+public class MethodSummaries {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodSummaries.class);
+
+	/**
+	 * Value of the k-th parameter on entry, in the analysis of the callee
+	 */
+	public static final String PARAM_PREFIX = "SUMMARY_PARAM_";
+
+	/**
+	 * Return value, in the analysis of the callee
+	 */
+	public static final String RETURN = "SUMMARY_RETURN";
+
+	/**
+	 * Value of the k-th argument, in the analysis of the caller and in summaries
+	 */
+	public static final String CALL_PARAM_PREFIX = "CALL_PARAM_";
+
+	/**
+	 * Return value of the callee, in the analysis of the caller and in summaries
+	 */
+	public static final String CALL_RETURN = "CALL_RETURN";
+
+	/**
+	 * Overall profit added by the callee, in the analysis of the caller and in
+	 * summaries
+	 */
+	public static final String CALL_PROFIT = "CALL_PROFIT";
+
+	/**
+	 * Interval approximation of {@link #CALL_PROFIT}
+	 */
+	public static final String CALL_PROFIT_INTERVAL = "CALL_PROFIT_INTERVAL";
+
+	/**
+	 * Bound on the number of cached summaries
+	 */
+	private static final int MAX_CACHED = 10000;
+
+	private static boolean enabled = false;
+
+	private static final Map<String, MethodSummary> cache = new ConcurrentHashMap<String, MethodSummary>();
+
+	/**
+	 * Methods whose summary is being computed by the current thread (calls to
+	 * them are recursive)
+	 */
+	private static final ThreadLocal<Set<SootMethod>> inProgress = new ThreadLocal<Set<SootMethod>>() {
+		@Override
+		protected Set<SootMethod> initialValue() {
+			return new HashSet<SootMethod>();
+		}
+	};
+
+	/**
+	 * Enable or disable the interprocedural mode
+	 * 
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		MethodSummaries.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return MethodSummaries.enabled;
+	}
+
+	/**
+	 * Resolves the callee in the Scene, so the analysis looks up calls in its
+	 * {@link MethodStructure} instead
+	 * 
+	 * @param caller method containing invokeExpr
+	 * @param invokeExpr
+	 * @return true if invokeExpr is handled by a summary (in interprocedural mode,
+	 *         calls to concrete methods of the class of caller)
+	 */
+	public static boolean isHelperCall(SootMethod caller, InvokeExpr invokeExpr) {
+		if (!MethodSummaries.enabled) {
+			return false;
+		}
+		SootMethod callee = invokeExpr.getMethod();
+		return callee.getDeclaringClass() == caller.getDeclaringClass() && callee.isConcrete()
+				&& !callee.isConstructor() && !callee.isStaticInitializer();
+	}
+
+	/**
+	 * 
+	 * @param method
+	 * @return the largest number of arguments of a helper called by method, or -1
+	 *         if method calls no helper
+	 */
+	public static int getMaxArguments(SootMethod method) {
+		int ret = -1;
+		for (Unit unit : method.getActiveBody().getUnits()) {
+			Stmt s = (Stmt) unit;
+			if (s.containsInvokeExpr() && MethodSummaries.isHelperCall(method, s.getInvokeExpr())) {
+				ret = Math.max(ret, s.getInvokeExpr().getArgCount());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param callee   structure of the method to summarize (see
+	 *                 {@link MethodStructure#getHelperCall})
+	 * @param pointsTo pointer analysis of the class of callee
+	 * @param config   settings of the analysis
+	 * @return the summary of callee
+	 */
+	public static MethodSummary getSummary(MethodStructure callee, PointsToInitializer pointsTo,
+			AnalysisConfiguration config) {
+		SootMethod method = callee.getMethod();
+		Set<SootMethod> active = inProgress.get();
+		if (active.contains(method)) {
+			logger.debug("Recursive call to {}, using top summary", method.getName());
+			return MethodSummary.top(MethodSummaries.getSummaryEnvironment(method));
+		}
+
+		String key = MethodSummaries.getKey(callee, config);
+		MethodSummary ret = cache.get(key);
+		if (ret != null) {
+			logger.debug("Found cached summary of {}", method.getName());
+			return ret;
+		}
+
+		long startTime = System.nanoTime();
+		active.add(method);
+		NumericalAnalysis analysis;
+		try {
+			analysis = new NumericalAnalysis(callee, pointsTo, config, null);
+		} finally {
+			active.remove(method);
+		}
+		ret = analysis.getSummary();
+		// summaries degraded by a deadline would make later analyses less precise
+		if (analysis.getDegradations().equals(config.getDegradations())) {
+			if (cache.size() >= MAX_CACHED) {
+				cache.clear();
+			}
+			cache.put(key, ret);
+		}
+
+		long endTime = System.nanoTime();
+		long durationMilliseconds = (endTime - startTime) / 1000000;
+		logger.debug("Runtime: Summarized {} in {}ms: {}", method.getName(), durationMilliseconds, ret);
+
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param callee
+	 * @return the environment of the summary of callee
+	 */
+	public static Environment getSummaryEnvironment(SootMethod callee) {
+		String[] ints = new String[callee.getParameterCount() + 3];
+		for (int k = 0; k < callee.getParameterCount(); k++) {
+			ints[k] = CALL_PARAM_PREFIX + k;
+		}
+		ints[ints.length - 3] = CALL_RETURN;
+		ints[ints.length - 2] = CALL_PROFIT;
+		ints[ints.length - 1] = CALL_PROFIT_INTERVAL;
+		return new Environment(ints, new String[0]);
+	}
+
+	private static String getKey(MethodStructure callee, AnalysisConfiguration config) {
+		StringBuilder ret = new StringBuilder();
+		ret.append(callee.getProperty()).append(';').append(config.domain).append(';')
+				.append(config.wideningThreshold).append(';').append(config.relationalProfit).append(';')
+				.append(Runner.describeSettings()).append(callee.getSummaryKey());
+		return ret.toString();
+	}
+
+	/**
+	 * 
+	 * @param structure structure of a method, with its calls to helpers linked
+	 * @param pointsTo  pointer analysis of the class of the method
+	 * @return a description of the method and all helpers it calls, see
+	 *         {@link MethodStructure#getSummaryKey()}
+	 */
+	static String describe(MethodStructure structure, PointsToInitializer pointsTo) {
+		StringBuilder ret = new StringBuilder();
+		MethodSummaries.appendKey(structure, pointsTo, ret, new HashSet<SootMethod>());
+		return ret.toString();
+	}
+
+	/**
+	 * Describe method and all helpers it calls
+	 */
+	private static void appendKey(MethodStructure structure, PointsToInitializer pointsTo, StringBuilder key,
+			Set<SootMethod> visited) {
+		SootMethod method = structure.getMethod();
+		if (!visited.add(method)) {
+			return;
+		}
+		key.append(';').append(method.getSignature()).append('=')
+				.append(MethodSummaries.hash(method.getActiveBody().toString()));
+		for (Unit unit : method.getActiveBody().getUnits()) {
+			Stmt s = (Stmt) unit;
+			if (!s.containsInvokeExpr()) {
+				continue;
+			}
+			InvokeExpr invokeExpr = s.getInvokeExpr();
+			MethodStructure callee = structure.getHelperCall(unit);
+			if (callee != null) {
+				MethodSummaries.appendKey(callee, pointsTo, key, visited);
+			} else if (invokeExpr instanceof JVirtualInvokeExpr) {
+				key.append(',').append(pointsTo.getSellSite(invokeExpr).maxCost);
+			}
+		}
+	}
+
+	private static String hash(String s) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+			StringBuilder ret = new StringBuilder();
+			for (byte b : digest) {
+				ret.append(String.format("%02x", b));
+			}
+			return ret.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package ch.ethz.rse.numerical;
+
+import apron.Abstract1;
+import apron.ApronException;
+import apron.Environment;
+import apron.Lincons1;
+import apron.Manager;
+
+/**
+ * Input/output relation of a method, relating the values of its int parameters
+ * on entry ({@link MethodSummaries#CALL_PARAM_PREFIX}) to its int return value
+ * ({@link MethodSummaries#CALL_RETURN}) and the overall profit it adds
+ * ({@link MethodSummaries#CALL_PROFIT} and
+ * {@link MethodSummaries#CALL_PROFIT_INTERVAL}).
+ *
+ * The relation is stored as linear constraints rather than an
+ * {@link Abstract1}, so that it can be used with any {@link Manager} (managers
+ * are per thread, see {@link ManagerPool}).
+ */
+public class MethodSummary {
+
+	private final Environment env;
+
+	/**
+	 * Constraints of the relation, or null if the method never returns
+	 */
+	private final Lincons1[] constraints;
+
+	/**
+	 * 
+	 * @param env         environment holding the variables of the relation
+	 * @param constraints constraints of the relation, or null if the method never
+	 *                    returns
+	 */
+	public MethodSummary(Environment env, Lincons1[] constraints) {
+		this.env = env;
+		this.constraints = constraints;
+	}
+
+	/**
+	 * 
+	 * @param env environment holding the variables of the relation
+	 * @return a summary not constraining any variable (e.g., for recursive calls)
+	 */
+	public static MethodSummary top(Environment env) {
+		return new MethodSummary(env, new Lincons1[0]);
+	}
+
+	public Environment getEnvironment() {
+		return this.env;
+	}
+
+	/**
+	 * 
+	 * @param man manager to use
+	 * @param env environment of the result, must contain {@link #getEnvironment()}
+	 * @return the relation over env
+	 * @throws ApronException
+	 */
+	public Abstract1 toAbstract(Manager man, Environment env) throws ApronException {
+		Abstract1 ret;
+		if (this.constraints == null) {
+			ret = new Abstract1(man, this.env, true);
+		} else if (this.constraints.length == 0) {
+			ret = new Abstract1(man, this.env);
+		} else {
+			ret = new Abstract1(man, this.constraints);
+		}
+		return ret.changeEnvironmentCopy(man, env, false);
+	}
+
+	public String toString() {
+		if (this.constraints == null) {
+			return "bottom";
+		}
+		StringBuilder ret = new StringBuilder("{");
+		for (Lincons1 c : this.constraints) {
+			if (ret.length() > 1) {
+				ret.append("; ");
+			}
+			ret.append(c);
+		}
+		return ret.append("}").toString();
+	}
+
+}
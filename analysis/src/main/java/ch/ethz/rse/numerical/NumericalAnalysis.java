@@ -1,8 +1,11 @@
 package ch.ethz.rse.numerical;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.management.RuntimeErrorException;
@@ -19,7 +22,6 @@ import apron.Interval;
 import apron.Manager;
 import apron.MpfrScalar;
 import apron.MpqScalar;
-import apron.Polka;
 import apron.Scalar;
 import apron.Tcons1;
 import apron.Texpr1BinNode;
@@ -28,10 +30,9 @@ import apron.Texpr1Intern;
 import apron.Texpr1Node;
 import apron.Texpr1VarNode;
 import ch.ethz.rse.VerificationProperty;
-import ch.ethz.rse.pointer.FrogInitializer;
 import ch.ethz.rse.pointer.PointsToInitializer;
 import ch.ethz.rse.utils.Constants;
-import ch.ethz.rse.verify.EnvironmentGenerator;
+import ch.ethz.rse.utils.Deadline;
 import gmp.Mpq;
 import soot.ArrayType;
 import soot.DoubleType;
@@ -40,6 +41,7 @@ import soot.RefType;
 import soot.SootHelper;
 import soot.SootMethod;
 import soot.Unit;
+import soot.UnitBox;
 import soot.Value;
 import soot.ValueBox;
 import soot.jimple.AddExpr;
@@ -68,15 +70,15 @@ import soot.jimple.internal.JLtExpr;
 import soot.jimple.internal.JMulExpr;
 import soot.jimple.internal.JNeExpr;
 import soot.jimple.internal.JNegExpr;
+import soot.jimple.internal.JReturnStmt;
 import soot.jimple.internal.JReturnVoidStmt;
 import soot.jimple.internal.JSpecialInvokeExpr;
 import soot.jimple.internal.JSubExpr;
 import soot.jimple.internal.JVirtualInvokeExpr;
 import soot.jimple.internal.JimpleLocal;
-import soot.jimple.toolkits.annotation.logic.Loop;
-import soot.toolkits.graph.LoopNestTree;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ForwardBranchedFlowAnalysis;
+import soot.util.Chain;
 
 /**
  * Convenience class running a numerical analysis on a given {@link SootMethod}
@@ -92,6 +94,11 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 	 */
 	private final VerificationProperty property;
 
+	/**
+	 * Everything derived from Soot for {@link #method} and {@link #property}
+	 */
+	private final MethodStructure structure;
+
 	/**
 	 * the pointer analysis result we are verifying
 	 */
@@ -107,17 +114,72 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 	private HashMap<Unit, NumericalStateWrapper> loopHeadState = new HashMap<Unit, NumericalStateWrapper>();
 
 	/**
-	 * Numerical abstract domain to use for analysis: Convex polyhedra
+	 * Numerical abstract domain to use for analysis (see
+	 * {@link AnalysisConfiguration#domain})
 	 */
-	public final Manager man = new Polka(true);
+	public final Manager man;
 
 	public final Environment env;
 
+	/**
+	 * Split of {@link #env} into independent packs (see {@link VariablePacks})
+	 */
+	private final VariablePacks packs;
+
+	/**
+	 * Locals relevant to {@link #property} (see {@link PropertySlice})
+	 */
+	private final PropertySlice slice;
+
+	/**
+	 * Variables forgotten after their last use
+	 */
+	private final DeadVariables dead;
+
+	/**
+	 * Order of the units if {@link WtoFixpoint} is enabled, null otherwise
+	 */
+	private final WeakTopologicalOrder wto;
+
+	/**
+	 * Thresholds if {@link WideningThresholds} is enabled, null otherwise
+	 */
+	private final WideningThresholds thresholds;
+
+	/**
+	 * True during the decreasing passes, which do not widen
+	 */
+	private boolean narrowing = false;
+
+	/**
+	 * True if the decreasing passes ran out of time
+	 */
+	private boolean narrowingStopped = false;
+
+	/**
+	 * Number of decreasing passes that updated each loop head
+	 */
+	private HashMap<Unit, IntegerWrapper> loopHeadsNarrowed = new HashMap<Unit, IntegerWrapper>();
+
+	/**
+	 * Number of calls to {@link #flowThrough}
+	 */
+	private long flowThroughCalls = 0;
+
+	private final AnalysisConfiguration config;
+
+	/**
+	 * Bounds of the parameters on entry, see
+	 * {@link #NumericalAnalysis(SootMethod, VerificationProperty, PointsToInitializer, AnalysisConfiguration, Interval[])}
+	 */
+	private final Interval[] context;
+
 	/**
 	 * We apply widening after updating the state at a given merge point for the
-	 * {@link WIDENING_THRESHOLD}th time
+	 * {@link wideningThreshold}th time. Drops to 0 once half of the time until the
+	 * deadline has passed.
 	 */
-	private static final int WIDENING_THRESHOLD = 6;
+	private int wideningThreshold;
 
 	/**
 	 * 
@@ -125,31 +187,296 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 	 * @param property the property we are verifying
 	 */
 	public NumericalAnalysis(SootMethod method, VerificationProperty property, PointsToInitializer pointsTo) {
-		super(SootHelper.getUnitGraph(method));
+		this(method, property, pointsTo, AnalysisConfiguration.forProperty(property));
+	}
 
-		UnitGraph g = SootHelper.getUnitGraph(method);
+	/**
+	 * 
+	 * @param method   method to analyze
+	 * @param property the property we are verifying
+	 * @param config   settings of the analysis
+	 * @throws AnalysisAbortedException if the analysis does not finish before the
+	 *                                  deadline of config
+	 */
+	public NumericalAnalysis(SootMethod method, VerificationProperty property, PointsToInitializer pointsTo,
+			AnalysisConfiguration config) {
+		this(method, property, pointsTo, config, null);
+	}
 
-		this.property = property;
+	/**
+	 * 
+	 * @param method   method to analyze
+	 * @param property the property we are verifying
+	 * @param config   settings of the analysis
+	 * @param context  bounds of the int parameters of method on entry (null
+	 *                 entries are unbounded), or null to leave them unbounded.
+	 *                 Requires {@link MethodSummaries#isEnabled()}.
+	 * @throws AnalysisAbortedException if the analysis does not finish before the
+	 *                                  deadline of config
+	 */
+	public NumericalAnalysis(SootMethod method, VerificationProperty property, PointsToInitializer pointsTo,
+			AnalysisConfiguration config, Interval[] context) {
+		this(MethodStructure.of(method, property, pointsTo), pointsTo, config, context);
+	}
+
+	/**
+	 * 
+	 * @param structure everything derived from Soot for the analyzed method and
+	 *                  property (see {@link MethodStructure#ofClass}). Other
+	 *                  threads may analyze the same structure concurrently.
+	 * @param config    settings of the analysis
+	 * @param context   bounds of the int parameters of method on entry (null
+	 *                  entries are unbounded), or null to leave them unbounded.
+	 *                  Requires {@link MethodSummaries#isEnabled()}.
+	 * @throws AnalysisAbortedException if the analysis does not finish before the
+	 *                                  deadline of config
+	 */
+	public NumericalAnalysis(MethodStructure structure, PointsToInitializer pointsTo, AnalysisConfiguration config,
+			Interval[] context) {
+		super(structure.getGraph());
+
+		this.structure = structure;
+
+		this.property = structure.getProperty();
 
 		this.pointsTo = pointsTo;
 
-		this.method = method;
+		this.method = structure.getMethod();
+
+		this.config = config;
+
+		this.context = context;
+
+		this.man = config.domain.getManager();
+
+		this.wideningThreshold = config.wideningThreshold;
 
-		this.env = new EnvironmentGenerator(method, pointsTo).getEnvironment();
+		this.slice = structure.getSlice();
+
+		// Apron objects are not shared with other analyses of the structure
+		this.env = new Environment(structure.getVariables(), new String[0]);
+
+		this.packs = VariablePacks.of(this.env, structure.getPacks());
+
+		this.dead = structure.getDeadVariables();
+
+		this.thresholds = structure.getThresholds() == null ? null : structure.getThresholds().copy();
+
+		this.wto = structure.getWeakTopologicalOrder();
 
 		// initialize counts for loop heads
 		logger.debug("Loop heads:");
-		for (Loop l : new LoopNestTree(g.getBody())) {
-			loopHeads.put(l.getHead(), new IntegerWrapper(0));
-			logger.debug(l.getHead().toString());
+		for (Unit head : structure.getLoopHeads()) {
+			loopHeads.put(head, new IntegerWrapper(0));
+			logger.debug(head.toString());
 		}
 
 		// perform analysis by calling into super-class
-		logger.info("Analyzing {} in {}", method.getName(), method.getDeclaringClass().getName());
+		logger.debug("Analyzing {} in {} using {}", this.method.getName(), this.method.getDeclaringClass().getName(),
+				config);
 		doAnalysis(); // calls newInitialFlow, entryInitialFlow, merge, flowThrough, and stops when a
 						// fixed point is reached
 	}
 
+	@Override
+	protected void doAnalysis() {
+		if (this.wto == null) {
+			super.doAnalysis();
+		} else {
+			WtoFixpoint fixpoint = new WtoFixpoint(this, (UnitGraph) this.graph, this.wto);
+			fixpoint.solve();
+			// expose the states through the getters of the super-class
+			for (int i = 0; i < this.wto.size(); i++) {
+				Unit unit = this.wto.getUnit(i);
+				unitToBeforeFlow.put(unit, fixpoint.getFlowBefore(i));
+				unitToAfterFallFlow.put(unit, fixpoint.getFallFlowAfter(i));
+				unitToAfterBranchFlow.put(unit, fixpoint.getBranchFlowAfter(i));
+			}
+		}
+		if (this.thresholds != null && !this.loopHeads.isEmpty()) {
+			// without loops, nothing was widened and the fixpoint is already exact
+			this.narrow();
+		}
+		for (Map.Entry<Unit, IntegerWrapper> e : this.loopHeads.entrySet()) {
+			IntegerWrapper narrowed = this.loopHeadsNarrowed.get(e.getKey());
+			logger.debug("Loop at {} in {}: {} iterations, {} decreasing", e.getKey(), this.method.getName(),
+					e.getValue().value, narrowed == null ? 0 : narrowed.value);
+		}
+	}
+
+	/**
+	 * Decreasing passes from the fixpoint: recompute each state from its
+	 * predecessors without widening. Starting from a post-fixpoint, each state
+	 * can only shrink and stays sound. Stops after
+	 * {@link WideningThresholds#NARROWING_PASSES} passes, once no loop head
+	 * changes, or when the deadline expires or the thread is interrupted. The
+	 * deadline is checked before each unit instead of in {@link #flowThrough}, so
+	 * that running out of time keeps the states computed so far instead of
+	 * aborting the analysis.
+	 */
+	private void narrow() {
+		// incoming states, as in ForwardBranchedFlowAnalysis
+		Chain<Unit> units = ((UnitGraph) this.graph).getBody().getUnits();
+		Map<Unit, List<NumericalStateWrapper>> incoming = new HashMap<Unit, List<NumericalStateWrapper>>();
+		for (Unit unit : units) {
+			Unit succ = units.getSuccOf(unit);
+			if (unit.fallsThrough() && succ != null) {
+				incoming.computeIfAbsent(succ, k -> new ArrayList<NumericalStateWrapper>())
+						.add(unitToAfterFallFlow.get(unit).get(0));
+			}
+			if (unit.branches()) {
+				List<UnitBox> targets = unit.getUnitBoxes();
+				for (int i = 0; i < targets.size(); i++) {
+					incoming.computeIfAbsent(targets.get(i).getUnit(), k -> new ArrayList<NumericalStateWrapper>())
+							.add(unitToAfterBranchFlow.get(unit).get(i));
+				}
+			}
+		}
+		List<Unit> order = this.structure.getNarrowingOrder();
+		List<Unit> heads = this.graph.getHeads();
+
+		this.narrowing = true;
+		try {
+			for (int pass = 0; pass < WideningThresholds.NARROWING_PASSES; pass++) {
+				boolean changed = false;
+				for (Unit unit : order) {
+					if (Thread.currentThread().isInterrupted() || this.config.deadline.isExpired()) {
+						logger.debug("Stopped narrowing {} when out of time", this.method.getName());
+						this.narrowingStopped = true;
+						return;
+					}
+					List<NumericalStateWrapper> preds = incoming.get(unit);
+					if (preds == null) {
+						// entry states do not change
+						continue;
+					}
+					NumericalStateWrapper in = getFlowBefore(unit);
+					in.set(preds.get(0));
+					for (int k = 1; k < preds.size(); k++) {
+						this.merge(unit, in.share(), preds.get(k), in);
+					}
+					if (heads.contains(unit)) {
+						this.merge(unit, in.share(), entryInitialFlow(), in);
+					}
+
+					List<NumericalStateWrapper> outs = new ArrayList<NumericalStateWrapper>(unitToAfterFallFlow.get(unit));
+					outs.addAll(unitToAfterBranchFlow.get(unit));
+					List<NumericalStateWrapper> previous = new ArrayList<NumericalStateWrapper>();
+					for (NumericalStateWrapper out : outs) {
+						previous.add(out.share());
+					}
+					try {
+						this.flowThrough(in, unit, unitToAfterFallFlow.get(unit), unitToAfterBranchFlow.get(unit));
+					} catch (AnalysisAbortedException e) {
+						// e.g., summarizing a helper ran out of time: undo the partial update
+						for (int k = 0; k < outs.size(); k++) {
+							outs.get(k).set(previous.get(k));
+						}
+						logger.debug("Stopped narrowing {}: {}", this.method.getName(), e.getMessage());
+						this.narrowingStopped = true;
+						return;
+					}
+					if (this.loopHeads.containsKey(unit) && !outs.equals(previous)) {
+						this.loopHeadsNarrowed.computeIfAbsent(unit, k -> new IntegerWrapper(0)).value++;
+						changed = true;
+					}
+				}
+				if (!changed) {
+					break;
+				}
+			}
+		} finally {
+			this.narrowing = false;
+		}
+	}
+
+	public MethodStructure getStructure() {
+		return this.structure;
+	}
+
+	/**
+	 * 
+	 * @return for each loop head, the number of times it was updated before
+	 *         reaching the fixpoint (excluding decreasing passes)
+	 */
+	public Map<Unit, Integer> getLoopIterations() {
+		Map<Unit, Integer> ret = new LinkedHashMap<Unit, Integer>();
+		for (Map.Entry<Unit, IntegerWrapper> e : this.loopHeads.entrySet()) {
+			ret.put(e.getKey(), e.getValue().value);
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @return the number of calls to {@link #flowThrough} by this analysis
+	 *         (including decreasing passes), to compare fixpoint engines (see
+	 *         {@link WtoFixpoint})
+	 */
+	public long getFlowThroughCalls() {
+		return this.flowThroughCalls;
+	}
+
+	/**
+	 * 
+	 * @return the number of variables with a bound in the states before units
+	 *         with several predecessors, summed over these units, to measure the
+	 *         size of joins (see {@link DeadVariables})
+	 */
+	public long getConstrainedAtJoins() {
+		long ret = 0;
+		for (Unit unit : this.graph) {
+			if (this.graph.getPredsOf(unit).size() < 2) {
+				continue;
+			}
+			NumericalStateWrapper state = this.getFlowBefore(unit);
+			for (String var : this.env.getVars()) {
+				if (!state.getBound(var).isTop()) {
+					ret++;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @return the precision given up by this analysis, compared to
+	 *         {@link AnalysisConfiguration#forProperty(VerificationProperty)}
+	 */
+	public Set<Degradation> getDegradations() {
+		Set<Degradation> ret = this.config.getDegradations();
+		if (this.wideningThreshold == 0) {
+			ret.add(Degradation.IMMEDIATE_WIDENING);
+		}
+		if (this.narrowingStopped) {
+			ret.add(Degradation.STOPPED_NARROWING);
+		}
+		return ret;
+	}
+
+	/**
+	 * Abort if the deadline has passed or the thread was interrupted, and widen
+	 * immediately once the deadline is close. Does nothing while narrowing (see
+	 * {@link #narrow()}).
+	 */
+	private void checkDeadline() {
+		if (this.narrowing) {
+			return;
+		}
+		if (Thread.currentThread().isInterrupted()) {
+			throw new AnalysisAbortedException("Analysis of " + this.method.getName() + " was cancelled");
+		}
+		Deadline deadline = this.config.deadline;
+		if (deadline.isExpired()) {
+			throw new AnalysisAbortedException("Analysis of " + this.method.getName() + " exceeded its deadline");
+		}
+		if (this.wideningThreshold > 0 && deadline.elapsedFraction() > 0.5) {
+			logger.debug("Deadline of {} is close, widening immediately", this.method.getName());
+			this.wideningThreshold = 0;
+		}
+	}
+
 	/**
 	 * Report unhandled instructions, types, cases, etc.
 	 * 
@@ -182,24 +509,28 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 	protected NumericalStateWrapper newInitialFlow() {
 		// should be bottom (only entry flows are not bottom originally)
 		// logger.debug("newInitalFlow was called!");
-		return NumericalStateWrapper.bottom(man, env);
+		return NumericalStateWrapper.bottom(man, packs);
 	}
 
 	@Override
 	protected NumericalStateWrapper entryInitialFlow() {
 		// state of entry points into function
-		logger.debug("entryInitalFlow was called!");
-		NumericalStateWrapper ret = NumericalStateWrapper.top(man, env);
+		NumericalStateWrapper ret = NumericalStateWrapper.top(man, packs);
 
 		// TODO: MAYBE FILL THIS OUT
-		try {
-			Abstract1 abs = ret.get();
-			Texpr1Intern intern = new Texpr1Intern(env, new Texpr1CstNode(new MpqScalar(0)));
-			abs = abs.assignCopy(man, "FROG_OVERALL_PROFIT", intern, null);
-			abs = abs.assignCopy(man, "FROG_OVERALL_PROFIT_INTERVAL", intern, null);
-			ret.set(abs);
-		} catch (ApronException e) {
-			throw new RuntimeException(e);
+		if (this.slice.tracksProfit()) {
+			if (this.config.relationalProfit) {
+				ret.assign("FROG_OVERALL_PROFIT", new Texpr1CstNode(new MpqScalar(0)));
+			}
+			ret.assign("FROG_OVERALL_PROFIT_INTERVAL", new Texpr1CstNode(new MpqScalar(0)));
+		}
+		if (this.context != null) {
+			// parameters are read from their summary variables, see handleDef
+			for (int k = 0; k < this.context.length; k++) {
+				if (this.context[k] != null) {
+					ret.meet(MethodSummaries.PARAM_PREFIX + k, this.context[k]);
+				}
+			}
 		}
 
 		return ret;
@@ -210,17 +541,14 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 		// merge the two states from w1 and w2 and store the result into w3
 		
 		// TODO: FILL THIS OUT
-		logger.debug("in merge: " + succNode);
+		this.checkDeadline();
 		
-		try {
-			w3.set(w1.get().joinCopy(man, w2.get())); // joining
-		} catch (ApronException e) {
-			throw new RuntimeException(e);
-		}
+		w3.set(w1.joinCopy(w2)); // joining
 
-		logger.debug("w1: " + w1);
-		logger.debug("w2: " + w2);
-		logger.debug("w3: " + w3);
+		if (AnalysisTracer.ENABLED) {
+			AnalysisTracer.trace(AnalysisTracer.Event.MERGE, this.method, succNode, loopHeads.containsKey(succNode),
+					man, new String[] { "w1", "w2", "w3" }, w1.get(), w2.get(), w3.get());
+		}
 	}
 
 	@Override
@@ -232,26 +560,24 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 	@Override
 	protected void flowThrough(NumericalStateWrapper inWrapper, Unit op, List<NumericalStateWrapper> fallOutWrappers,
 			List<NumericalStateWrapper> branchOutWrappers) {
-		try {
-			logger.debug(
-				inWrapper + 
-				" " +  inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT") + inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT_INTERVAL")  + " " + op + " => ?");
-		} catch (ApronException e) {
-			throw new RuntimeException(e);
-		}
+		this.checkDeadline();
+		this.flowThroughCalls++;
 		
 		// TODO: FILL THIS OUT
 		// Apply widening
-		if (loopHeads.containsKey(op)) { // is a loop head
+		if (!this.narrowing && loopHeads.containsKey(op)) { // is a loop head
 			int num_iters = loopHeads.get(op).value++;
-			if (num_iters > WIDENING_THRESHOLD) {
-				try {
-					Abstract1 prevState = loopHeadState.get(op).get();
-					Abstract1 curState = inWrapper.get();
-
+			int delay = this.thresholds == null ? this.wideningThreshold
+					: Math.min(this.wideningThreshold, WideningThresholds.DELAY);
+			if (num_iters > delay) {
+				NumericalStateWrapper prevState = loopHeadState.get(op).copy();
+				NumericalStateWrapper curState = inWrapper;
+
+				NumericalStateWrapper widened;
+				if (this.slice.tracksProfit()) {
 					// widen an interval
-					Interval prev_profit_range = prevState.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL");
-					Interval cur_profit_range = curState.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL");
+					Interval prev_profit_range = prevState.getBound("FROG_OVERALL_PROFIT_INTERVAL");
+					Interval cur_profit_range = curState.getBound("FROG_OVERALL_PROFIT_INTERVAL");
 					Interval widened_profit_range = new Interval(prev_profit_range);
 					if (prev_profit_range.isBottom() || cur_profit_range.isBottom()) {
 						// widening approximates a join, so just fallback to join if they are bottom
@@ -262,35 +588,29 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 						}
 					} else {
 						if (cur_profit_range.inf().cmp(prev_profit_range.inf()) == -1) {
-							widened_profit_range.setInf(new DoubleScalar(Double.NEGATIVE_INFINITY));
+							widened_profit_range.setInf(this.thresholds == null ? new DoubleScalar(Double.NEGATIVE_INFINITY)
+									: this.thresholds.below(cur_profit_range.inf()));
 						}
 						if (cur_profit_range.sup().cmp(prev_profit_range.sup()) == 1) {
-							widened_profit_range.setSup(new DoubleScalar(Double.POSITIVE_INFINITY));
+							widened_profit_range.setSup(this.thresholds == null ? new DoubleScalar(Double.POSITIVE_INFINITY)
+									: this.thresholds.above(cur_profit_range.sup()));
 						}			
 					}
 
 					// forget before passing into widened, because we don't want it to
 					// cause any further undesired overapproximations
-					prevState = prevState.forgetCopy(man, "FROG_OVERALL_PROFIT_INTERVAL", false);
-					Abstract1 widened = this.widenFixed(prevState, curState);
+					prevState.forget("FROG_OVERALL_PROFIT_INTERVAL");
+					widened = this.widenFixed(prevState, curState);
+					widened.meet("FROG_OVERALL_PROFIT_INTERVAL", widened_profit_range);
+				} else {
+					widened = this.widenFixed(prevState, curState);
+				}
 
-					String[] vars = {"FROG_OVERALL_PROFIT_INTERVAL"};
-					Interval[] box = {widened_profit_range};
-					Abstract1 intervalAbstract = new Abstract1(man, env, vars, box);
-					widened = widened.meetCopy(man, intervalAbstract);
-					
-					inWrapper = new NumericalStateWrapper(man, widened);
-
-					logger.debug("Applying widening:");
-					logger.debug("prev: " + prevState);
-					logger.debug("cur : " + curState);
-					logger.debug("res : " + widened);
-					logger.debug("prevBound: " + prevState.getBound(man, "FROG_OVERALL_PROFIT") + prev_profit_range);
-					logger.debug("curBound : " + curState.getBound(man, "FROG_OVERALL_PROFIT") + cur_profit_range);
-					logger.debug("resBound : " + widened.getBound(man, "FROG_OVERALL_PROFIT") + widened_profit_range);
-					
-				} catch (ApronException e) {
-					throw new RuntimeException(e);
+				inWrapper = widened;
+
+				if (AnalysisTracer.ENABLED) {
+					AnalysisTracer.trace(AnalysisTracer.Event.WIDEN, this.method, op, true, man,
+							new String[] { "prev", "cur", "res" }, prevState.get(), curState.get(), widened.get());
 				}
 			}
 			loopHeadState.put(op, inWrapper);
@@ -343,9 +663,16 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 					unhandled("Assignment to field", left, true);
 				}
 
-				if (left.getType() instanceof RefType) {
+				MethodStructure callee = this.structure.getHelperCall(op);
+				if (callee != null) {
+					// e.g. i1 = staticinvoke <Foo: int helper(int)>(i0)
+					handleHelperCall(callee, (InvokeExpr) right, left.getType() instanceof RefType ? null : left,
+							fallOutWrapper);
+				} else if (left.getType() instanceof RefType) {
 					// assignments to references are handled by pointer analysis
 					// no action necessary
+				} else if (!this.slice.contains(((JimpleLocal) left).getName())) {
+					// irrelevant to the property, not part of the environment
 				} else {
 					// handle assignment
 					handleDef(fallOutWrapper, left, right);
@@ -364,69 +691,71 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 					Texpr1Node node2 = getNodeFromOp(op2);
 					// Get the abstract domain of op1 and op2, and combine them down here
 
-					Abstract1 trueBranch = branchOutWrapper.get();
-					Abstract1 falseBranch = fallOutWrapper.get();
+					NumericalStateWrapper trueBranch = branchOutWrapper;
+					NumericalStateWrapper falseBranch = fallOutWrapper;
 
 					Texpr1Node node1MinusNode2 = new Texpr1BinNode(Texpr1BinNode.OP_SUB, Texpr1BinNode.RTYPE_INT,
 																   Texpr1BinNode.RDIR_ZERO, node1, node2);
 					Texpr1Node node2MinusNode1 = new Texpr1BinNode(Texpr1BinNode.OP_SUB, Texpr1BinNode.RTYPE_INT,
 																   Texpr1BinNode.RDIR_ZERO, node2, node1);
-					Tcons1 equal = new Tcons1(env, Tcons1.EQ, node1MinusNode2); // op1 - op2 == 0
-					Tcons1 greater_equal = new Tcons1(env, Tcons1.SUPEQ, node1MinusNode2); // op1 - op2 >= 0
-					Tcons1 greater_than = new Tcons1(env, Tcons1.SUP, node1MinusNode2); // op1 - op2 > 0
-					Tcons1 less_equal = new Tcons1(env, Tcons1.SUPEQ, node2MinusNode1); // op1 - op2 <= 0, i.e. op2 - op1 >= 0
-					Tcons1 less_than = new Tcons1(env, Tcons1.SUP, node2MinusNode1); // op1 - op2 < 0, i.e. op2 - op1 > 0
+					// op1 - op2 == 0: meet(Tcons1.EQ, node1MinusNode2)
+					// op1 - op2 >= 0: meet(Tcons1.SUPEQ, node1MinusNode2)
+					// op1 - op2 > 0: meet(Tcons1.SUP, node1MinusNode2)
+					// op1 - op2 <= 0, i.e. op2 - op1 >= 0: meet(Tcons1.SUPEQ, node2MinusNode1)
+					// op1 - op2 < 0, i.e. op2 - op1 > 0: meet(Tcons1.SUP, node2MinusNode1)
 
 					if (conditionExpr instanceof JEqExpr) { // ==
-						trueBranch = trueBranch.meetCopy(man, equal);
+						trueBranch.meet(Tcons1.EQ, node1MinusNode2);
 
 						// etc and (d < 0 or d > 0) == (etc and d<0) or (etc and d>0)
-						Abstract1 falseBranchGT = falseBranch.meetCopy(man, greater_than);
-						Abstract1 falseBranchLT = falseBranch.meetCopy(man, less_than);
-						falseBranch = falseBranchGT.joinCopy(man, falseBranchLT);
+						NumericalStateWrapper falseBranchGT = falseBranch.copy();
+						falseBranchGT.meet(Tcons1.SUP, node1MinusNode2);
+						NumericalStateWrapper falseBranchLT = falseBranch.copy();
+						falseBranchLT.meet(Tcons1.SUP, node2MinusNode1);
+						falseBranch.set(falseBranchGT.joinCopy(falseBranchLT));
 
 					} else if (conditionExpr instanceof JGeExpr) { // >=
-						trueBranch = trueBranch.meetCopy(man, greater_equal);
-						falseBranch = falseBranch.meetCopy(man, less_than);
+						trueBranch.meet(Tcons1.SUPEQ, node1MinusNode2);
+						falseBranch.meet(Tcons1.SUP, node2MinusNode1);
 
 					} else if (conditionExpr instanceof JGtExpr) { // >
-						trueBranch = trueBranch.meetCopy(man, greater_than);
-						falseBranch = falseBranch.meetCopy(man, less_equal);
+						trueBranch.meet(Tcons1.SUP, node1MinusNode2);
+						falseBranch.meet(Tcons1.SUPEQ, node2MinusNode1);
 
 					} else if (conditionExpr instanceof JLeExpr) { // <=
-						trueBranch = trueBranch.meetCopy(man, less_equal);
-						falseBranch = falseBranch.meetCopy(man, greater_than);
+						trueBranch.meet(Tcons1.SUPEQ, node2MinusNode1);
+						falseBranch.meet(Tcons1.SUP, node1MinusNode2);
 
 					} else if (conditionExpr instanceof JLtExpr) { // <
-						trueBranch = trueBranch.meetCopy(man, less_than);
-						falseBranch = falseBranch.meetCopy(man, greater_equal);
+						trueBranch.meet(Tcons1.SUP, node2MinusNode1);
+						falseBranch.meet(Tcons1.SUPEQ, node1MinusNode2);
 
 					} else if (conditionExpr instanceof JNeExpr) { // !=, i.e. > or <
-						falseBranch = falseBranch.meetCopy(man, equal);
+						falseBranch.meet(Tcons1.EQ, node1MinusNode2);
 
-						Abstract1 trueBranchGT = trueBranch.meetCopy(man, greater_than);
-						Abstract1 trueBranchLT = trueBranch.meetCopy(man, less_than);
-						trueBranch = trueBranchGT.joinCopy(man, trueBranchLT);
+						NumericalStateWrapper trueBranchGT = trueBranch.copy();
+						trueBranchGT.meet(Tcons1.SUP, node1MinusNode2);
+						NumericalStateWrapper trueBranchLT = trueBranch.copy();
+						trueBranchLT.meet(Tcons1.SUP, node2MinusNode1);
+						trueBranch.set(trueBranchGT.joinCopy(trueBranchLT));
 
 					} else {
 						// sanity check
 						throw new RuntimeException("VIOLATION");
 					}
 
-					branchOutWrapper.set(trueBranch);
-					fallOutWrapper.set(falseBranch);
-
 				} else {
 					unhandled("Unhandled condition type", jIfStmt, true);
 				}
 
-				logger.debug(jIfStmt.getCondition().toString());
-
 			} else if (s instanceof JInvokeStmt) {
 				// handle invocations
 				JInvokeStmt jInvStmt = (JInvokeStmt) s;
 				InvokeExpr invokeExpr = jInvStmt.getInvokeExpr();
-				if (invokeExpr instanceof JVirtualInvokeExpr) {
+				MethodStructure callee = this.structure.getHelperCall(op);
+				if (callee != null) {
+					handleHelperCall(callee, invokeExpr, null, fallOutWrapper);
+				} else if (invokeExpr instanceof JVirtualInvokeExpr) {
 					handleInvoke(jInvStmt, fallOutWrapper);
 				} else if (invokeExpr instanceof JSpecialInvokeExpr) {
 					// initializer for object
@@ -436,26 +765,25 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 				}
 			} else if (s instanceof JGotoStmt) {
 				// safe to ignore
-			} else if (s instanceof JReturnVoidStmt) {
-				// safe to ignore
+			} else if (s instanceof JReturnVoidStmt || s instanceof JReturnStmt) {
+				// safe to ignore (return values are only needed by getSummary)
 			} else {
 				unhandled("Unhandled statement", s, true);
 			}
 
-			// log outcome
+			// forget variables that are dead after op
 			if (fallOutWrapper != null) {
-				logger.debug(
-					inWrapper.get() + 
-					" " + inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT") + inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT_INTERVAL")  + " " + s + " =>[fallout] " + 
-					fallOutWrapper + 
-					" " + fallOutWrapper.get().getBound(man, "FROG_OVERALL_PROFIT") + fallOutWrapper.get().getBound(man, "FROG_OVERALL_PROFIT_INTERVAL"));
+				fallOutWrapper.forget(this.dead.getDeadOnFallOut(op));
 			}
 			if (branchOutWrapper != null) {
-				logger.debug(
-					inWrapper.get() +
-					" " + inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT") + inWrapper.get().getBound(man, "FROG_OVERALL_PROFIT_INTERVAL")  + " " + s + " =>[branchout] " + 
-					branchOutWrapper + 
-					" " + branchOutWrapper.get().getBound(man, "FROG_OVERALL_PROFIT") + branchOutWrapper.get().getBound(man, "FROG_OVERALL_PROFIT_INTERVAL"));
+				branchOutWrapper.forget(this.dead.getDeadOnBranchOut(op));
+			}
+
+			if (AnalysisTracer.ENABLED) {
+				AnalysisTracer.trace(AnalysisTracer.Event.FLOW, this.method, op, loopHeads.containsKey(op), man,
+						new String[] { "in", "fallOut", "branchOut" }, inWrapper.get(),
+						fallOutWrapper == null ? null : fallOutWrapper.get(),
+						branchOutWrapper == null ? null : branchOutWrapper.get());
 			}
 
 		} catch (ApronException e) {
@@ -471,15 +799,8 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 			// Frog.total_profit += (price - this.production_cost);
 			// min(total_profit) = min(total_profit) + min(price) - max(production_cost)
 
-			Abstract1 abs = fallOutWrapper.get();
-
 			JVirtualInvokeExpr invokeExpr = (JVirtualInvokeExpr) jInvStmt.getInvokeExpr();
-			Local base = (Local) invokeExpr.getBase();
-			List<FrogInitializer> initializers = pointsTo.pointsTo(base);
-			int max_cost = Integer.MIN_VALUE;
-			for (FrogInitializer initializer: initializers) {
-				max_cost = Math.max(max_cost, initializer.argument);
-			}
+			int max_cost = pointsTo.getSellSite(invokeExpr).maxCost;
 			Texpr1Node costNode = new Texpr1CstNode(new MpqScalar(max_cost));
 
 			Value arg = invokeExpr.getArg(0);
@@ -487,32 +808,29 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 
 			Texpr1Node argSubCost = new Texpr1BinNode(Texpr1BinNode.OP_SUB, Texpr1BinNode.RTYPE_INT,
 				Texpr1BinNode.RDIR_ZERO, argNode, costNode);
-			Texpr1Node totalNode = new Texpr1VarNode("FROG_OVERALL_PROFIT");
-			Texpr1Node totalPlusArgSubCost = new Texpr1BinNode(Texpr1BinNode.OP_ADD, Texpr1BinNode.RTYPE_INT,
-				Texpr1BinNode.RDIR_ZERO, totalNode, argSubCost);
-			Texpr1Intern intern = new Texpr1Intern(env, totalPlusArgSubCost);
-			
-			abs = abs.assignCopy(man, "FROG_OVERALL_PROFIT", intern, null);
+			if (this.config.relationalProfit) {
+				Texpr1Node totalNode = new Texpr1VarNode("FROG_OVERALL_PROFIT");
+				Texpr1Node totalPlusArgSubCost = new Texpr1BinNode(Texpr1BinNode.OP_ADD, Texpr1BinNode.RTYPE_INT,
+					Texpr1BinNode.RDIR_ZERO, totalNode, argSubCost);
+
+				fallOutWrapper.assign("FROG_OVERALL_PROFIT", totalPlusArgSubCost);
+			}
 
 			// getting bounds is an over-approximation
 			// min(total_profit) = min(total_profit) + min(price) - max(production_cost)
-			Interval profit_range = abs.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL"); // do this independently from the Polyhedral domain
-			Interval sell_range = abs.getBound(man, new Texpr1Intern(env, argNode));
+			Interval profit_range = fallOutWrapper.getBound("FROG_OVERALL_PROFIT_INTERVAL"); // do this independently from the Polyhedral domain
+			Interval sell_range = fallOutWrapper.getBound(argNode);
 			Interval profitPlusSell = AddIntervals(profit_range, sell_range);
 			Interval resInterval = AddIntervals(profitPlusSell, new Interval(-max_cost, -max_cost));
 			
 			// whenever interval over-approximates too much, we can refine it with the polyhedral solution:
 			// whatever is in interval that is not in polyhedral can go away
 			// i.e. interval' = interval - !polyhedral
-			Interval polyhedralInterval = abs.getBound(man, "FROG_OVERALL_PROFIT");
+			Interval polyhedralInterval = fallOutWrapper.getBound("FROG_OVERALL_PROFIT");
 			
-			logger.debug("profit_range: " + profit_range.toString());
-			logger.debug("sell_range: " + sell_range.toString());
-			logger.debug("max_cost: " + max_cost);
-			logger.debug("polyhedralInterval: " + polyhedralInterval.toString());
-			logger.debug("resInterval: " + resInterval.toString());
-			logger.debug("include: " + (polyhedralInterval.isLeq(resInterval) ? "yes" : "no"));
-			if (polyhedralInterval.isLeq(resInterval)) {
+			if (!this.config.relationalProfit) {
+				// FROG_OVERALL_PROFIT is not tracked, nothing to refine
+			} else if (polyhedralInterval.isLeq(resInterval)) {
 				resInterval = polyhedralInterval;
 			} else if (polyhedralInterval.isBottom() || resInterval.isBottom()) {
 				resInterval.setBottom();
@@ -529,17 +847,121 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 				}
 			}
 			
-			String[] vars = {"FROG_OVERALL_PROFIT_INTERVAL"};
-			Interval[] box = {resInterval};
-			Abstract1 intervalAbstract = new Abstract1(man, env, vars, box);
-			abs = abs.forgetCopy(man, "FROG_OVERALL_PROFIT_INTERVAL", false);
-			abs = abs.meetCopy(man, intervalAbstract);
+			fallOutWrapper.forget("FROG_OVERALL_PROFIT_INTERVAL");
+			fallOutWrapper.meet("FROG_OVERALL_PROFIT_INTERVAL", resInterval);
 
-			fallOutWrapper.set(abs);
+			if (AnalysisTracer.ENABLED) {
+				AnalysisTracer.trace(AnalysisTracer.Event.SELL, this.method, jInvStmt, false, man,
+						new String[] { "out" }, fallOutWrapper.get());
+			}
 
-			logger.debug("Range of total profit: " + abs.getBound(man, "FROG_OVERALL_PROFIT").toString());
-			logger.debug("Over-approximation   : " + abs.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL").toString());
+		}
+	}
 
+	/**
+	 * Apply the summary of a helper (see {@link MethodSummaries})
+	 * 
+	 * @param callee         structure of the helper
+	 * @param invokeExpr     call to the helper
+	 * @param left           int variable receiving the return value, or null
+	 * @param fallOutWrapper state after the call
+	 * @throws ApronException
+	 */
+	private void handleHelperCall(MethodStructure callee, InvokeExpr invokeExpr, Value left,
+			NumericalStateWrapper fallOutWrapper) throws ApronException {
+		Abstract1 abs = fallOutWrapper.get();
+		if (abs.isBottom(man)) {
+			return;
+		}
+		MethodSummary summary = MethodSummaries.getSummary(callee, this.pointsTo, this.config);
+		String[] callVars = MethodSummaries.getSummaryEnvironment(callee.getMethod()).getVars();
+
+		// bind arguments
+		abs = abs.forgetCopy(man, callVars, false);
+		for (int k = 0; k < invokeExpr.getArgCount(); k++) {
+			Value arg = invokeExpr.getArg(k);
+			if (arg instanceof IntConstant || (arg instanceof JimpleLocal && SootHelper.isIntValue(arg))) {
+				Texpr1Intern intern = new Texpr1Intern(env, getNodeFromOp(arg));
+				abs = abs.assignCopy(man, MethodSummaries.CALL_PARAM_PREFIX + k, intern, null);
+			}
+		}
+		abs = abs.meetCopy(man, summary.toAbstract(man, env));
+
+		// add the profit of the callee
+		if (this.config.relationalProfit) {
+			Texpr1Node total = new Texpr1BinNode(Texpr1BinNode.OP_ADD, Texpr1BinNode.RTYPE_INT,
+					Texpr1BinNode.RDIR_ZERO, new Texpr1VarNode("FROG_OVERALL_PROFIT"),
+					new Texpr1VarNode(MethodSummaries.CALL_PROFIT));
+			abs = abs.assignCopy(man, "FROG_OVERALL_PROFIT", new Texpr1Intern(env, total), null);
+		}
+		Interval profit_range = AddIntervals(abs.getBound(man, "FROG_OVERALL_PROFIT_INTERVAL"),
+				abs.getBound(man, MethodSummaries.CALL_PROFIT_INTERVAL));
+		String[] vars = {"FROG_OVERALL_PROFIT_INTERVAL"};
+		Interval[] box = {profit_range};
+		abs = abs.forgetCopy(man, "FROG_OVERALL_PROFIT_INTERVAL", false);
+		abs = abs.meetCopy(man, new Abstract1(man, env, vars, box));
+
+		if (left != null) {
+			Texpr1Intern intern = new Texpr1Intern(env, new Texpr1VarNode(MethodSummaries.CALL_RETURN));
+			abs = abs.assignCopy(man, ((JimpleLocal) left).getName(), intern, null);
+		}
+		abs = abs.forgetCopy(man, callVars, false);
+		fallOutWrapper.set(abs);
+	}
+
+	/**
+	 * 
+	 * @return the relation between the int parameters of the analyzed method on
+	 *         entry, its return value and the profit it makes (requires
+	 *         {@link MethodSummaries#isEnabled()})
+	 */
+	public MethodSummary getSummary() {
+		Environment summaryEnv = MethodSummaries.getSummaryEnvironment(this.method);
+		int params = this.method.getParameterCount();
+		String[] from = new String[params + 3];
+		String[] to = new String[params + 3];
+		for (int k = 0; k < params; k++) {
+			from[k] = MethodSummaries.PARAM_PREFIX + k;
+			to[k] = MethodSummaries.CALL_PARAM_PREFIX + k;
+		}
+		from[params] = MethodSummaries.RETURN;
+		to[params] = MethodSummaries.CALL_RETURN;
+		from[params + 1] = "FROG_OVERALL_PROFIT";
+		to[params + 1] = MethodSummaries.CALL_PROFIT;
+		from[params + 2] = "FROG_OVERALL_PROFIT_INTERVAL";
+		to[params + 2] = MethodSummaries.CALL_PROFIT_INTERVAL;
+
+		try {
+			// join the states at all returns
+			Abstract1 exit = null;
+			for (Unit unit : this.method.getActiveBody().getUnits()) {
+				if (!(unit instanceof JReturnVoidStmt || unit instanceof JReturnStmt)) {
+					continue;
+				}
+				Abstract1 abs = this.getFlowBefore(unit).get();
+				if (abs.isBottom(man)) {
+					continue;
+				}
+				if (unit instanceof JReturnStmt) {
+					Value op = ((JReturnStmt) unit).getOp();
+					if (op instanceof IntConstant || (op instanceof JimpleLocal && SootHelper.isIntValue(op))) {
+						Texpr1Intern intern = new Texpr1Intern(env, getNodeFromOp(op));
+						abs = abs.assignCopy(man, MethodSummaries.RETURN, intern, null);
+					}
+				}
+				exit = exit == null ? abs : exit.joinCopy(man, abs);
+			}
+			if (exit == null) {
+				return new MethodSummary(summaryEnv, null);
+			}
+
+			Environment ownEnv = new Environment(from, new String[0]);
+			exit = exit.changeEnvironmentCopy(man, ownEnv, false);
+			exit = exit.renameCopy(man, from, to);
+			exit = exit.changeEnvironmentCopy(man, summaryEnv, false);
+			return new MethodSummary(summaryEnv, exit.toLincons(man));
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -559,14 +981,9 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 		// TODO: FILL THIS OUT
 		// assumption: left != right
 		if (left.equals(right)) {
-			logger.debug("left == right!");
 			return;
 		}
 
-		// Extracting the abstr
-		Abstract1 abstr = outWrapper.get();
-		logger.debug("Initial map: " + abstr.toString());
-
 		// process left
 		String varNameLeft;
 		if (left instanceof JimpleLocal) {
@@ -592,8 +1009,8 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 				// https://en.wikipedia.org/wiki/Interval_arithmetic
 				// [x₁, x₂] · [y₁, y₂] = [min{x₁y₁, x₁y₂, x₂y₁, x₂y₂}, max{x₁y₁, x₁y₂, x₂y₁, x₂y₂}]
 
-				Interval int1 = abstr.getBound(man, opName1);
-				Interval int2 = abstr.getBound(man, opName2);
+				Interval int1 = outWrapper.getBound(opName1);
+				Interval int2 = outWrapper.getBound(opName2);
 
 				Interval int3 = new Interval();
 				if (int1.isBottom() || int2.isBottom()) {
@@ -616,20 +1033,16 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 					Texpr1Node scalarNode = new Texpr1CstNode(scalar);
 					Texpr1Node varTimesScalar = new Texpr1BinNode(Texpr1BinNode.OP_MUL, Texpr1BinNode.RTYPE_INT,
 													Texpr1BinNode.RDIR_ZERO, varNode, scalarNode);
-					Texpr1Intern intern = new Texpr1Intern(env, varTimesScalar);
-					abstr = abstr.assignCopy(man, varNameLeft, intern, null);
+					outWrapper.assign(varNameLeft, varTimesScalar);
 					
 				} else {
 					int3 = MultiplyIntervals(int1, int2);
 				}
 
 				if (int3 != null) {
-					String[] vars = {varNameLeft};
-					Interval[] box = {int3};
-					Abstract1 leftAbstract = new Abstract1(man, env, vars, box);
 					// forget left, then meet
-					abstr = abstr.forgetCopy(man, varNameLeft, false);
-					abstr = abstr.meetCopy(man, leftAbstract);
+					outWrapper.forget(varNameLeft);
+					outWrapper.meet(varNameLeft, int3);
 				}
 
 			} else {
@@ -652,19 +1065,22 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 				}
 
 				// assign new value
-				Texpr1Intern internRight = new Texpr1Intern(env, nodeRight);
-				abstr = abstr.assignCopy(man, varNameLeft, internRight, null);
+				outWrapper.assign(varNameLeft, nodeRight);
 
 			}
 
 		} else if (right instanceof ParameterRef) { // e.g. i3 := @parameter0: int => ?
 			// TODO: how do you handle parameter?
-			// Nothing really needed to do for parameters
+			// Nothing really needed to do for parameters, except remembering their
+			// value on entry for getSummary
+			if (MethodSummaries.isEnabled()) {
+				String param = MethodSummaries.PARAM_PREFIX + ((ParameterRef) right).getIndex();
+				outWrapper.assign(varNameLeft, new Texpr1VarNode(param));
+			}
 		} else if (right instanceof IntConstant || right instanceof JimpleLocal) {
 
 			Texpr1Node nodeRight = getNodeFromOp(right);
-			Texpr1Intern internRight = new Texpr1Intern(env, nodeRight);
-			abstr = abstr.assignCopy(man, varNameLeft, internRight, null);
+			outWrapper.assign(varNameLeft, nodeRight);
 
 		} else if (right instanceof JNegExpr) { // not necessary
 			unhandled("Unhandled unary negate operation", right, true);
@@ -672,9 +1088,6 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 			unhandled("Unhandled define operation", right, true);
 		}
 
-		// set the abstr
-		outWrapper.set(abstr);
-		logger.debug("Final map: " + abstr.toString());
 	}
 
 	// TODO: MAYBE FILL THIS OUT: add convenience methods
@@ -690,9 +1103,9 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 		return node;
 	}
 	
-	private Abstract1 widenFixed(Abstract1 oldState, Abstract1 newState) throws ApronException {
-        Abstract1 joined = newState.joinCopy(man, oldState);
-        Abstract1 widened = oldState.widening(man, joined);
+	private NumericalStateWrapper widenFixed(NumericalStateWrapper oldState, NumericalStateWrapper newState) {
+        NumericalStateWrapper joined = newState.joinCopy(oldState);
+        NumericalStateWrapper widened = oldState.wideningCopy(joined, this.thresholds);
         return widened;
     }
 
@@ -722,9 +1135,9 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
 			temp = b;
         } else { // are finite
             Mpq a_mpq = new Mpq();
-            ((MpqScalar) a).toMpq(a_mpq, 0);
+            a.toMpq(a_mpq, 0);
             Mpq b_mpq = new Mpq();
-            ((MpqScalar) b).toMpq(b_mpq, 0);
+            b.toMpq(b_mpq, 0);
             a_mpq.add(b_mpq);
             temp = new MpqScalar(a_mpq);
         }
@@ -765,9 +1178,9 @@ public class NumericalAnalysis extends ForwardBranchedFlowAnalysis<NumericalStat
             temp.setInfty(a.sgn() * b.sgn());
         } else { // are finite
             Mpq a_mpq = new Mpq();
-            ((MpqScalar) a).toMpq(a_mpq, 0);
+            a.toMpq(a_mpq, 0);
             Mpq b_mpq = new Mpq();
-            ((MpqScalar) b).toMpq(b_mpq, 0);
+            b.toMpq(b_mpq, 0);
             a_mpq.mul(b_mpq);
             temp = new MpqScalar(a_mpq);
         }
@@ -0,0 +1,59 @@
+package ch.ethz.rse.numerical;
+
+import apron.Manager;
+
+/**
+ * Numerical abstract domains supported by {@link NumericalAnalysis}
+ */
+public enum NumericalDomain {
+	/**
+	 * Convex polyhedra (strict)
+	 */
+	POLKA_STRICT,
+	/**
+	 * Convex polyhedra (loose, i.e., without strict inequalities)
+	 */
+	POLKA_LOOSE,
+	/**
+	 * Linear equalities
+	 */
+	POLKA_EQ,
+	/**
+	 * Octagons (constraints of the form +-x +-y <= c)
+	 */
+	OCTAGON,
+	/**
+	 * Intervals
+	 */
+	BOX;
+
+	/**
+	 * 
+	 * @return the manager of this domain for the current thread
+	 */
+	public Manager getManager() {
+		switch (this) {
+		case POLKA_STRICT:
+			return ManagerPool.getPolka();
+		case POLKA_LOOSE:
+			return ManagerPool.getPolkaLoose();
+		case POLKA_EQ:
+			return ManagerPool.getPolkaEq();
+		case OCTAGON:
+			return ManagerPool.getOctagon();
+		case BOX:
+			return ManagerPool.getBox();
+		default:
+			throw new UnsupportedOperationException(this.toString());
+		}
+	}
+
+	/**
+	 * 
+	 * @param name e.g., "polka-strict"
+	 * @return the corresponding domain
+	 */
+	public static NumericalDomain fromOption(String name) {
+		return NumericalDomain.valueOf(name.toUpperCase().replace('-', '_'));
+	}
+}
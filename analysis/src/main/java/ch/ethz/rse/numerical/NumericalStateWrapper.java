@@ -11,6 +11,7 @@ import apron.Manager;
 import apron.NotImplementedException;
 import apron.Tcons1;
 import apron.Texpr1Intern;
+import apron.Texpr1Node;
 import soot.Local;
 import soot.SootHelper;
 import soot.Value;
@@ -19,7 +20,10 @@ import soot.jimple.InvokeExpr;
 
 /**
  * Convenience wrapper for numerical abstract elements in Apron.
- * 
+ *
+ * The state is the product of one abstract element per {@link VariablePacks
+ * pack}. It is bottom if any of its elements is bottom. With a single pack, it
+ * simply wraps one element over all variables.
  */
 public class NumericalStateWrapper {
 
@@ -28,18 +32,32 @@ public class NumericalStateWrapper {
 	// STATIC
 
 	public static NumericalStateWrapper bottom(Manager man, Environment env) {
+		return NumericalStateWrapper.bottom(man, VariablePacks.single(env));
+	}
+
+	public static NumericalStateWrapper top(Manager man, Environment env) {
+		return NumericalStateWrapper.top(man, VariablePacks.single(env));
+	}
+
+	public static NumericalStateWrapper bottom(Manager man, VariablePacks packs) {
 		try {
-			Abstract1 bot = new Abstract1(man, env, true);
-			return new NumericalStateWrapper(man, bot);
+			Abstract1[] elems = new Abstract1[packs.size()];
+			for (int p = 0; p < elems.length; p++) {
+				elems[p] = new Abstract1(man, packs.getEnvironment(p), true);
+			}
+			return new NumericalStateWrapper(man, packs, elems);
 		} catch (ApronException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	public static NumericalStateWrapper top(Manager man, Environment env) {
+	public static NumericalStateWrapper top(Manager man, VariablePacks packs) {
 		try {
-			Abstract1 top = new Abstract1(man, env);
-			return new NumericalStateWrapper(man, top);
+			Abstract1[] elems = new Abstract1[packs.size()];
+			for (int p = 0; p < elems.length; p++) {
+				elems[p] = new Abstract1(man, packs.getEnvironment(p));
+			}
+			return new NumericalStateWrapper(man, packs, elems);
 		} catch (ApronException e) {
 			throw new RuntimeException(e);
 		}
@@ -48,42 +66,102 @@ public class NumericalStateWrapper {
 	// FIELDS
 
 	/**
-	 * Wrapped abstract element
+	 * Wrapped abstract elements, one per pack
 	 */
-	private Abstract1 elem;
+	private Abstract1[] elems;
 
 	/**
 	 * Manager for numerical abstract domain
 	 */
 	private final Manager man;
 
+	private final VariablePacks packs;
+
 	// CONSTRUCTOR
 
 	/**
-	 * 
+	 *
 	 * @param man  Apron abstract domain manager
 	 * @param elem Abstract Apron element
 	 */
 	public NumericalStateWrapper(Manager man, Abstract1 elem) {
+		this(man, VariablePacks.single(elem.getEnvironment()), new Abstract1[] { elem });
+	}
+
+	private NumericalStateWrapper(Manager man, VariablePacks packs, Abstract1[] elems) {
 		this.man = man;
-		this.elem = elem;
+		this.packs = packs;
+		this.elems = elems;
 	}
 
 	// FUNCTIONS
 
+	/**
+	 *
+	 * @return the state as a single element over all variables (costly if there
+	 *         are several packs, prefer the methods of this class)
+	 */
 	public Abstract1 get() {
-		return elem;
+		if (this.elems.length == 1) {
+			return this.elems[0];
+		}
+		try {
+			Abstract1[] lifted = new Abstract1[this.elems.length];
+			for (int p = 0; p < lifted.length; p++) {
+				lifted[p] = this.elems[p].changeEnvironmentCopy(this.man, this.packs.env, false);
+			}
+			return Abstract1.meet(this.man, lifted);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
+	/**
+	 *
+	 * @param e element over all variables, projected onto each pack
+	 */
 	public void set(Abstract1 e) {
-		elem = e;
+		if (this.elems.length == 1) {
+			this.elems[0] = e;
+			return;
+		}
+		try {
+			Abstract1[] projected = new Abstract1[this.elems.length];
+			for (int p = 0; p < projected.length; p++) {
+				projected[p] = e.changeEnvironmentCopy(this.man, this.packs.getEnvironment(p), false);
+			}
+			this.elems = projected;
+		} catch (ApronException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Replace this state by other (without copying the elements, which are never
+	 * modified in place)
+	 *
+	 * @param other
+	 */
+	public void set(NumericalStateWrapper other) {
+		this.elems = other.elems.clone();
+	}
+
+	/**
+	 *
+	 * @return a state sharing the elements of this state (cheaper than
+	 *         {@link #copy()}, as elements are never modified in place)
+	 */
+	public NumericalStateWrapper share() {
+		return new NumericalStateWrapper(this.man, this.packs, this.elems.clone());
 	}
 
 	public NumericalStateWrapper copy() {
-		Abstract1 copy;
 		try {
-			copy = new Abstract1(man, this.elem);
-			return new NumericalStateWrapper(this.man, copy);
+			Abstract1[] copy = new Abstract1[this.elems.length];
+			for (int p = 0; p < copy.length; p++) {
+				copy[p] = new Abstract1(this.man, this.elems[p]);
+			}
+			return new NumericalStateWrapper(this.man, this.packs, copy);
 		} catch (ApronException e) {
 			throw new RuntimeException(e);
 		}
@@ -91,12 +169,208 @@ public class NumericalStateWrapper {
 
 	/**
 	 * Copies this state into `other`
-	 * 
+	 *
 	 * @param other
 	 */
 	public void copyInto(NumericalStateWrapper other) {
 		NumericalStateWrapper copy = this.copy();
-		other.elem = copy.elem;
+		other.elems = copy.elems;
+	}
+
+	public boolean isBottom() {
+		try {
+			for (Abstract1 elem : this.elems) {
+				if (elem.isBottom(this.man)) {
+					return true;
+				}
+			}
+			return false;
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param var
+	 * @return the bounds of var (bottom if this state is bottom)
+	 */
+	public Interval getBound(String var) {
+		try {
+			if (this.elems.length > 1 && this.isBottom()) {
+				Interval ret = new Interval();
+				ret.setBottom();
+				return ret;
+			}
+			return this.elems[this.packs.getPack(var)].getBound(this.man, var);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param expr expression over variables of a single pack
+	 * @return the bounds of expr
+	 */
+	public Interval getBound(Texpr1Node expr) {
+		int p = this.packs.getPack(expr.getVars());
+		if (p < 0) {
+			throw new IllegalArgumentException(expr + " spans several packs");
+		}
+		try {
+			if (this.elems.length > 1 && this.isBottom()) {
+				Interval ret = new Interval();
+				ret.setBottom();
+				return ret;
+			}
+			return this.elems[p].getBound(this.man, new Texpr1Intern(this.packs.getEnvironment(p), expr));
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Assign expr to var
+	 *
+	 * @param var
+	 * @param expr expression over variables of the pack of var
+	 */
+	public void assign(String var, Texpr1Node expr) {
+		int p = this.packs.getPack(var);
+		try {
+			this.elems[p] = this.elems[p].assignCopy(this.man, var,
+					new Texpr1Intern(this.packs.getEnvironment(p), expr), null);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Meet with the constraint <code>expr kind 0</code>
+	 *
+	 * @param kind e.g., {@link Tcons1#SUPEQ}
+	 * @param expr
+	 */
+	public void meet(int kind, Texpr1Node expr) {
+		int p = this.packs.getPack(expr.getVars());
+		try {
+			if (p < 0) {
+				this.set(this.get().meetCopy(this.man, new Tcons1(this.packs.env, kind, expr)));
+			} else {
+				this.elems[p] = this.elems[p].meetCopy(this.man, new Tcons1(this.packs.getEnvironment(p), kind, expr));
+			}
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Meet with var in interval
+	 *
+	 * @param var
+	 * @param interval
+	 */
+	public void meet(String var, Interval interval) {
+		int p = this.packs.getPack(var);
+		try {
+			Abstract1 box = new Abstract1(this.man, this.packs.getEnvironment(p), new String[] { var },
+					new Interval[] { interval });
+			this.elems[p] = this.elems[p].meetCopy(this.man, box);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void forget(String var) {
+		int p = this.packs.getPack(var);
+		try {
+			this.elems[p] = this.elems[p].forgetCopy(this.man, var, false);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Forget all vars at once (per pack)
+	 *
+	 * @param vars
+	 */
+	public void forget(String[] vars) {
+		if (vars.length == 0) {
+			return;
+		}
+		try {
+			if (this.elems.length == 1) {
+				this.elems[0] = this.elems[0].forgetCopy(this.man, vars, false);
+				return;
+			}
+			for (String var : vars) {
+				this.forget(var);
+			}
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param other
+	 * @return the join of this state and other
+	 */
+	public NumericalStateWrapper joinCopy(NumericalStateWrapper other) {
+		try {
+			if (this.elems.length > 1) {
+				// the product is bottom as soon as one pack is
+				if (this.isBottom()) {
+					return other.copy();
+				} else if (other.isBottom()) {
+					return this.copy();
+				}
+			}
+			Abstract1[] ret = new Abstract1[this.elems.length];
+			for (int p = 0; p < ret.length; p++) {
+				ret[p] = this.elems[p].joinCopy(this.man, other.elems[p]);
+			}
+			return new NumericalStateWrapper(this.man, this.packs, ret);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param other a state including this state
+	 * @return this state widened by other
+	 */
+	public NumericalStateWrapper wideningCopy(NumericalStateWrapper other) {
+		return this.wideningCopy(other, null);
+	}
+
+	/**
+	 *
+	 * @param other      a state including this state
+	 * @param thresholds bounds to keep when they hold in other, or null
+	 * @return this state widened by other
+	 */
+	public NumericalStateWrapper wideningCopy(NumericalStateWrapper other, WideningThresholds thresholds) {
+		try {
+			if (this.elems.length > 1 && this.isBottom()) {
+				return other.copy();
+			}
+			Abstract1[] ret = new Abstract1[this.elems.length];
+			for (int p = 0; p < ret.length; p++) {
+				if (thresholds == null) {
+					ret[p] = this.elems[p].widening(this.man, other.elems[p]);
+				} else {
+					ret[p] = this.elems[p].wideningThreshold(this.man, other.elems[p],
+							thresholds.getConstraints(this.packs.getEnvironment(p)));
+				}
+			}
+			return new NumericalStateWrapper(this.man, this.packs, ret);
+		} catch (ApronException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	// TODO: MAYBE FILL THIS OUT: add convenience methods
@@ -111,14 +385,25 @@ public class NumericalStateWrapper {
 		}
 		NumericalStateWrapper w = (NumericalStateWrapper) o;
 
-		Abstract1 t = w.get();
 		try {
-			// sanity check
-			if (elem.isEqual(man, t) && !elem.isIncluded(man, t)) {
-				throw new RuntimeException("VIOLATION");
+			if (this.elems.length > 1) {
+				boolean bottom = this.isBottom();
+				if (bottom || w.isBottom()) {
+					return bottom == w.isBottom();
+				}
 			}
-
-			return elem.isEqual(man, t);
+			for (int p = 0; p < this.elems.length; p++) {
+				Abstract1 elem = this.elems[p];
+				Abstract1 t = w.elems[p];
+				// sanity check
+				if (elem.isEqual(man, t) && !elem.isIncluded(man, t)) {
+					throw new RuntimeException("VIOLATION");
+				}
+				if (!elem.isEqual(man, t)) {
+					return false;
+				}
+			}
+			return true;
 		} catch (ApronException e) {
 			throw new RuntimeException("isEqual failed");
 		}
@@ -133,13 +418,17 @@ public class NumericalStateWrapper {
 	@Override
 	public String toString() {
 		try {
-			if (elem == null) {
+			if (elems == null) {
 				return "null";
-			} else if (elem.isTop(man)) {
-				return "<Top>";
-			} else {
-				return elem.toString();
 			}
+			StringBuilder ret = new StringBuilder();
+			for (Abstract1 elem : this.elems) {
+				if (ret.length() > 0) {
+					ret.append(" x ");
+				}
+				ret.append(elem.isTop(man) ? "<Top>" : elem.toString());
+			}
+			return ret.toString();
 		} catch (ApronException e) {
 			throw new RuntimeException(e);
 		}
@@ -0,0 +1,158 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import ch.ethz.rse.VerificationProperty;
+import soot.Local;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.ConditionExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.InvokeExpr;
+import soot.jimple.internal.JIfStmt;
+import soot.jimple.internal.JInvokeStmt;
+import soot.jimple.internal.JVirtualInvokeExpr;
+
+/**
+ * Backward slice of a method with respect to a property: the locals whose
+ * values may flow into a sell argument (the observation points of all
+ * properties) or into a branch condition (which decides whether observation
+ * points are reached). {@link NumericalAnalysis} only tracks these locals and
+ * turns assignments to other locals into no-ops. The overall profit is only
+ * tracked for {@link VerificationProperty#OVERALL_PROFIT}.
+ *
+ * The slice is flow-insensitive and keeps all branch conditions, so it never
+ * drops a variable that could constrain a tracked one. It is disabled by
+ * default, see {@link #setEnabled(boolean)}.
+ */
+public class PropertySlice {
+
+	private static final Logger logger = LoggerFactory.getLogger(PropertySlice.class);
+
+	/**
+	 * If false, {@link #of} tracks all locals
+	 */
+	private static boolean enabled = false;
+
+	/**
+	 * Names of the tracked locals, or null to track all locals
+	 */
+	private final Set<String> locals;
+
+	private final boolean tracksProfit;
+
+	private PropertySlice(Set<String> locals, boolean tracksProfit) {
+		this.locals = locals;
+		this.tracksProfit = tracksProfit;
+	}
+
+	/**
+	 * Enable or disable slicing
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		PropertySlice.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return PropertySlice.enabled;
+	}
+
+	/**
+	 *
+	 * @return a slice tracking all locals and the overall profit
+	 */
+	public static PropertySlice all() {
+		return new PropertySlice(null, true);
+	}
+
+	/**
+	 *
+	 * @param method   the analyzed method
+	 * @param property the property we are verifying
+	 * @return the slice of method for property, or {@link #all()} if slicing is
+	 *         disabled. Summaries relate all locals to the return value, so
+	 *         {@link MethodSummaries} disables slicing.
+	 */
+	public static PropertySlice of(SootMethod method, VerificationProperty property) {
+		if (!PropertySlice.enabled || MethodSummaries.isEnabled()) {
+			return PropertySlice.all();
+		}
+
+		ListMultimap<String, String> dependencies = ArrayListMultimap.create();
+		Deque<String> worklist = new ArrayDeque<String>();
+		for (Unit unit : method.getActiveBody().getUnits()) {
+			if (unit instanceof DefinitionStmt) {
+				Value left = ((DefinitionStmt) unit).getLeftOp();
+				if (left instanceof Local) {
+					for (ValueBox box : ((DefinitionStmt) unit).getRightOp().getUseBoxes()) {
+						PropertySlice.addLocal(dependencies.get(((Local) left).getName()), box.getValue());
+					}
+					PropertySlice.addLocal(dependencies.get(((Local) left).getName()),
+							((DefinitionStmt) unit).getRightOp());
+				}
+			} else if (unit instanceof JIfStmt && ((JIfStmt) unit).getCondition() instanceof ConditionExpr) {
+				ConditionExpr condition = (ConditionExpr) ((JIfStmt) unit).getCondition();
+				PropertySlice.addLocal(worklist, condition.getOp1());
+				PropertySlice.addLocal(worklist, condition.getOp2());
+			} else if (unit instanceof JInvokeStmt) {
+				InvokeExpr invokeExpr = ((JInvokeStmt) unit).getInvokeExpr();
+				if (invokeExpr instanceof JVirtualInvokeExpr) {
+					for (Value arg : invokeExpr.getArgs()) {
+						PropertySlice.addLocal(worklist, arg);
+					}
+				}
+			}
+		}
+
+		// close backwards over definitions
+		Set<String> ret = new HashSet<String>();
+		while (!worklist.isEmpty()) {
+			String local = worklist.pop();
+			if (ret.add(local)) {
+				worklist.addAll(dependencies.get(local));
+			}
+		}
+
+		logger.debug("Slice of {} for {}: {} of {} locals", method.getName(), property, ret.size(),
+				method.getActiveBody().getLocalCount());
+		return new PropertySlice(ret, property == VerificationProperty.OVERALL_PROFIT);
+	}
+
+	/**
+	 *
+	 * @param local name of a local
+	 * @return true if the analysis tracks local
+	 */
+	public boolean contains(String local) {
+		return this.locals == null || this.locals.contains(local);
+	}
+
+	/**
+	 *
+	 * @return true if the analysis tracks the overall profit
+	 */
+	public boolean tracksProfit() {
+		return this.tracksProfit;
+	}
+
+	private static void addLocal(Collection<String> to, Value value) {
+		if (value instanceof Local) {
+			to.add(((Local) value).getName());
+		}
+	}
+
+}
@@ -0,0 +1,248 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.Environment;
+import ch.ethz.rse.VerificationProperty;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.BinopExpr;
+import soot.jimple.ConditionExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.InvokeExpr;
+import soot.jimple.internal.JIfStmt;
+import soot.jimple.internal.JInvokeStmt;
+import soot.jimple.internal.JVirtualInvokeExpr;
+import soot.jimple.internal.JimpleLocal;
+
+/**
+ * Partition of the variables of a method into packs, such that no statement
+ * relates variables of different packs. {@link NumericalStateWrapper} keeps one
+ * abstract element per pack, so that the cost of relational domains grows with
+ * the size of the largest pack instead of the number of variables.
+ *
+ * Packs are the connected components of the def/use and branch-condition
+ * dependencies, computed by union-find. Relations a join would infer between
+ * variables of different packs (e.g., two counters incremented in the same
+ * loop) are lost, so packing is disabled by default.
+ */
+public class VariablePacks {
+
+	private static final Logger logger = LoggerFactory.getLogger(VariablePacks.class);
+
+	/**
+	 * If true, {@link #partition(SootMethod, String[], VerificationProperty)} splits
+	 * the environment into packs
+	 */
+	private static boolean enabled = false;
+
+	/**
+	 * Environment holding all variables
+	 */
+	public final Environment env;
+
+	/**
+	 * Environment of each pack
+	 */
+	private final Environment[] packs;
+
+	/**
+	 * Index into {@link #packs} of each variable
+	 */
+	private final Map<String, Integer> packOf;
+
+	private VariablePacks(Environment env, Environment[] packs, Map<String, Integer> packOf) {
+		this.env = env;
+		this.packs = packs;
+		this.packOf = packOf;
+	}
+
+	/**
+	 * Enable or disable variable packing
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		VariablePacks.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return VariablePacks.enabled;
+	}
+
+	/**
+	 *
+	 * @param env all variables
+	 * @return a single pack holding all variables of env
+	 */
+	public static VariablePacks single(Environment env) {
+		Map<String, Integer> packOf = new HashMap<String, Integer>();
+		for (String var : env.getVars()) {
+			packOf.put(var, 0);
+		}
+		return new VariablePacks(env, new Environment[] { env }, packOf);
+	}
+
+	/**
+	 *
+	 * @param method   the analyzed method
+	 * @param vars     all variables of method (see
+	 *                 {@link ch.ethz.rse.verify.EnvironmentGenerator})
+	 * @param property the property we are verifying
+	 * @return the variables of each pack, or a single pack if packing is disabled.
+	 *         Calls to helpers relate all variables to the summary variables, so
+	 *         {@link MethodSummaries} also disables packing.
+	 */
+	public static String[][] partition(SootMethod method, String[] vars, VerificationProperty property) {
+		if (!VariablePacks.enabled || MethodSummaries.isEnabled()) {
+			return new String[][] { vars };
+		}
+
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		for (int i = 0; i < vars.length; i++) {
+			index.put(vars[i], i);
+		}
+		int[] parent = new int[vars.length];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+
+		for (Unit unit : method.getActiveBody().getUnits()) {
+			if (unit instanceof DefinitionStmt) {
+				DefinitionStmt def = (DefinitionStmt) unit;
+				Value right = def.getRightOp();
+				String left = VariablePacks.getName(def.getLeftOp());
+				if (right instanceof BinopExpr) {
+					union(parent, index, left, VariablePacks.getName(((BinopExpr) right).getOp1()));
+					union(parent, index, left, VariablePacks.getName(((BinopExpr) right).getOp2()));
+				} else {
+					union(parent, index, left, VariablePacks.getName(right));
+				}
+			} else if (unit instanceof JIfStmt && ((JIfStmt) unit).getCondition() instanceof ConditionExpr) {
+				ConditionExpr condition = (ConditionExpr) ((JIfStmt) unit).getCondition();
+				union(parent, index, VariablePacks.getName(condition.getOp1()),
+						VariablePacks.getName(condition.getOp2()));
+			} else if (unit instanceof JInvokeStmt && property == VerificationProperty.OVERALL_PROFIT) {
+				InvokeExpr invokeExpr = ((JInvokeStmt) unit).getInvokeExpr();
+				if (invokeExpr instanceof JVirtualInvokeExpr && invokeExpr.getArgCount() > 0) {
+					// FROG_OVERALL_PROFIT += arg - cost
+					union(parent, index, "FROG_OVERALL_PROFIT", VariablePacks.getName(invokeExpr.getArg(0)));
+				}
+			}
+		}
+
+		// collect the components, in the order of env
+		Map<Integer, List<String>> components = new HashMap<Integer, List<String>>();
+		List<Integer> roots = new ArrayList<Integer>();
+		for (int i = 0; i < vars.length; i++) {
+			int root = find(parent, i);
+			if (!components.containsKey(root)) {
+				components.put(root, new ArrayList<String>());
+				roots.add(root);
+			}
+			components.get(root).add(vars[i]);
+		}
+		String[][] ret = new String[roots.size()][];
+		int largest = 0;
+		for (int p = 0; p < ret.length; p++) {
+			ret[p] = components.get(roots.get(p)).toArray(new String[0]);
+			largest = Math.max(largest, ret[p].length);
+		}
+		logger.debug("Split {} variables of {} into {} packs (largest: {})", vars.length, method.getName(),
+				ret.length, largest);
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param env       all variables
+	 * @param partition the variables of each pack, see
+	 *                  {@link #partition(SootMethod, String[], VerificationProperty)}
+	 * @return the packs of env
+	 */
+	public static VariablePacks of(Environment env, String[][] partition) {
+		if (partition.length == 1) {
+			return VariablePacks.single(env);
+		}
+		Environment[] packs = new Environment[partition.length];
+		Map<String, Integer> packOf = new HashMap<String, Integer>();
+		for (int p = 0; p < packs.length; p++) {
+			packs[p] = new Environment(partition[p], new String[0]);
+			for (String var : partition[p]) {
+				packOf.put(var, p);
+			}
+		}
+		return new VariablePacks(env, packs, packOf);
+	}
+
+	public int size() {
+		return this.packs.length;
+	}
+
+	public Environment getEnvironment(int pack) {
+		return this.packs[pack];
+	}
+
+	/**
+	 *
+	 * @param var
+	 * @return the index of the pack holding var
+	 */
+	public int getPack(String var) {
+		Integer ret = this.packOf.get(var);
+		if (ret == null) {
+			throw new IllegalArgumentException("Unknown variable " + var);
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param vars variables related by a single statement
+	 * @return the index of the pack holding all vars (0 if vars is empty), or -1
+	 *         if they are spread over several packs
+	 */
+	public int getPack(String[] vars) {
+		if (vars.length == 0) {
+			return 0;
+		}
+		int ret = this.getPack(vars[0]);
+		for (String var : vars) {
+			if (this.getPack(var) != ret) {
+				return -1;
+			}
+		}
+		return ret;
+	}
+
+	private static String getName(Value value) {
+		return value instanceof JimpleLocal ? ((JimpleLocal) value).getName() : null;
+	}
+
+	private static void union(int[] parent, Map<String, Integer> index, String a, String b) {
+		Integer i = a == null ? null : index.get(a);
+		Integer j = b == null ? null : index.get(b);
+		if (i == null || j == null) {
+			// constants and variables outside the environment (e.g., references)
+			return;
+		}
+		parent[find(parent, i)] = find(parent, j);
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			// path halving
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+}
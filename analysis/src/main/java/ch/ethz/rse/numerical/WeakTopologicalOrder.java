@@ -0,0 +1,273 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Unit;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Bourdoncle's weak topological order of the units of a method: a
+ * hierarchical ordering in which each strongly connected component is
+ * represented by its head, followed by the (recursively ordered) units of the
+ * component. Every edge of the graph either goes forward in the order, or goes
+ * back to the head of a component containing its source.
+ *
+ * Units are numbered by their position in the body, see {@link #indexOf(Unit)}.
+ */
+public class WeakTopologicalOrder {
+
+	/**
+	 * A unit, or a component with its head and body
+	 */
+	public static final class Element {
+
+		/**
+		 * Index of the unit, or of the head of the component
+		 */
+		public final int unit;
+
+		/**
+		 * Body of the component, or null for a unit
+		 */
+		public final List<Element> body;
+
+		private Element(int unit, List<Element> body) {
+			this.unit = unit;
+			this.body = body;
+		}
+
+		public boolean isComponent() {
+			return this.body != null;
+		}
+	}
+
+	private final UnitGraph g;
+
+	/**
+	 * Units of the body, in order
+	 */
+	private final Unit[] units;
+
+	private final Map<Unit, Integer> index;
+
+	/**
+	 * Depth-first numbers during construction (0: unvisited, MAX_VALUE: done)
+	 */
+	private final int[] dfn;
+
+	private int num = 0;
+
+	private final Deque<Integer> stack = new ArrayDeque<Integer>();
+
+	private final List<Element> elements;
+
+	private final Set<Unit> heads = new LinkedHashSet<Unit>();
+
+	/**
+	 *
+	 * @param g graph of the analyzed method
+	 */
+	public WeakTopologicalOrder(UnitGraph g) {
+		this.g = g;
+		this.units = g.getBody().getUnits().toArray(new Unit[0]);
+		this.index = new HashMap<Unit, Integer>(this.units.length * 2);
+		for (int i = 0; i < this.units.length; i++) {
+			this.index.put(this.units[i], i);
+		}
+		this.dfn = new int[this.units.length];
+
+		LinkedList<Element> partition = new LinkedList<Element>();
+		for (Unit head : g.getHeads()) {
+			int h = this.index.get(head);
+			if (this.dfn[h] == 0) {
+				this.visit(h, partition);
+			}
+		}
+		this.elements = Collections.unmodifiableList(partition);
+	}
+
+	/**
+	 *
+	 * @return the top-level elements, in order. Units unreachable from the heads
+	 *         of the graph are not part of the order.
+	 */
+	public List<Element> getElements() {
+		return this.elements;
+	}
+
+	/**
+	 *
+	 * @return the heads of all components, where the analysis widens
+	 */
+	public Set<Unit> getHeads() {
+		return this.heads;
+	}
+
+	public int size() {
+		return this.units.length;
+	}
+
+	public Unit getUnit(int i) {
+		return this.units[i];
+	}
+
+	public int indexOf(Unit unit) {
+		return this.index.get(unit);
+	}
+
+	/**
+	 * Bourdoncle's recursive <code>visit</code> and <code>component</code>, run on
+	 * an explicit stack of frames so that large bodies cannot overflow the call
+	 * stack
+	 *
+	 * @param root      unvisited unit to start from
+	 * @param partition list the elements are prepended to
+	 */
+	private void visit(int root, LinkedList<Element> partition) {
+		Deque<Frame> frames = new ArrayDeque<Frame>();
+		frames.push(this.enter(root, partition));
+		// value returned by the last finished visit
+		int returned = 0;
+		while (!frames.isEmpty()) {
+			Frame f = frames.peek();
+			if (f.component) {
+				// component(v): visit the unvisited successors into the body
+				if (f.next < f.succs.size()) {
+					int w = this.index.get(f.succs.get(f.next++));
+					if (this.dfn[w] == 0) {
+						frames.push(this.enter(w, f.body));
+					}
+					continue;
+				}
+				frames.pop();
+				f.partition.addFirst(new Element(f.v, Collections.unmodifiableList(f.body)));
+				returned = f.head;
+				continue;
+			}
+
+			// visit(v): compute the smallest depth-first number reachable from v
+			if (f.waiting) {
+				f.waiting = false;
+				f.update(returned);
+			}
+			if (f.next < f.succs.size()) {
+				int w = this.index.get(f.succs.get(f.next++));
+				if (this.dfn[w] == 0) {
+					f.waiting = true;
+					frames.push(this.enter(w, f.partition));
+				} else {
+					f.update(this.dfn[w]);
+				}
+				continue;
+			}
+			frames.pop();
+			if (f.head == this.dfn[f.v]) {
+				this.dfn[f.v] = Integer.MAX_VALUE;
+				int element = this.stack.pop();
+				if (f.loop) {
+					while (element != f.v) {
+						this.dfn[element] = 0;
+						element = this.stack.pop();
+					}
+					// returns f.head once the component is complete
+					this.heads.add(this.units[f.v]);
+					f.component = true;
+					f.next = 0;
+					f.body = new LinkedList<Element>();
+					frames.push(f);
+					continue;
+				}
+				f.partition.addFirst(new Element(f.v, null));
+			}
+			returned = f.head;
+		}
+	}
+
+	/**
+	 * Start visiting unit v
+	 */
+	private Frame enter(int v, LinkedList<Element> partition) {
+		this.stack.push(v);
+		this.dfn[v] = ++this.num;
+		return new Frame(v, this.g.getSuccsOf(this.units[v]), this.dfn[v], partition);
+	}
+
+	/**
+	 * Local state of a call to visit (or, once {@link #component} is set, to
+	 * component) for unit v
+	 */
+	private static final class Frame {
+
+		final int v;
+
+		final List<Unit> succs;
+
+		final LinkedList<Element> partition;
+
+		/**
+		 * Next successor to look at
+		 */
+		int next = 0;
+
+		int head;
+
+		boolean loop = false;
+
+		/**
+		 * Whether the visit of a successor is pending
+		 */
+		boolean waiting = false;
+
+		boolean component = false;
+
+		/**
+		 * Body of the component headed by v
+		 */
+		LinkedList<Element> body = null;
+
+		Frame(int v, List<Unit> succs, int head, LinkedList<Element> partition) {
+			this.v = v;
+			this.succs = succs;
+			this.head = head;
+			this.partition = partition;
+		}
+
+		void update(int min) {
+			if (min <= this.head) {
+				this.head = min;
+				this.loop = true;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder ret = new StringBuilder();
+		WeakTopologicalOrder.append(ret, this.elements);
+		return ret.toString();
+	}
+
+	private static void append(StringBuilder to, List<Element> elements) {
+		for (Element e : elements) {
+			if (to.length() > 0 && to.charAt(to.length() - 1) != '(') {
+				to.append(' ');
+			}
+			if (e.isComponent()) {
+				to.append('(').append(e.unit);
+				WeakTopologicalOrder.append(to, e.body);
+				to.append(')');
+			} else {
+				to.append(e.unit);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import apron.DoubleScalar;
+import apron.Environment;
+import apron.Lincons1;
+import apron.Linexpr1;
+import apron.Linterm1;
+import apron.MpqScalar;
+import apron.Scalar;
+import ch.ethz.rse.utils.Constants;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.ConditionExpr;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.internal.JIfStmt;
+import soot.jimple.internal.JSpecialInvokeExpr;
+import soot.jimple.internal.JVirtualInvokeExpr;
+
+/**
+ * Thresholds for widening, harvested from the constants of a method: operands
+ * of branch conditions (and their neighbours, as <code>i &lt; 10</code> bounds
+ * i by 9), arguments of Frog constructors and of sell calls, and 0. Instead of
+ * jumping to infinity, an unstable bound is widened to the next threshold, and
+ * a bounded number of decreasing passes recovers precision afterwards.
+ *
+ * Thresholds keep widening precise, so the analysis widens after
+ * {@link #DELAY} updates of a loop head instead of
+ * {@link AnalysisConfiguration#wideningThreshold}.
+ */
+public class WideningThresholds {
+
+	private static final Logger logger = LoggerFactory.getLogger(WideningThresholds.class);
+
+	/**
+	 * Number of times a loop head is updated before widening with thresholds
+	 */
+	public static final int DELAY = 2;
+
+	/**
+	 * Maximal number of decreasing passes after the fixpoint is reached
+	 */
+	public static final int NARROWING_PASSES = 2;
+
+	/**
+	 * If true, {@link NumericalAnalysis} widens with thresholds and narrows
+	 */
+	private static boolean enabled = false;
+
+	private final NavigableSet<Integer> constants;
+
+	/**
+	 * Threshold constraints of each environment (of the packs of the analysis)
+	 */
+	private final Map<Environment, Lincons1[]> constraints = new IdentityHashMap<Environment, Lincons1[]>();
+
+	private WideningThresholds(NavigableSet<Integer> constants) {
+		this.constants = constants;
+	}
+
+	/**
+	 * Enable or disable threshold widening and narrowing
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		WideningThresholds.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return WideningThresholds.enabled;
+	}
+
+	/**
+	 *
+	 * @param method the analyzed method
+	 * @return the thresholds of method
+	 */
+	public static WideningThresholds of(SootMethod method) {
+		NavigableSet<Integer> constants = new TreeSet<Integer>();
+		constants.add(0);
+		for (Unit unit : method.getActiveBody().getUnits()) {
+			if (unit instanceof JIfStmt && ((JIfStmt) unit).getCondition() instanceof ConditionExpr) {
+				ConditionExpr condition = (ConditionExpr) ((JIfStmt) unit).getCondition();
+				for (Value op : new Value[] { condition.getOp1(), condition.getOp2() }) {
+					if (op instanceof IntConstant) {
+						int c = ((IntConstant) op).value;
+						constants.add(c - 1);
+						constants.add(c);
+						constants.add(c + 1);
+					}
+				}
+			} else if (((Stmt) unit).containsInvokeExpr()) {
+				InvokeExpr invokeExpr = ((Stmt) unit).getInvokeExpr();
+				boolean frogInit = invokeExpr instanceof JSpecialInvokeExpr
+						&& invokeExpr.getMethod().getName().equals("<init>")
+						&& invokeExpr.getMethod().getDeclaringClass().getName().equals(Constants.FrogClassName);
+				boolean sell = invokeExpr instanceof JVirtualInvokeExpr
+						&& invokeExpr.getMethod().getName().equals(Constants.sellFunctionName);
+				if (frogInit || sell) {
+					for (Value arg : invokeExpr.getArgs()) {
+						if (arg instanceof IntConstant) {
+							constants.add(((IntConstant) arg).value);
+						}
+					}
+				}
+			}
+		}
+		logger.debug("Widening thresholds of {}: {}", method.getName(), constants);
+		return new WideningThresholds(constants);
+	}
+
+	/**
+	 *
+	 * @return thresholds sharing the constants of this, with their own cache of
+	 *         constraints (which refer to the environments of one analysis)
+	 */
+	public WideningThresholds copy() {
+		return new WideningThresholds(this.constants);
+	}
+
+	/**
+	 *
+	 * @param env environment of the widened element
+	 * @return the constraints <code>x &lt;= c</code> and <code>x &gt;= c</code> for
+	 *         each variable x of env and each threshold c
+	 */
+	public Lincons1[] getConstraints(Environment env) {
+		Lincons1[] ret = this.constraints.get(env);
+		if (ret != null) {
+			return ret;
+		}
+		List<Lincons1> list = new ArrayList<Lincons1>();
+		for (String var : env.getVars()) {
+			for (int c : this.constants) {
+				// c - x >= 0
+				list.add(new Lincons1(Lincons1.SUPEQ, new Linexpr1(env,
+						new Linterm1[] { new Linterm1(var, new MpqScalar(-1)) }, new MpqScalar(c))));
+				// x - c >= 0
+				list.add(new Lincons1(Lincons1.SUPEQ, new Linexpr1(env,
+						new Linterm1[] { new Linterm1(var, new MpqScalar(1)) }, new MpqScalar(-c))));
+			}
+		}
+		ret = list.toArray(new Lincons1[0]);
+		this.constraints.put(env, ret);
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param bound an unstable lower bound
+	 * @return the largest threshold below bound, or -infinity
+	 */
+	public Scalar below(Scalar bound) {
+		for (int c : this.constants.descendingSet()) {
+			Scalar s = new MpqScalar(c);
+			if (s.cmp(bound) <= 0) {
+				return s;
+			}
+		}
+		return new DoubleScalar(Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 *
+	 * @param bound an unstable upper bound
+	 * @return the smallest threshold above bound, or +infinity
+	 */
+	public Scalar above(Scalar bound) {
+		for (int c : this.constants) {
+			Scalar s = new MpqScalar(c);
+			if (s.cmp(bound) >= 0) {
+				return s;
+			}
+		}
+		return new DoubleScalar(Double.POSITIVE_INFINITY);
+	}
+
+	@Override
+	public String toString() {
+		return this.constants.toString();
+	}
+
+}
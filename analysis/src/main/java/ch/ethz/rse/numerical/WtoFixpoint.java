@@ -0,0 +1,211 @@
+package ch.ethz.rse.numerical;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Unit;
+import soot.UnitBox;
+import soot.toolkits.graph.UnitGraph;
+
+/**
+ * Fixpoint engine for {@link NumericalAnalysis}, replacing the worklist of
+ * {@link soot.toolkits.scalar.ForwardBranchedFlowAnalysis}. It follows
+ * Bourdoncle's recursive strategy: units are visited in
+ * {@link WeakTopologicalOrder}, and each component is iterated until the
+ * outgoing states of its head are stable. Only heads are compared, and code
+ * after a loop is analyzed once the loop is stable.
+ *
+ * States are kept in arrays indexed by {@link WeakTopologicalOrder#indexOf}.
+ * Incoming states are the fall-through and branch targets of the body (as in
+ * Soot), while the order follows the edges of the graph.
+ */
+public class WtoFixpoint {
+
+	private static final Logger logger = LoggerFactory.getLogger(WtoFixpoint.class);
+
+	/**
+	 * If true, {@link NumericalAnalysis} uses this engine instead of Soot's
+	 */
+	private static boolean enabled = false;
+
+	private final NumericalAnalysis analysis;
+
+	private final WeakTopologicalOrder wto;
+
+	private final boolean[] isEntry;
+
+	private final NumericalStateWrapper[] before;
+
+	private final List<NumericalStateWrapper>[] fallOut;
+
+	private final List<NumericalStateWrapper>[] branchOut;
+
+	/**
+	 * Outgoing states of the predecessors of each unit
+	 */
+	private final NumericalStateWrapper[][] incoming;
+
+	/**
+	 * Enable or disable this engine
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		WtoFixpoint.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return WtoFixpoint.enabled;
+	}
+
+	/**
+	 * Initialize all states to {@link NumericalAnalysis#newInitialFlow()}, except
+	 * at the heads of g
+	 *
+	 * @param analysis the analysis providing the transfer functions
+	 * @param g        graph of the analyzed method
+	 * @param wto      order of g
+	 */
+	@SuppressWarnings("unchecked")
+	public WtoFixpoint(NumericalAnalysis analysis, UnitGraph g, WeakTopologicalOrder wto) {
+		this.analysis = analysis;
+		this.wto = wto;
+		int n = wto.size();
+		this.isEntry = new boolean[n];
+		this.before = new NumericalStateWrapper[n];
+		this.fallOut = (List<NumericalStateWrapper>[]) new List<?>[n];
+		this.branchOut = (List<NumericalStateWrapper>[]) new List<?>[n];
+
+		List<List<NumericalStateWrapper>> incoming = new ArrayList<List<NumericalStateWrapper>>(n);
+		for (int i = 0; i < n; i++) {
+			incoming.add(new ArrayList<NumericalStateWrapper>(2));
+		}
+		for (int i = 0; i < n; i++) {
+			Unit unit = wto.getUnit(i);
+			this.before[i] = analysis.newInitialFlow();
+			this.fallOut[i] = new ArrayList<NumericalStateWrapper>(1);
+			this.branchOut[i] = new ArrayList<NumericalStateWrapper>(1);
+			if (unit.fallsThrough()) {
+				NumericalStateWrapper out = analysis.newInitialFlow();
+				this.fallOut[i].add(out);
+				if (i + 1 < n) {
+					incoming.get(i + 1).add(out);
+				}
+			}
+			if (unit.branches()) {
+				for (UnitBox box : unit.getUnitBoxes()) {
+					NumericalStateWrapper out = analysis.newInitialFlow();
+					this.branchOut[i].add(out);
+					incoming.get(wto.indexOf(box.getUnit())).add(out);
+				}
+			}
+		}
+		this.incoming = new NumericalStateWrapper[n][];
+		for (int i = 0; i < n; i++) {
+			this.incoming[i] = incoming.get(i).toArray(new NumericalStateWrapper[0]);
+		}
+		for (Unit head : g.getHeads()) {
+			int i = wto.indexOf(head);
+			this.isEntry[i] = true;
+			this.before[i] = analysis.entryInitialFlow();
+		}
+	}
+
+	/**
+	 * Compute the fixpoint
+	 */
+	public void solve() {
+		logger.debug("Weak topological order: {}", this.wto);
+		for (WeakTopologicalOrder.Element e : this.wto.getElements()) {
+			this.visit(e);
+		}
+	}
+
+	public NumericalStateWrapper getFlowBefore(int i) {
+		return this.before[i];
+	}
+
+	public List<NumericalStateWrapper> getFallFlowAfter(int i) {
+		return this.fallOut[i];
+	}
+
+	public List<NumericalStateWrapper> getBranchFlowAfter(int i) {
+		return this.branchOut[i];
+	}
+
+	private void visit(WeakTopologicalOrder.Element e) {
+		if (!e.isComponent()) {
+			this.process(e.unit, false);
+			return;
+		}
+		boolean first = true;
+		while (this.process(e.unit, true) || first) {
+			first = false;
+			for (WeakTopologicalOrder.Element inner : e.body) {
+				this.visit(inner);
+			}
+		}
+	}
+
+	/**
+	 * Join the incoming states of unit i and apply its transfer function
+	 *
+	 * @param i
+	 * @param compare whether to compare the outgoing states to their previous
+	 *                values
+	 * @return true if compare is set and an outgoing state changed
+	 */
+	private boolean process(int i, boolean compare) {
+		Unit unit = this.wto.getUnit(i);
+		NumericalStateWrapper in = this.before[i];
+		NumericalStateWrapper[] preds = this.incoming[i];
+		if (preds.length > 0) {
+			// states are never modified in place, so share instead of copying
+			in.set(preds[0]);
+			for (int k = 1; k < preds.length; k++) {
+				this.join(unit, in, preds[k]);
+			}
+			if (this.isEntry[i]) {
+				this.join(unit, in, this.analysis.entryInitialFlow());
+			}
+		}
+
+		NumericalStateWrapper[] previous = null;
+		if (compare) {
+			previous = new NumericalStateWrapper[this.fallOut[i].size() + this.branchOut[i].size()];
+			int k = 0;
+			for (NumericalStateWrapper out : this.fallOut[i]) {
+				previous[k++] = out.share();
+			}
+			for (NumericalStateWrapper out : this.branchOut[i]) {
+				previous[k++] = out.share();
+			}
+		}
+
+		this.analysis.flowThrough(in, unit, this.fallOut[i], this.branchOut[i]);
+
+		if (!compare) {
+			return false;
+		}
+		int k = 0;
+		for (NumericalStateWrapper out : this.fallOut[i]) {
+			if (!out.equals(previous[k++])) {
+				return true;
+			}
+		}
+		for (NumericalStateWrapper out : this.branchOut[i]) {
+			if (!out.equals(previous[k++])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void join(Unit unit, NumericalStateWrapper inout, NumericalStateWrapper other) {
+		this.analysis.merge(unit, inout.share(), other, inout);
+	}
+
+}
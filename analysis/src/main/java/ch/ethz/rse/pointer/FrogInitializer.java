@@ -47,9 +47,10 @@ public class FrogInitializer {
 
 	/**
 	 * 
-	 * @return unique identifier of the initializer
+	 * @return unique identifier of the initializer (numbered densely from 0 within
+	 *         the analyzed class, see {@link InitializerSet})
 	 */
-	private int getUniqueNumber() {
+	public int getUniqueNumber() {
 		return this.uniqueNumber;
 	}
 
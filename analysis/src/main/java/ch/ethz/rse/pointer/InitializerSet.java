@@ -0,0 +1,110 @@
+package ch.ethz.rse.pointer;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of {@link FrogInitializer}s, represented as a bitset over their
+ * unique numbers (see {@link FrogInitializer#getUniqueNumber()}). The
+ * initializers themselves can be retrieved from
+ * {@link PointsToInitializer#getInitializer(int)}.
+ *
+ * Iterate over the members without allocating using
+ * <code>for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1))</code>.
+ */
+public final class InitializerSet {
+
+	public static final InitializerSet EMPTY = new InitializerSet(new long[0]);
+
+	/**
+	 * Bit i of word i / 64 is set iff initializer i is a member. The last word is
+	 * never 0.
+	 */
+	private final long[] words;
+
+	private InitializerSet(long[] words) {
+		int length = words.length;
+		while (length > 0 && words[length - 1] == 0) {
+			length--;
+		}
+		this.words = length == words.length ? words : Arrays.copyOf(words, length);
+	}
+
+	/**
+	 * 
+	 * @param numbers unique numbers of the initializers
+	 * @return the set of these initializers
+	 */
+	public static InitializerSet of(int... numbers) {
+		int max = -1;
+		for (int n : numbers) {
+			max = Math.max(max, n);
+		}
+		long[] words = new long[(max >> 6) + 1];
+		for (int n : numbers) {
+			words[n >> 6] |= 1L << n;
+		}
+		return new InitializerSet(words);
+	}
+
+	public boolean isEmpty() {
+		return this.words.length == 0;
+	}
+
+	public int size() {
+		int ret = 0;
+		for (long w : this.words) {
+			ret += Long.bitCount(w);
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param from first number to consider
+	 * @return the smallest member that is at least <code>from</code>, or -1 if
+	 *         there is none
+	 */
+	public int nextSetBit(int from) {
+		int word = from >> 6;
+		if (from < 0 || word >= this.words.length) {
+			return -1;
+		}
+		long w = this.words[word] & (-1L << from);
+		while (true) {
+			if (w != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(w);
+			}
+			word++;
+			if (word == this.words.length) {
+				return -1;
+			}
+			w = this.words[word];
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof InitializerSet)) {
+			return false;
+		}
+		return Arrays.equals(this.words, ((InitializerSet) obj).words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.words);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder ret = new StringBuilder("{");
+		for (int i = this.nextSetBit(0); i >= 0; i = this.nextSetBit(i + 1)) {
+			if (ret.length() > 1) {
+				ret.append(", ");
+			}
+			ret.append(i);
+		}
+		return ret.append("}").toString();
+	}
+
+}
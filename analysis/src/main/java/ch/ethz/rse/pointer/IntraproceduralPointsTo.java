@@ -0,0 +1,171 @@
+package ch.ethz.rse.pointer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.Local;
+import soot.RefLikeType;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.CastExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.NewExpr;
+import soot.jimple.NullConstant;
+
+/**
+ * Flow-insensitive, intraprocedural allocation-site analysis, as a cheap
+ * alternative to SPARK.
+ *
+ * Abstract objects are the statements <code>l = new T</code> of the analyzed
+ * class. A local points to the allocation sites assigned to it, directly or
+ * through copies and casts between locals of the same method. As references
+ * obtained in other ways (parameters, fields, return values, array elements)
+ * are not tracked, locals they reach may point to every allocation site of
+ * their type, as in {@link TypeBasedPointsTo}.
+ */
+public class IntraproceduralPointsTo implements PointsToBackend {
+
+	private static final Logger logger = LoggerFactory.getLogger(IntraproceduralPointsTo.class);
+
+	/**
+	 * Allocation sites each local may point to
+	 */
+	private final Map<Local, Set<Unit>> pointsTo = new HashMap<Local, Set<Unit>>();
+
+	/**
+	 * Locals that may hold a reference not tracked by this analysis
+	 */
+	private final Set<Local> untracked = new HashSet<Local>();
+
+	/**
+	 * Fallback for {@link #untracked} locals
+	 */
+	private final TypeBasedPointsTo byType;
+
+	public IntraproceduralPointsTo(SootClass c) {
+		this.byType = new TypeBasedPointsTo(c);
+		for (SootMethod method : c.getMethods()) {
+			if (method.isConcrete()) {
+				this.analyze(method);
+			}
+		}
+	}
+
+	/**
+	 * Collect allocations and copies of method, and propagate allocation sites
+	 * (and untracked references) along copies until a fixed point is reached
+	 * 
+	 * @param method
+	 */
+	private void analyze(SootMethod method) {
+		// copy edges: from source local to target locals
+		Map<Local, List<Local>> copies = new HashMap<Local, List<Local>>();
+		LinkedList<Local> worklist = new LinkedList<Local>();
+		LinkedList<Local> untrackedWorklist = new LinkedList<Local>();
+
+		for (Unit unit : method.retrieveActiveBody().getUnits()) {
+			if (!(unit instanceof DefinitionStmt)) {
+				continue;
+			}
+			// includes identity statements (this and parameters)
+			DefinitionStmt assign = (DefinitionStmt) unit;
+			Value left = assign.getLeftOp();
+			Value right = assign.getRightOp();
+			if (!(left instanceof Local) || !(left.getType() instanceof RefLikeType)) {
+				continue;
+			}
+			Local target = (Local) left;
+			if (right instanceof CastExpr) {
+				right = ((CastExpr) right).getOp();
+			}
+			if (right instanceof NewExpr) {
+				this.getOrCreate(target).add(unit);
+				worklist.add(target);
+			} else if (right instanceof Local) {
+				List<Local> targets = copies.get(right);
+				if (targets == null) {
+					targets = new LinkedList<Local>();
+					copies.put((Local) right, targets);
+				}
+				targets.add(target);
+			} else if (!(right instanceof NullConstant) && this.untracked.add(target)) {
+				untrackedWorklist.add(target);
+			}
+		}
+
+		while (!worklist.isEmpty()) {
+			Local source = worklist.removeFirst();
+			List<Local> targets = copies.get(source);
+			if (targets == null) {
+				continue;
+			}
+			Set<Unit> sites = this.pointsTo.get(source);
+			for (Local target : targets) {
+				if (this.getOrCreate(target).addAll(sites)) {
+					worklist.add(target);
+				}
+			}
+		}
+
+		while (!untrackedWorklist.isEmpty()) {
+			List<Local> targets = copies.get(untrackedWorklist.removeFirst());
+			if (targets == null) {
+				continue;
+			}
+			for (Local target : targets) {
+				if (this.untracked.add(target)) {
+					untrackedWorklist.add(target);
+				}
+			}
+		}
+		logger.debug("Allocation sites in {}: {}", method.getName(), this.pointsTo);
+	}
+
+	private Set<Unit> getOrCreate(Local local) {
+		Set<Unit> ret = this.pointsTo.get(local);
+		if (ret == null) {
+			ret = new LinkedHashSet<Unit>();
+			this.pointsTo.put(local, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param base a local variable of the analyzed class
+	 * @return the allocation sites (statements <code>l = new T</code>) base could
+	 *         point to
+	 */
+	public Collection<Unit> getAllocationSites(Local base) {
+		Set<Unit> ret = this.pointsTo.get(base);
+		if (this.untracked.contains(base)) {
+			Collection<Unit> sites = this.byType.getAllocationSites(base);
+			if (ret == null) {
+				return sites;
+			}
+			ret = new LinkedHashSet<Unit>(ret);
+			ret.addAll(sites);
+		} else if (ret == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(ret);
+	}
+
+	@Override
+	public Collection<?> getAbstractObjects(Local base) {
+		return this.getAllocationSites(base);
+	}
+
+}
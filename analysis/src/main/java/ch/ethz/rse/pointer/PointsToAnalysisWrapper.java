@@ -13,9 +13,10 @@ import soot.jimple.spark.sets.PointsToSetInternal;
 
 /**
  * Helper class which allows collecting the abstract objects pointed to by local
- * variables
+ * variables, according to the points-to analysis of the {@link Scene} (see
+ * {@link soot.SootHelper#runPointsToAnalysis(PointsToMode)})
  */
-public class PointsToAnalysisWrapper {
+public class PointsToAnalysisWrapper implements PointsToBackend {
 
 	private final PointsToAnalysis pointsToAnalysis;
 
@@ -36,6 +37,11 @@ public class PointsToAnalysisWrapper {
 		return c.getNodes();
 	}
 
+	@Override
+	public Collection<?> getAbstractObjects(Local base) {
+		return this.getNodes(base);
+	}
+
 }
 
 /**
@@ -0,0 +1,22 @@
+package ch.ethz.rse.pointer;
+
+import java.util.Collection;
+
+import soot.Local;
+
+/**
+ * Points-to analysis used by {@link PointsToInitializer}, see
+ * {@link PointsToMode#createBackend(soot.SootClass)}
+ */
+public interface PointsToBackend {
+
+	/**
+	 * 
+	 * @param base represents a local variable of the analyzed class
+	 * @return the abstract objects base could point to. Abstract objects may be of
+	 *         any type, but must be comparable by {@link Object#equals(Object)}
+	 *         across calls.
+	 */
+	public Collection<?> getAbstractObjects(Local base);
+
+}
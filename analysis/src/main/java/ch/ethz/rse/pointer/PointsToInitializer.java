@@ -1,8 +1,8 @@
 package ch.ethz.rse.pointer;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.primitives.Ints;
 
 import apron.Texpr1Node;
 import ch.ethz.rse.utils.Constants;
@@ -24,6 +25,7 @@ import soot.jimple.IntConstant;
 import soot.jimple.InvokeExpr;
 import soot.jimple.internal.JInvokeStmt;
 import soot.jimple.internal.JSpecialInvokeExpr;
+import soot.jimple.internal.JVirtualInvokeExpr;
 import soot.jimple.spark.pag.Node;
 
 /**
@@ -34,10 +36,16 @@ public class PointsToInitializer {
 
 	private static final Logger logger = LoggerFactory.getLogger(PointsToInitializer.class);
 
+	/**
+	 * Analysis used by newly created instances, see
+	 * {@link #setMode(PointsToMode)}
+	 */
+	private static PointsToMode defaultMode = PointsToMode.SPARK;
+
 	/**
 	 * Internally used points-to analysis
 	 */
-	private final PointsToAnalysisWrapper pointsTo;
+	private final PointsToBackend backend;
 
 	/**
 	 * class for which we are running points-to
@@ -45,23 +53,71 @@ public class PointsToInitializer {
 	private final SootClass c;
 
 	/**
-	 * Maps abstract object indices to initializers
+	 * Maps abstract objects (a {@link Node} for SPARK, an allocation {@link Unit}
+	 * for the other backends) to initializers. Imprecise backends may map one
+	 * abstract object to several initializers.
+	 */
+	private final Multimap<Object, FrogInitializer> initializers = HashMultimap.create();
+
+	/**
+	 * All {@link FrogInitializer}s, indexed by their unique number (numbered
+	 * densely across all methods of {@link #c})
 	 */
-	private final Map<Node, FrogInitializer> initializers = new HashMap<Node, FrogInitializer>();
+	private final List<FrogInitializer> byNumber = new ArrayList<FrogInitializer>();
 
 	/**
 	 * All {@link FrogInitializer}s, keyed by method
 	 */
 	private final Multimap<SootMethod, FrogInitializer> perMethod = HashMultimap.create();
 
+	/**
+	 * Result of {@link #pointsToSet(Local)} for each Frog-typed local of
+	 * {@link #c}, at position <code>local.getNumber() - indexOffset</code>
+	 */
+	private InitializerSet[] index = new InitializerSet[0];
+
+	/**
+	 * Local stored at each position of {@link #index} (guards against locals not
+	 * belonging to {@link #c} that happen to share a number)
+	 */
+	private Local[] indexedLocals = new Local[0];
+
+	private int indexOffset = 0;
+
+	/**
+	 * Summary of every call to sell in {@link #c}, keyed by the (identity of the)
+	 * invoke expression
+	 */
+	private final Map<InvokeExpr, SellSiteSummary> sellSites = new IdentityHashMap<InvokeExpr, SellSiteSummary>();
+
 	// CONSTRUCTOR
 	public PointsToInitializer(SootClass c) {
+		this(c, defaultMode);
+	}
+
+	public PointsToInitializer(SootClass c, PointsToMode mode) {
 		this.c = c;
-		logger.debug("Running points-to analysis on " + c.getName());
-		this.pointsTo = new PointsToAnalysisWrapper(c);
+		logger.debug("Running points-to analysis ({}) on {}", mode, c.getName());
+		this.backend = mode.createBackend(c);
 		logger.debug("Analyzing initializers in " + c.getName());
 		this.analyzeAllInitializers();
-	} 	
+		this.buildIndex();
+		this.summarizeSellSites();
+	}
+
+	/**
+	 * Select the points-to analysis of instances created by
+	 * {@link #PointsToInitializer(SootClass)}
+	 * 
+	 * @param mode
+	 */
+	public static void setMode(PointsToMode mode) {
+		PointsToInitializer.defaultMode = mode;
+	}
+
+	public static PointsToMode getMode() {
+		return PointsToInitializer.defaultMode;
+	}
 		
 	private void analyzeAllInitializers() {
 		for (SootMethod method : this.c.getMethods()) {
@@ -80,7 +136,6 @@ public class PointsToInitializer {
 			 * $r0 = new ch.ethz.rse.Frog
 			 * specialinvoke $r0.<ch.ethz.rse.Frog: void <init>(int)>(3)
 			 */
-			int num_initializers = 0;
 			for (Unit unit: method.getActiveBody().getUnits()) { // a statement
 				logger.debug(unit.toString());
 				if (unit instanceof JInvokeStmt) { // assumpiton: .sell or constructor
@@ -97,14 +152,15 @@ public class PointsToInitializer {
 							logger.debug(expr.toString());
 							logger.debug(expr.getArg(0).toString());
 							logger.debug("" + ((IntConstant) expr.getArg(0)).value);
-							FrogInitializer initializer = new FrogInitializer(stmt, num_initializers++, ((IntConstant) expr.getArg(0)).value);
+							FrogInitializer initializer = new FrogInitializer(stmt, byNumber.size(), ((IntConstant) expr.getArg(0)).value);
+							byNumber.add(initializer);
 							perMethod.put(method, initializer);
 							
 							// Node: Represents every node in the pointer assignment graph.
 							// https://plg.uwaterloo.ca/~olhotak/pubs/cc03.pdf#page=4
 							logger.debug(expr.getBase().toString());
 							logger.debug(getAllocationNodes(expr).toString());
-							for (Node node: getAllocationNodes(expr)) {
+							for (Object node: getAllocationNodes(expr)) {
 								initializers.put(node, initializer);
 							}
 						}
@@ -121,18 +177,128 @@ public class PointsToInitializer {
 		return this.perMethod.get(method);
 	}
 
-	// should probably use this function
+	/**
+	 * 
+	 * @param number unique number of an initializer
+	 * @return the initializer
+	 */
+	public FrogInitializer getInitializer(int number) {
+		return this.byNumber.get(number);
+	}
+
+	/**
+	 * 
+	 * @param base represents a local variable
+	 * @return the initializers of the objects base could point to. Constant time
+	 *         and allocation-free for the locals of the analyzed class.
+	 */
+	public InitializerSet pointsToSet(Local base) {
+		int position = base.getNumber() - this.indexOffset;
+		if (position >= 0 && position < this.index.length && this.indexedLocals[position] == base) {
+			return this.index[position];
+		}
+		logger.debug("Local {} is not indexed", base);
+		return this.computePointsTo(base);
+	}
+
+	/**
+	 * Convenience variant of {@link #pointsToSet(Local)}, prefer the latter in
+	 * loops
+	 * 
+	 * @param base represents a local variable
+	 * @return the initializers of the objects base could point to
+	 */
 	public List<FrogInitializer> pointsTo(Local base) {
-		Collection<Node> nodes = this.pointsTo.getNodes(base);
-		List<FrogInitializer> initializers = new LinkedList<FrogInitializer>();
-		for (Node node : nodes) {
-			FrogInitializer initializer = this.initializers.get(node);
-			if (initializer != null) {
-				// ignore nodes that were not initialized
-				initializers.add(initializer);
+		InitializerSet set = this.pointsToSet(base);
+		List<FrogInitializer> ret = new ArrayList<FrogInitializer>(set.size());
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+			ret.add(this.byNumber.get(i));
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @param invokeExpr call to sell
+	 * @return the production costs of the Frogs the call may be invoked on.
+	 *         Constant time for the calls in the analyzed class.
+	 */
+	public SellSiteSummary getSellSite(InvokeExpr invokeExpr) {
+		SellSiteSummary ret = this.sellSites.get(invokeExpr);
+		if (ret == null) {
+			logger.debug("Call {} is not summarized", invokeExpr);
+			ret = new SellSiteSummary(this.pointsToSet((Local) ((JVirtualInvokeExpr) invokeExpr).getBase()), this);
+		}
+		return ret;
+	}
+
+	/**
+	 * Precompute {@link #getSellSite(InvokeExpr)} for all calls to sell
+	 */
+	private void summarizeSellSites() {
+		for (SootMethod method : this.c.getMethods()) {
+			if (method.getName().contains("<init>")) {
+				continue;
+			}
+			for (Unit unit : method.getActiveBody().getUnits()) {
+				if (unit instanceof JInvokeStmt) {
+					InvokeExpr invokeExpr = ((JInvokeStmt) unit).getInvokeExpr();
+					if (invokeExpr instanceof JVirtualInvokeExpr
+							&& invokeExpr.getMethod().getName().equals(Constants.sellFunctionName)) {
+						Local base = (Local) ((JVirtualInvokeExpr) invokeExpr).getBase();
+						if (base.getType().toString().equals(Constants.FrogClassName)) {
+							this.sellSites.put(invokeExpr, new SellSiteSummary(this.pointsToSet(base), this));
+						}
+					}
+				}
 			}
 		}
-		return initializers;
+		logger.debug("Summarized {} calls to sell", this.sellSites.size());
+	}
+
+	/**
+	 * Precompute {@link #pointsToSet(Local)} for all Frog-typed locals
+	 */
+	private void buildIndex() {
+		List<Local> locals = new ArrayList<Local>();
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (SootMethod method : this.c.getMethods()) {
+			if (method.getName().contains("<init>")) {
+				continue;
+			}
+			for (Local local : method.getActiveBody().getLocals()) {
+				if (local.getType().toString().equals(Constants.FrogClassName)) {
+					locals.add(local);
+					min = Math.min(min, local.getNumber());
+					max = Math.max(max, local.getNumber());
+				}
+			}
+		}
+		if (locals.isEmpty()) {
+			return;
+		}
+		this.indexOffset = min;
+		this.index = new InitializerSet[max - min + 1];
+		this.indexedLocals = new Local[max - min + 1];
+		for (Local local : locals) {
+			int position = local.getNumber() - min;
+			this.index[position] = this.computePointsTo(local);
+			this.indexedLocals[position] = local;
+		}
+		logger.debug("Indexed points-to sets of {} locals", locals.size());
+	}
+
+	private InitializerSet computePointsTo(Local base) {
+		Collection<?> nodes = this.getAbstractObjects(base);
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (Object node : nodes) {
+			// nodes that were not initialized have no initializers
+			for (FrogInitializer initializer : this.initializers.get(node)) {
+				numbers.add(initializer.getUniqueNumber());
+			}
+		}
+		return InitializerSet.of(Ints.toArray(numbers));
 	}
 
 	/**
@@ -140,15 +306,25 @@ public class PointsToInitializer {
 	 * Note that more than one node can be returned.
 	 * TODO: Create a test case with more than one node per invokeExpr
 	 */
-	public Collection<Node> getAllocationNodes(JSpecialInvokeExpr invokeExpr){
+	public Collection<?> getAllocationNodes(JSpecialInvokeExpr invokeExpr){
 		if(!isRelevantInit(invokeExpr)){
 			throw new RuntimeException("Call to getAllocationNodes with " + invokeExpr.toString() + "which is not an init call for the Frog class");
 		}
 		Local base = (Local) invokeExpr.getBase();
-		Collection<Node> allocationNodes = this.pointsTo.getNodes(base);
+		Collection<?> allocationNodes = this.getAbstractObjects(base);
 		return allocationNodes;
 	}
 
+	/**
+	 * 
+	 * @param base represents a local variable
+	 * @return the abstract objects base could point to, according to
+	 *         {@link #backend}
+	 */
+	private Collection<?> getAbstractObjects(Local base) {
+		return this.backend.getAbstractObjects(base);
+	}
+
 	public boolean isRelevantInit(JSpecialInvokeExpr invokeExpr){
 		Local base = (Local) invokeExpr.getBase();
 		boolean isRelevant = base.getType().toString().equals(Constants.FrogClassName);
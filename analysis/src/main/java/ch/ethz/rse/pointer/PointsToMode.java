@@ -0,0 +1,75 @@
+package ch.ethz.rse.pointer;
+
+import soot.SootClass;
+
+/**
+ * Analysis used by {@link PointsToInitializer} to determine which allocation
+ * sites a local may point to
+ */
+public enum PointsToMode {
+	/**
+	 * Whole-program SPARK analysis (requires
+	 * {@link soot.SootHelper#runPointsToAnalysis()})
+	 */
+	SPARK,
+	/**
+	 * SPARK with cheaper points-to set implementations and offline simplification
+	 * of the pointer assignment graph, which is expected to give the same results
+	 * as {@link #SPARK}
+	 */
+	SPARK_CHEAP,
+	/**
+	 * {@link #SPARK_CHEAP}, propagating along alias edges instead of a worklist of
+	 * field loads and stores, which is expected to give the same results as
+	 * {@link #SPARK}
+	 */
+	SPARK_ALIAS,
+	/**
+	 * A local may point to every allocation site of the analyzed class with a
+	 * compatible type (see {@link TypeBasedPointsTo})
+	 */
+	TYPE_BASED,
+	/**
+	 * Flow-insensitive analysis of each method in isolation (see
+	 * {@link IntraproceduralPointsTo})
+	 */
+	INTRAPROCEDURAL;
+
+	/**
+	 * 
+	 * @return true if {@link soot.SootHelper#runPointsToAnalysis()} must run before
+	 *         {@link #createBackend(SootClass)}
+	 */
+	public boolean requiresSpark() {
+		return this == SPARK || this == SPARK_CHEAP || this == SPARK_ALIAS;
+	}
+
+	/**
+	 * 
+	 * @param c class to analyze
+	 * @return the analysis for this mode
+	 */
+	public PointsToBackend createBackend(SootClass c) {
+		switch (this) {
+		case SPARK:
+		case SPARK_CHEAP:
+		case SPARK_ALIAS:
+			return new PointsToAnalysisWrapper(c);
+		case TYPE_BASED:
+			return new TypeBasedPointsTo(c);
+		case INTRAPROCEDURAL:
+			return new IntraproceduralPointsTo(c);
+		default:
+			throw new RuntimeException("Unknown points-to mode " + this);
+		}
+	}
+
+	/**
+	 * 
+	 * @param name e.g., "spark-cheap"
+	 * @return the corresponding mode
+	 */
+	public static PointsToMode fromOption(String name) {
+		return PointsToMode.valueOf(name.toUpperCase().replace('-', '_'));
+	}
+}
@@ -0,0 +1,47 @@
+package ch.ethz.rse.pointer;
+
+/**
+ * Production costs of the Frogs a call to sell may be invoked on, see
+ * {@link PointsToInitializer#getSellSite(soot.jimple.InvokeExpr)}
+ */
+public class SellSiteSummary {
+
+	/**
+	 * Initializers of the Frogs the call may be invoked on
+	 */
+	public final InitializerSet initializers;
+
+	/**
+	 * Largest production cost ({@link Integer#MIN_VALUE} if there are no
+	 * initializers)
+	 */
+	public final int maxCost;
+
+	/**
+	 * 
+	 * @param initializers initializers of the Frogs the call may be invoked on
+	 * @param pointsTo     resolves the unique numbers in initializers
+	 */
+	public SellSiteSummary(InitializerSet initializers, PointsToInitializer pointsTo) {
+		int max = Integer.MIN_VALUE;
+		for (int i = initializers.nextSetBit(0); i >= 0; i = initializers.nextSetBit(i + 1)) {
+			int cost = pointsTo.getInitializer(i).argument;
+			max = Math.max(max, cost);
+		}
+		this.initializers = initializers;
+		this.maxCost = max;
+	}
+
+	/**
+	 * 
+	 * @return true if the call cannot be invoked on any initialized Frog
+	 */
+	public boolean isEmpty() {
+		return this.initializers.isEmpty();
+	}
+
+	public String toString() {
+		return this.initializers + " max cost " + this.maxCost;
+	}
+
+}
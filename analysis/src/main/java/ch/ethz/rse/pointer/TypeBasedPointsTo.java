@@ -0,0 +1,97 @@
+package ch.ethz.rse.pointer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import soot.FastHierarchy;
+import soot.Local;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.AssignStmt;
+import soot.jimple.NewExpr;
+
+/**
+ * Type-based (CHA-style) points-to analysis: a local may point to every
+ * allocation site (statement <code>l = new T</code>) of the analyzed class
+ * whose type T can be stored in the local.
+ *
+ * This is the cheapest backend and needs no call graph, but it merges all
+ * objects of the same type.
+ */
+public class TypeBasedPointsTo implements PointsToBackend {
+
+	private static final Logger logger = LoggerFactory.getLogger(TypeBasedPointsTo.class);
+
+	/**
+	 * Allocation sites of the analyzed class, keyed by allocated type
+	 */
+	private final Map<Type, List<Unit>> allocations = new HashMap<Type, List<Unit>>();
+
+	/**
+	 * Results of {@link #getAbstractObjects(Local)}, keyed by the type of the local
+	 */
+	private final Map<Type, Collection<Unit>> byDeclaredType = new HashMap<Type, Collection<Unit>>();
+
+	private final FastHierarchy hierarchy;
+
+	public TypeBasedPointsTo(SootClass c) {
+		this.hierarchy = Scene.v().getOrMakeFastHierarchy();
+		int sites = 0;
+		for (SootMethod method : c.getMethods()) {
+			if (!method.isConcrete()) {
+				continue;
+			}
+			for (Unit unit : method.retrieveActiveBody().getUnits()) {
+				if (unit instanceof AssignStmt && ((AssignStmt) unit).getRightOp() instanceof NewExpr) {
+					Type type = ((AssignStmt) unit).getRightOp().getType();
+					List<Unit> units = this.allocations.get(type);
+					if (units == null) {
+						units = new ArrayList<Unit>();
+						this.allocations.put(type, units);
+					}
+					units.add(unit);
+					sites++;
+				}
+			}
+		}
+		logger.debug("Found {} allocation sites of {} types in {}", sites, this.allocations.size(), c.getName());
+	}
+
+	/**
+	 * 
+	 * @param base a local variable of the analyzed class
+	 * @return the allocation sites (statements <code>l = new T</code>) whose type
+	 *         can be stored in base
+	 */
+	public Collection<Unit> getAllocationSites(Local base) {
+		Type declared = base.getType();
+		Collection<Unit> ret = this.byDeclaredType.get(declared);
+		if (ret == null) {
+			List<Unit> sites = new ArrayList<Unit>();
+			for (Map.Entry<Type, List<Unit>> e : this.allocations.entrySet()) {
+				if (this.hierarchy.canStoreType(e.getKey(), declared)) {
+					sites.addAll(e.getValue());
+				}
+			}
+			ret = Collections.unmodifiableList(sites);
+			this.byDeclaredType.put(declared, ret);
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<?> getAbstractObjects(Local base) {
+		return this.getAllocationSites(base);
+	}
+
+}
@@ -14,5 +14,10 @@ public class Constants {
 	// possible verification results
 	public final static String safe = "SAFE";
 	public final static String unsafe = "UNSAFE";
+	public final static String crash = "ERROR.Crash";
+	public final static String timeout = "ERROR.Timeout";
+
+	// prefix of the line reporting the verification result
+	public final static String finalOutput = "FINAL OUTPUT:";
 
 }
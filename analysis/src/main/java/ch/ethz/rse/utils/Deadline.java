@@ -0,0 +1,91 @@
+package ch.ethz.rse.utils;
+
+/**
+ * Point in time by which a computation must finish
+ */
+public class Deadline {
+
+	/**
+	 * Deadline that never expires
+	 */
+	public static final Deadline NONE = new Deadline(System.nanoTime(), Long.MAX_VALUE);
+
+	/**
+	 * Start of the computation (as given by {@link System#nanoTime()})
+	 */
+	private final long start;
+
+	/**
+	 * End of the computation (as given by {@link System#nanoTime()}), or
+	 * {@link Long#MAX_VALUE} if there is none
+	 */
+	private final long end;
+
+	private Deadline(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * 
+	 * @param millis time budget
+	 * @return a deadline <code>millis</code> milliseconds from now
+	 */
+	public static Deadline after(long millis) {
+		long now = System.nanoTime();
+		return new Deadline(now, now + millis * 1000000);
+	}
+
+	/**
+	 * 
+	 * @param fraction share of the remaining time, between 0 and 1
+	 * @return a deadline starting now, that expires after <code>fraction</code> of
+	 *         the time remaining until this deadline
+	 */
+	public Deadline share(double fraction) {
+		if (this.isNone()) {
+			return this;
+		}
+		long now = System.nanoTime();
+		return new Deadline(now, now + (long) (Math.max(0, this.end - now) * fraction));
+	}
+
+	public boolean isNone() {
+		return this.end == Long.MAX_VALUE;
+	}
+
+	public boolean isExpired() {
+		return !this.isNone() && System.nanoTime() - this.end >= 0;
+	}
+
+	/**
+	 * 
+	 * @return the share of the time between start and end that has passed (0 if
+	 *         there is no deadline)
+	 */
+	public double elapsedFraction() {
+		if (this.isNone()) {
+			return 0;
+		}
+		long total = Math.max(1, this.end - this.start);
+		return (double) (System.nanoTime() - this.start) / total;
+	}
+
+	/**
+	 * 
+	 * @return remaining time in milliseconds ({@link Long#MAX_VALUE} if there is
+	 *         no deadline)
+	 */
+	public long remainingMillis() {
+		if (this.isNone()) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, (this.end - System.nanoTime()) / 1000000);
+	}
+
+	@Override
+	public String toString() {
+		return this.isNone() ? "no deadline" : this.remainingMillis() + "ms left";
+	}
+
+}
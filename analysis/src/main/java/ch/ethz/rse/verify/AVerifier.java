@@ -1,13 +1,33 @@
 package ch.ethz.rse.verify;
 
 import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.numerical.AnalysisAbortedException;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.Degradation;
 import ch.ethz.rse.numerical.NumericalAnalysis;
+import ch.ethz.rse.numerical.NumericalDomain;
+import ch.ethz.rse.utils.Deadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.SootMethod;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 
 public abstract class AVerifier {
@@ -19,6 +39,154 @@ public abstract class AVerifier {
 	 */
 	protected final Map<SootMethod, NumericalAnalysis> numericalAnalysis = new HashMap<SootMethod, NumericalAnalysis>();
 
+	/**
+	 * Time by which checking must finish
+	 */
+	private Deadline deadline = Deadline.NONE;
+
+	/**
+	 * Precision given up by the last check to meet {@link #deadline}
+	 */
+	private final Set<Degradation> degradations = EnumSet.noneOf(Degradation.class);
+
+	/**
+	 * Share of the remaining time given to each configuration of
+	 * {@link AnalysisConfiguration#getLadder(VerificationProperty)}. The last share leaves some time
+	 * for evaluating the checks.
+	 */
+	private static final double[] LADDER_SHARES = { 0.5, 0.5, 0.8 };
+
+	/**
+	 * Share of the remaining time given to each domain of
+	 * {@link AnalysisConfiguration#getRefinementDomains(VerificationProperty)}
+	 * except the last one, which gets all remaining time
+	 */
+	private static final double REFINEMENT_SHARE = 0.2;
+
+	/**
+	 * Number of checks that reached each domain of the refinement ladder, indexed
+	 * by {@link NumericalDomain#ordinal()}
+	 */
+	private static final AtomicLongArray rungsReached = new AtomicLongArray(NumericalDomain.values().length);
+
+	/**
+	 * Number of times (in this JVM) the methods of a class were analyzed, see
+	 * {@link #analyze(VerificationProperty, NumericalDomain, Deadline)}
+	 */
+	private static final AtomicLong analysesRun = new AtomicLong();
+
+	private static final AtomicInteger portfolioThreads = new AtomicInteger();
+
+	/**
+	 * Threads running the domain portfolio. Threads are reused across checks, so
+	 * that they keep their Apron managers (see
+	 * {@link ch.ethz.rse.numerical.ManagerPool}).
+	 */
+	private static final ExecutorService portfolioExecutor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "portfolio-" + portfolioThreads.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Verdicts of one member of the domain portfolio
+	 */
+	private static class PortfolioOutcome {
+
+		private final NumericalDomain domain;
+
+		private final Map<VerificationProperty, Boolean> verdicts;
+
+		private final Set<Degradation> degradations;
+
+		private PortfolioOutcome(NumericalDomain domain, Map<VerificationProperty, Boolean> verdicts,
+				Set<Degradation> degradations) {
+			this.domain = domain;
+			this.verdicts = verdicts;
+			this.degradations = degradations;
+		}
+	}
+
+	/**
+	 * Set the time by which {@link #check(VerificationProperty)} and
+	 * {@link #checkAll()} must return. When the deadline approaches, the
+	 * numerical analysis is retried with cheaper settings (see
+	 * {@link #getDegradations()}).
+	 * 
+	 * @param deadline
+	 */
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * 
+	 * @return the precision given up by the last check to meet its deadline
+	 */
+	public Set<Degradation> getDegradations() {
+		return EnumSet.copyOf(this.degradations);
+	}
+
+	/**
+	 * 
+	 * @return the number of calls to flowThrough by the numerical analyses kept
+	 *         by the last check, i.e., of its last refinement step and 0 for the
+	 *         portfolio (see {@link NumericalAnalysis#getFlowThroughCalls()})
+	 */
+	public long getFlowThroughCalls() {
+		long ret = 0;
+		for (NumericalAnalysis analysis : this.numericalAnalysis.values()) {
+			ret += analysis.getFlowThroughCalls();
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @return the number of variables with a bound at joins, in the numerical
+	 *         analyses kept by the last check (see
+	 *         {@link NumericalAnalysis#getConstrainedAtJoins()})
+	 */
+	public long getConstrainedAtJoins() {
+		long ret = 0;
+		for (NumericalAnalysis analysis : this.numericalAnalysis.values()) {
+			ret += analysis.getConstrainedAtJoins();
+		}
+		return ret;
+	}
+
+	/**
+	 * 
+	 * @return for each domain, the number of checks (in this JVM) that reached it
+	 *         on the refinement ladder
+	 */
+	public static Map<NumericalDomain, Long> getRungsReached() {
+		Map<NumericalDomain, Long> ret = new EnumMap<NumericalDomain, Long>(NumericalDomain.class);
+		for (NumericalDomain d : NumericalDomain.values()) {
+			ret.put(d, rungsReached.get(d.ordinal()));
+		}
+		return ret;
+	}
+
+	public static void resetRungsReached() {
+		for (int i = 0; i < rungsReached.length(); i++) {
+			rungsReached.set(i, 0);
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of times (in this JVM) the methods of a class were
+	 *         analyzed, counting an analysis retried with cheaper settings once
+	 */
+	public static long getAnalysesRun() {
+		return analysesRun.get();
+	}
+
+	public static void resetAnalysesRun() {
+		analysesRun.set(0);
+	}
+
 	/**
 	 * 
 	 * @param property
@@ -27,21 +195,14 @@ public abstract class AVerifier {
 	public boolean check(VerificationProperty property) {
 		long startTime = System.nanoTime();
 
-		this.runNumericalAnalysis(property);
-
 		boolean ret;
-		switch (property) {
-		case NON_NEGATIVE:
-			ret = this.checksNonNegative();
-			break;
-		case ITEM_PROFIT:
-			ret = this.checkItemProfit();
-			break;
-		case OVERALL_PROFIT:
-			ret = this.checkOverallProfit();
-			break;
-		default:
-			throw new UnsupportedOperationException(property.toString());
+		if (AnalysisConfiguration.isPortfolio()) {
+			ret = this.race(property, EnumSet.of(property)).get(property);
+		} else if (AnalysisConfiguration.isRefinement()) {
+			ret = this.refine(property);
+		} else {
+			ret = this.analyze(property, AnalysisConfiguration.getDomain(property), this.deadline)
+					&& this.evaluate(property);
 		}
 
 		long endTime = System.nanoTime();
@@ -51,6 +212,238 @@ public abstract class AVerifier {
 		return ret;
 	}
 
+	/**
+	 * Checks all properties based on a single run of the numerical analysis. The
+	 * analysis is run with profit tracking enabled (as needed by OVERALL_PROFIT),
+	 * and all checks are evaluated on the same per-unit states.
+	 * 
+	 * @return for each property, true if it is SAFE, false if it may be UNSAFE
+	 */
+	public Map<VerificationProperty, Boolean> checkAll() {
+		long startTime = System.nanoTime();
+
+		Map<VerificationProperty, Boolean> ret = new EnumMap<VerificationProperty, Boolean>(VerificationProperty.class);
+		if (AnalysisConfiguration.isPortfolio()) {
+			ret.putAll(this.race(VerificationProperty.OVERALL_PROFIT, EnumSet.allOf(VerificationProperty.class)));
+		} else if (AnalysisConfiguration.isRefinement()) {
+			// re-run more precise domains only while some property may be UNSAFE
+			List<NumericalDomain> rungs = AnalysisConfiguration
+					.getRefinementDomains(VerificationProperty.OVERALL_PROFIT);
+			for (int i = 0; i < rungs.size() && (ret.isEmpty() || ret.containsValue(false)); i++) {
+				boolean analyzed = this.analyzeRung(VerificationProperty.OVERALL_PROFIT, rungs, i);
+				for (VerificationProperty property : VerificationProperty.values()) {
+					if (!ret.getOrDefault(property, false)) {
+						ret.put(property, analyzed && this.evaluate(property));
+					}
+				}
+			}
+		} else {
+			boolean analyzed = this.analyze(VerificationProperty.OVERALL_PROFIT,
+					AnalysisConfiguration.getDomain(VerificationProperty.OVERALL_PROFIT), this.deadline);
+			for (VerificationProperty property : VerificationProperty.values()) {
+				ret.put(property, analyzed && this.evaluate(property));
+			}
+		}
+
+		long endTime = System.nanoTime();
+		long durationMilliseconds = (endTime - startTime) / 1000000;
+		logger.debug("Runtime: Checked all properties in {}ms", durationMilliseconds);
+
+		return ret;
+	}
+
+	/**
+	 * Check property in the domains of
+	 * {@link AnalysisConfiguration#getRefinementDomains(VerificationProperty)}
+	 * until one proves it SAFE. A cheaper domain may report false alarms, so only
+	 * the verdict of the last domain counts.
+	 * 
+	 * @param property
+	 * @return true if <code>property</code> is SAFE, false if it may be UNSAFE
+	 */
+	private boolean refine(VerificationProperty property) {
+		List<NumericalDomain> rungs = AnalysisConfiguration.getRefinementDomains(property);
+		for (int i = 0; i < rungs.size(); i++) {
+			if (this.analyzeRung(property, rungs, i) && this.evaluate(property)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Run the domains of
+	 * {@link AnalysisConfiguration#getRefinementDomains(VerificationProperty)}
+	 * concurrently, each on a {@link #fork()} of this verifier. Soot is only used
+	 * by {@link #prepare(VerificationProperty)}, before the forks start. Returns
+	 * once the properties are proven SAFE (by any domains) or the last domain
+	 * finished, and cancels the remaining analyses. A failing domain is ignored,
+	 * unless it is the last one. Afterwards, {@link #numericalAnalysis} is empty.
+	 * 
+	 * @param analyzed the property to run the numerical analysis for
+	 * @param checked  the properties to check on its result
+	 * @return for each property of checked, true if it is SAFE, false if it may be
+	 *         UNSAFE
+	 */
+	private Map<VerificationProperty, Boolean> race(VerificationProperty analyzed, Set<VerificationProperty> checked) {
+		List<NumericalDomain> domains = AnalysisConfiguration.getRefinementDomains(analyzed);
+		NumericalDomain last = domains.get(domains.size() - 1);
+		Deadline deadline = this.deadline;
+		this.prepare(analyzed);
+
+		CompletionService<PortfolioOutcome> completion = new ExecutorCompletionService<PortfolioOutcome>(
+				portfolioExecutor);
+		List<Future<PortfolioOutcome>> futures = new ArrayList<Future<PortfolioOutcome>>();
+		Map<Future<PortfolioOutcome>, NumericalDomain> domainOf = new IdentityHashMap<Future<PortfolioOutcome>, NumericalDomain>();
+		for (NumericalDomain domain : domains) {
+			AVerifier member = this.fork();
+			Future<PortfolioOutcome> future = completion
+					.submit(() -> member.runPortfolioMember(analyzed, checked, domain, deadline));
+			futures.add(future);
+			domainOf.put(future, domain);
+		}
+
+		this.numericalAnalysis.clear();
+		Map<VerificationProperty, Boolean> ret = new EnumMap<VerificationProperty, Boolean>(VerificationProperty.class);
+		for (VerificationProperty property : checked) {
+			ret.put(property, false);
+		}
+		try {
+			for (int i = 0; i < domains.size(); i++) {
+				Future<PortfolioOutcome> done = completion.take();
+				PortfolioOutcome outcome;
+				try {
+					outcome = done.get();
+				} catch (ExecutionException e) {
+					if (domainOf.get(done) == last) {
+						throw new RuntimeException(e.getCause());
+					}
+					// a cheaper domain failed, the remaining ones may still decide
+					logger.warn("Portfolio member {} failed: {}", domainOf.get(done), e.getCause().toString());
+					continue;
+				}
+				for (VerificationProperty property : checked) {
+					if (outcome.verdicts.get(property)) {
+						ret.put(property, true);
+					}
+				}
+				this.degradations.clear();
+				this.degradations.addAll(outcome.degradations);
+				if (!ret.containsValue(false) || outcome.domain == last) {
+					logger.debug("Portfolio decided {} using {}", checked, outcome.domain);
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			for (Future<PortfolioOutcome> f : futures) {
+				// interrupts analyses that are still running (see NumericalAnalysis)
+				f.cancel(true);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Analyze and check in a single domain, as a member of {@link #race}
+	 */
+	private PortfolioOutcome runPortfolioMember(VerificationProperty analyzed, Set<VerificationProperty> checked,
+			NumericalDomain domain, Deadline deadline) {
+		boolean finished = this.analyze(analyzed, domain, deadline);
+		Map<VerificationProperty, Boolean> verdicts = new EnumMap<VerificationProperty, Boolean>(
+				VerificationProperty.class);
+		for (VerificationProperty property : checked) {
+			verdicts.put(property, finished && this.evaluate(property));
+		}
+		return new PortfolioOutcome(domain, verdicts, this.getDegradations());
+	}
+
+	/**
+	 * Populate {@link #numericalAnalysis} using the i-th domain of rungs, counting
+	 * it in {@link #rungsReached}
+	 * 
+	 * @param property the property about to be verified
+	 * @param rungs    the refinement ladder
+	 * @param i
+	 * @return false if no configuration finished in time
+	 */
+	private boolean analyzeRung(VerificationProperty property, List<NumericalDomain> rungs, int i) {
+		NumericalDomain domain = rungs.get(i);
+		rungsReached.incrementAndGet(domain.ordinal());
+		if (i > 0) {
+			logger.debug("{} may be UNSAFE using {}, refining to {}", property, rungs.get(i - 1), domain);
+		}
+		Deadline deadline = i < rungs.size() - 1 ? this.deadline.share(REFINEMENT_SHARE) : this.deadline;
+		return this.analyze(property, domain, deadline);
+	}
+
+	/**
+	 * Populate {@link #numericalAnalysis}, trying the configurations of
+	 * {@link AnalysisConfiguration#getLadder(NumericalDomain)} until one finishes
+	 * before deadline
+	 * 
+	 * @param property the property about to be verified
+	 * @param domain   the domain selected for this analysis
+	 * @param deadline
+	 * @return false if no configuration finished in time
+	 */
+	private boolean analyze(VerificationProperty property, NumericalDomain domain, Deadline deadline) {
+		analysesRun.incrementAndGet();
+		this.degradations.clear();
+		if (deadline.isNone()) {
+			this.numericalAnalysis.clear();
+			this.runNumericalAnalysis(property, AnalysisConfiguration.forDomain(domain));
+			return true;
+		}
+
+		List<AnalysisConfiguration> ladder = AnalysisConfiguration.getLadder(domain);
+		for (int i = 0; i < ladder.size(); i++) {
+			AnalysisConfiguration config = ladder.get(i).withDeadline(deadline.share(LADDER_SHARES[i]));
+			this.numericalAnalysis.clear();
+			try {
+				this.runNumericalAnalysis(property, config);
+				for (NumericalAnalysis analysis : this.numericalAnalysis.values()) {
+					this.degradations.addAll(analysis.getDegradations());
+				}
+				this.degradations.addAll(config.getDegradations());
+				if (!this.degradations.isEmpty()) {
+					logger.info("Checked {} with degradations {}", property, this.degradations);
+				}
+				return true;
+			} catch (AnalysisAbortedException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					// cancelled, do not retry with cheaper settings
+					throw e;
+				}
+				logger.warn("{} using {}", e.getMessage(), config);
+			}
+		}
+		this.numericalAnalysis.clear();
+		this.degradations.add(Degradation.GAVE_UP);
+		logger.warn("No analysis of {} finished in time, reporting UNSAFE", property);
+		return false;
+	}
+
+	/**
+	 * Evaluate the check for <code>property</code> on {@link #numericalAnalysis}
+	 * 
+	 * @param property
+	 * @return true if <code>property</code> is SAFE, false if it may be UNSAFE
+	 */
+	private boolean evaluate(VerificationProperty property) {
+		switch (property) {
+		case NON_NEGATIVE:
+			return this.checksNonNegative();
+		case ITEM_PROFIT:
+			return this.checkItemProfit();
+		case OVERALL_PROFIT:
+			return this.checkOverallProfit();
+		default:
+			throw new UnsupportedOperationException(property.toString());
+		}
+	}
+
 	/**
 	 * 
 	 * @return true if NON_NEGATIVE is SAFE, false if it may be UNSAFE
@@ -69,10 +462,29 @@ public abstract class AVerifier {
 	 */
 	protected abstract boolean checkOverallProfit();
 
+	/**
+	 * 
+	 * @return a verifier of the same class, sharing all results computed before
+	 *         the numerical analysis (e.g., points-to information) but with its
+	 *         own {@link #numericalAnalysis}, so that both can run concurrently
+	 */
+	protected abstract AVerifier fork();
+
+	/**
+	 * Derive everything {@link #runNumericalAnalysis} needs from Soot for
+	 * property, so that forks can then analyze concurrently without touching Soot
+	 * (which is not thread-safe)
+	 * 
+	 * @param property the property about to be verified
+	 */
+	protected abstract void prepare(VerificationProperty property);
+
 	/**
 	 * Populate {@link #numericalAnalysis}
 	 * 
 	 * @param property the property about to be verified
+	 * @param config   settings of the numerical analysis
+	 * @throws AnalysisAbortedException if the deadline of config expires
 	 */
-	protected abstract void runNumericalAnalysis(VerificationProperty property);
+	protected abstract void runNumericalAnalysis(VerificationProperty property, AnalysisConfiguration config);
 }
@@ -2,6 +2,10 @@ package ch.ethz.rse.verify;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -17,6 +21,11 @@ public class ClassToVerify {
 	private final String packageName;
 	private final File classFile;
 
+	/**
+	 * Memoized result of {@link #getContentHash()}
+	 */
+	private volatile String contentHash = null;
+
 	/**
 	 * 
 	 * @param classPath   path to the root of the project containing the class to be
@@ -73,6 +82,28 @@ public class ClassToVerify {
 		return this.classFile;
 	}
 
+	/**
+	 * 
+	 * @return SHA-256 hash of the contents of the .class file to be verified (as
+	 *         hex string), computed once per instance
+	 */
+	public String getContentHash() {
+		if (this.contentHash != null) {
+			return this.contentHash;
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(this.classFile.toPath()));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			this.contentHash = hex.toString();
+			return this.contentHash;
+		} catch (IOException | NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return this.getName();
@@ -8,6 +8,8 @@ import java.util.List;
 import com.google.common.collect.Iterables;
 
 import apron.Environment;
+import ch.ethz.rse.numerical.MethodSummaries;
+import ch.ethz.rse.numerical.PropertySlice;
 import ch.ethz.rse.pointer.FrogInitializer;
 import ch.ethz.rse.pointer.PointsToInitializer;
 import ch.ethz.rse.utils.Constants;
@@ -50,6 +52,15 @@ public class EnvironmentGenerator {
 	 * @param method
 	 */
 	public EnvironmentGenerator(SootMethod method, PointsToInitializer pointsTo) {
+		this(method, pointsTo, PropertySlice.all());
+	}
+
+	/**
+	 * 
+	 * @param method
+	 * @param slice  only locals in slice are added to the environment
+	 */
+	public EnvironmentGenerator(SootMethod method, PointsToInitializer pointsTo, PropertySlice slice) {
 		this.method = method;
 		this.pointsTo = pointsTo;
 
@@ -58,15 +69,23 @@ public class EnvironmentGenerator {
 		// TODO: FILL THIS OUT
 		logger.debug("Building environment...");
 		for (Local local: this.method.getActiveBody().getLocals()) {
-			logger.debug(local.getName() + " " + local.getType().toString());
+			logger.debug("{} {}", local.getName(), local.getType());
+			if (!slice.contains(local.getName())) {
+				continue;
+			}
 			if (SootHelper.isIntValue((Value) local) || local.getType().toString().equals("boolean")) {
 				this.ints.add(local.getName());
 			}
 		}
-		this.ints.add("FROG_OVERALL_PROFIT");
-		this.ints.add("FROG_OVERALL_PROFIT_INTERVAL");
+		if (slice.tracksProfit()) {
+			this.ints.add("FROG_OVERALL_PROFIT");
+			this.ints.add("FROG_OVERALL_PROFIT_INTERVAL");
+		}
+		if (MethodSummaries.isEnabled()) {
+			this.addSummaryVariables();
+		}
 		
-		logger.debug(this.ints.toString());
+		logger.debug("{}", this.ints);
 		String ints_arr[] = Iterables.toArray(this.ints, String.class);
 		
 		String reals[] = {}; // we are not analyzing real numbers
@@ -79,4 +98,25 @@ public class EnvironmentGenerator {
 
 	// TODO: MAYBE FILL THIS OUT: add convenience methods
 
+	/**
+	 * Add the variables needed to summarize this method, and to apply the
+	 * summaries of the helpers it calls (see {@link MethodSummaries})
+	 */
+	private void addSummaryVariables() {
+		for (int k = 0; k < this.method.getParameterCount(); k++) {
+			this.ints.add(MethodSummaries.PARAM_PREFIX + k);
+		}
+		this.ints.add(MethodSummaries.RETURN);
+
+		int arguments = MethodSummaries.getMaxArguments(this.method);
+		if (arguments >= 0) {
+			for (int k = 0; k < arguments; k++) {
+				this.ints.add(MethodSummaries.CALL_PARAM_PREFIX + k);
+			}
+			this.ints.add(MethodSummaries.CALL_RETURN);
+			this.ints.add(MethodSummaries.CALL_PROFIT);
+			this.ints.add(MethodSummaries.CALL_PROFIT_INTERVAL);
+		}
+	}
+
 }
@@ -1,23 +1,33 @@
 package ch.ethz.rse.verify;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import apron.Abstract1;
-import apron.ApronException;
+import apron.Interval;
 import apron.MpqScalar;
 import apron.Scalar;
 import apron.Texpr1CstNode;
 import apron.Texpr1Node;
 import apron.Texpr1VarNode;
 import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.MethodStructure;
+import ch.ethz.rse.numerical.MethodSummaries;
 import ch.ethz.rse.numerical.NumericalAnalysis;
 import ch.ethz.rse.numerical.NumericalStateWrapper;
-import ch.ethz.rse.pointer.FrogInitializer;
+import ch.ethz.rse.pointer.SellSiteSummary;
 import ch.ethz.rse.pointer.PointsToInitializer;
 import ch.ethz.rse.utils.Constants;
 import polyglot.ast.Call;
@@ -29,6 +39,7 @@ import soot.Unit;
 import soot.Value;
 import soot.jimple.IntConstant;
 import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
 import soot.jimple.internal.JInvokeStmt;
 import soot.jimple.internal.JReturnVoidStmt;
 import soot.jimple.internal.JSpecialInvokeExpr;
@@ -54,6 +65,25 @@ public class Verifier extends AVerifier {
 	 */
 	private final PointsToInitializer pointsTo;
 
+	/**
+	 * Number of times a helper is analyzed in a growing calling context before
+	 * its parameters are left unbounded (needed for recursive helpers)
+	 */
+	private static final int MAX_CONTEXT_ROUNDS = 3;
+
+	/**
+	 * Private methods called as helpers (see {@link MethodSummaries#isHelperCall}),
+	 * only analyzed in the context of their calls. Other helpers may also be
+	 * called from outside the class, so they are analyzed like entry points.
+	 */
+	private final Set<SootMethod> helpers = new HashSet<SootMethod>();
+
+	/**
+	 * Structure of the methods of {@link #c} for each property, shared with forks
+	 * (see {@link #prepare(VerificationProperty)})
+	 */
+	private final Map<VerificationProperty, Map<SootMethod, MethodStructure>> structures;
+
 	/**
 	 * 
 	 * @param c class to verify
@@ -66,10 +96,38 @@ public class Verifier extends AVerifier {
 		// pointer analysis
 		// 1. executes pointer analysis,
 		this.pointsTo = new PointsToInitializer(this.c);
+
+		this.structures = new ConcurrentHashMap<VerificationProperty, Map<SootMethod, MethodStructure>>();
+	}
+
+	private Verifier(SootClass c, PointsToInitializer pointsTo,
+			Map<VerificationProperty, Map<SootMethod, MethodStructure>> structures) {
+		this.c = c;
+		this.pointsTo = pointsTo;
+		this.structures = structures;
+	}
+
+	@Override
+	protected AVerifier fork() {
+		return new Verifier(this.c, this.pointsTo, this.structures);
+	}
+
+	@Override
+	protected void prepare(VerificationProperty property) {
+		this.getStructures(property);
+	}
+
+	/**
+	 * 
+	 * @param property
+	 * @return the structure of the methods of {@link #c} for property, built once
+	 */
+	private Map<SootMethod, MethodStructure> getStructures(VerificationProperty property) {
+		return this.structures.computeIfAbsent(property, p -> MethodStructure.ofClass(this.c, p, this.pointsTo));
 	}
 
 	// 2. runs numerical analysis
-	protected void runNumericalAnalysis(VerificationProperty property) {
+	protected void runNumericalAnalysis(VerificationProperty property, AnalysisConfiguration config) {
 		// TODO: FILL THIS OUT
 
 		// - You may assume the class you analyze only has a single method in addition
@@ -79,24 +137,130 @@ public class Verifier extends AVerifier {
 		// - You can assume all analyzed methods only have integer parameters (in
 		// particular, they cannot have Frog parameters).
 
-		for (SootMethod method : this.c.getMethods()) {
+		// the structures skip the constructors of the class
+		Map<SootMethod, MethodStructure> structures = this.getStructures(property);
+
+		this.helpers.clear();
+		for (MethodStructure structure : structures.values()) {
+			for (MethodStructure callee : structure.getHelperCalls().values()) {
+				if (callee.getMethod().isPrivate()) {
+					this.helpers.add(callee.getMethod());
+				}
+			}
+		}
+
+		// helpers start from the arguments of their calls, joined over all calls
+		Map<SootMethod, Interval[]> contexts = new HashMap<SootMethod, Interval[]>();
+		Deque<SootMethod> worklist = new ArrayDeque<SootMethod>();
 
-			if (method.getName().contains("<init>")) {
-				// skip constructor of the class
+		for (MethodStructure structure : structures.values()) {
+
+			if (this.helpers.contains(structure.getMethod())) {
+				// analyzed below, once its calling context is known
 				continue;
 			}
 
-			// For debug, print the whole program
+			this.analyzeInContext(structure, config, null, contexts, worklist);
+
+		}
+
+		Map<SootMethod, Integer> rounds = new HashMap<SootMethod, Integer>();
+		while (!worklist.isEmpty()) {
+			SootMethod helper = worklist.poll();
+			Interval[] context = contexts.get(helper);
+			if (rounds.merge(helper, 1, Integer::sum) > MAX_CONTEXT_ROUNDS) {
+				context = new Interval[context.length];
+				contexts.put(helper, context);
+			}
+			this.analyzeInContext(structures.get(helper), config, context, contexts, worklist);
+		}
+
+	}
+
+	/**
+	 * Analyze a method and extend the calling contexts of the helpers it calls
+	 * 
+	 * @param structure structure of the analyzed method
+	 * @param context   bounds of the parameters of the method, or null
+	 * @param contexts  calling context of each helper
+	 * @param worklist  helpers whose context changed
+	 */
+	private void analyzeInContext(MethodStructure structure, AnalysisConfiguration config, Interval[] context,
+			Map<SootMethod, Interval[]> contexts, Deque<SootMethod> worklist) {
+		SootMethod method = structure.getMethod();
+		// For debug, print the whole program
+		if (logger.isDebugEnabled()) {
 			logger.debug("-=-=-" + method.getName() + "-=-=-");
 			for (Unit unit : method.getActiveBody().getUnits()) { // a statement
 				logger.debug(unit.toString());
 			}
 			logger.debug("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-");
+		}
 
-			numericalAnalysis.put(method, new NumericalAnalysis(method, property, pointsTo));
+		NumericalAnalysis analysis = new NumericalAnalysis(structure, pointsTo, config, context);
+		numericalAnalysis.put(method, analysis);
 
+		for (Map.Entry<Unit, MethodStructure> call : structure.getHelperCalls().entrySet()) {
+			NumericalStateWrapper state = analysis.getFlowBefore(call.getKey());
+			if (state.isBottom()) {
+				// unreachable call
+				continue;
+			}
+			InvokeExpr invokeExpr = ((Stmt) call.getKey()).getInvokeExpr();
+			SootMethod callee = call.getValue().getMethod();
+			if (!this.helpers.contains(callee)) {
+				// analyzed with unbounded parameters, which covers this call
+				continue;
+			}
+			Interval[] previous = contexts.get(callee);
+			Interval[] joined = new Interval[invokeExpr.getArgCount()];
+			boolean changed = previous == null;
+			for (int k = 0; k < joined.length; k++) {
+				Interval arg = Verifier.getArgumentBound(state, invokeExpr.getArg(k));
+				if (previous != null) {
+					arg = Verifier.join(previous[k], arg);
+					changed |= !(arg == null ? previous[k] == null : previous[k] != null && arg.isEqual(previous[k]));
+				}
+				joined[k] = arg;
+			}
+			if (changed) {
+				contexts.put(callee, joined);
+				if (!worklist.contains(callee)) {
+					worklist.add(callee);
+				}
+			}
 		}
+	}
+
+	/**
+	 * 
+	 * @return the bounds of arg in state, or null if they are unknown
+	 */
+	private static Interval getArgumentBound(NumericalStateWrapper state, Value arg) {
+		if (arg instanceof IntConstant) {
+			return new Interval(((IntConstant) arg).value, ((IntConstant) arg).value);
+		} else if (arg instanceof JimpleLocal && SootHelper.isIntValue(arg)) {
+			return state.getBound(((JimpleLocal) arg).getName());
+		}
+		return null;
+	}
 
+	/**
+	 * 
+	 * @return the hull of a and b (null stands for unbounded)
+	 */
+	private static Interval join(Interval a, Interval b) {
+		if (a == null || b == null) {
+			return null;
+		}
+		Interval ret = new Interval(a);
+		if (b.inf().cmp(a.inf()) < 0) {
+			ret.setInf(b.inf());
+		}
+		if (b.sup().cmp(a.sup()) > 0) {
+			ret.setSup(b.sup());
+		}
+		return ret;
 	}
 
 	@Override
@@ -106,36 +270,31 @@ public class Verifier extends AVerifier {
 		for (SootMethod method : numericalAnalysis.keySet()) {
 			NumericalAnalysis analysis = numericalAnalysis.get(method);
 			for (Unit unit : method.getActiveBody().getUnits()) {
-				Abstract1 abs = analysis.getFlowBefore(unit).get();
+				NumericalStateWrapper state = analysis.getFlowBefore(unit);
 				if (unit instanceof JInvokeStmt) {
 					InvokeExpr expr = ((JInvokeStmt) unit).getInvokeExpr();
-					if (expr instanceof JVirtualInvokeExpr) {
+					if (expr instanceof JVirtualInvokeExpr && analysis.getStructure().getHelperCall(unit) == null) {
 						JVirtualInvokeExpr invokeExpr = (JVirtualInvokeExpr) expr;
 
-						try {
-							if (!abs.isBottom(analysis.man)) { // if abs is empty, then this statement cannot be reached
-								Value arg = invokeExpr.getArg(0);
-								if (arg instanceof JimpleLocal) {
-									String argName = ((JimpleLocal) arg).getName();
-									Scalar lowerBound = abs.getBound(analysis.man, argName).inf();
-									if (lowerBound.cmp(0) == -1) { // is negative
-										return false;
-									}
-								} else if (arg instanceof IntConstant) {
-									int argValue = ((IntConstant) arg).value;
-									if (argValue < 0) {
-										return false;
-									}
-								} else {
-									throw new RuntimeException("arg is not JimpleLocal or IntConstant!");
+						if (!state.isBottom()) { // if state is empty, then this statement cannot be reached
+							Value arg = invokeExpr.getArg(0);
+							if (arg instanceof JimpleLocal) {
+								String argName = ((JimpleLocal) arg).getName();
+								Scalar lowerBound = state.getBound(argName).inf();
+								if (lowerBound.cmp(0) == -1) { // is negative
+									return false;
+								}
+							} else if (arg instanceof IntConstant) {
+								int argValue = ((IntConstant) arg).value;
+								if (argValue < 0) {
+									return false;
 								}
+							} else {
+								throw new RuntimeException("arg is not JimpleLocal or IntConstant!");
 							}
-						} catch (ApronException e) {
-							throw new RuntimeException(e);
 						}
 						
-						logger.debug(invokeExpr.toString());
-						logger.debug(abs.toString());
+						logger.debug("{}: {}", invokeExpr, state);
 						
 					}
 
@@ -154,43 +313,37 @@ public class Verifier extends AVerifier {
 		for (SootMethod method : numericalAnalysis.keySet()) {
 			NumericalAnalysis analysis = numericalAnalysis.get(method);
 			for (Unit unit : method.getActiveBody().getUnits()) {
-				Abstract1 abs = analysis.getFlowBefore(unit).get();
-				try {
-					if (unit instanceof JInvokeStmt) {
-						InvokeExpr expr = ((JInvokeStmt) unit).getInvokeExpr();
-						if (expr instanceof JVirtualInvokeExpr) {
-							JVirtualInvokeExpr invokeExpr = (JVirtualInvokeExpr) expr;
-							if (!abs.isBottom(analysis.man)) { // if abs is empty, then this statement cannot be reached
-
-								// get the object, and its value
-								Local base = (Local) invokeExpr.getBase();
-								List<FrogInitializer> initializers = pointsTo.pointsTo(base);
-
-								Value arg = invokeExpr.getArg(0);
-								if (arg instanceof JimpleLocal) {
-									String argName = ((JimpleLocal) arg).getName();
-									Scalar lowerBound = abs.getBound(analysis.man, argName).inf();
-									for (FrogInitializer initializer : initializers) {
-										if (lowerBound.cmp(initializer.argument) == -1) { // is strictly less than
-											return false;
-										}
-									}
-								} else if (arg instanceof IntConstant) {
-									int argValue = ((IntConstant) arg).value;
-									for (FrogInitializer initializer : initializers) {
-										if (argValue < initializer.argument) {
-											return false;
-										}
-									}
-								} else {
-									throw new RuntimeException("arg is not JimpleLocal or IntConstant!");
-								}
+				NumericalStateWrapper state = analysis.getFlowBefore(unit);
+				if (unit instanceof JInvokeStmt) {
+					InvokeExpr expr = ((JInvokeStmt) unit).getInvokeExpr();
+					if (expr instanceof JVirtualInvokeExpr && analysis.getStructure().getHelperCall(unit) == null) {
+						JVirtualInvokeExpr invokeExpr = (JVirtualInvokeExpr) expr;
+						if (!state.isBottom()) { // if state is empty, then this statement cannot be reached
+
+							// largest production cost of the object
+							SellSiteSummary sellSite = pointsTo.getSellSite(invokeExpr);
+							if (sellSite.isEmpty()) {
+								continue;
+							}
 
+							Value arg = invokeExpr.getArg(0);
+							if (arg instanceof JimpleLocal) {
+								String argName = ((JimpleLocal) arg).getName();
+								Scalar lowerBound = state.getBound(argName).inf();
+								if (lowerBound.cmp(sellSite.maxCost) == -1) { // is strictly less than
+									return false;
+								}
+							} else if (arg instanceof IntConstant) {
+								int argValue = ((IntConstant) arg).value;
+								if (argValue < sellSite.maxCost) {
+									return false;
+								}
+							} else {
+								throw new RuntimeException("arg is not JimpleLocal or IntConstant!");
 							}
+
 						}
 					}
-				} catch (ApronException e) {
-					throw new RuntimeException(e);
 				}
 
 			}
@@ -203,24 +356,24 @@ public class Verifier extends AVerifier {
 	public boolean checkOverallProfit() {
 		// TODO: FILL THIS OUT
 		for (SootMethod method : numericalAnalysis.keySet()) {
+			if (this.helpers.contains(method)) {
+				// the profit of helpers is added to their callers by summaries
+				continue;
+			}
 			NumericalAnalysis analysis = numericalAnalysis.get(method);
 
 			for (Unit unit : method.getActiveBody().getUnits()) {
-				Abstract1 abs = analysis.getFlowBefore(unit).get();
-				try {
-					if (unit instanceof JReturnVoidStmt) {
-						if (!abs.isBottom(analysis.man)) { // if abs is empty, then this statement cannot be reached
-							Scalar lowerBound = abs.getBound(analysis.man, "FROG_OVERALL_PROFIT").inf();
-							Scalar lowerBoundInterval = abs.getBound(analysis.man, "FROG_OVERALL_PROFIT_INTERVAL").inf();
-							if (lowerBound.cmp(0) == -1 && lowerBoundInterval.cmp(0) == -1) { // is negative
-								return false;
-							}
-							// note that both lowerBound and lowerBoundInterval are OVER_APPROXIMATIONS of the actual lower bound
-							// i.e. lowerBound < actual && lowerBoundInterval < actual
+				NumericalStateWrapper state = analysis.getFlowBefore(unit);
+				if (unit instanceof JReturnVoidStmt) {
+					if (!state.isBottom()) { // if state is empty, then this statement cannot be reached
+						Scalar lowerBound = state.getBound("FROG_OVERALL_PROFIT").inf();
+						Scalar lowerBoundInterval = state.getBound("FROG_OVERALL_PROFIT_INTERVAL").inf();
+						if (lowerBound.cmp(0) == -1 && lowerBoundInterval.cmp(0) == -1) { // is negative
+							return false;
 						}
+						// note that both lowerBound and lowerBoundInterval are OVER_APPROXIMATIONS of the actual lower bound
+						// i.e. lowerBound < actual && lowerBoundInterval < actual
 					}
-				} catch (ApronException e) {
-					throw new RuntimeException(e);
 				}
 
 			}
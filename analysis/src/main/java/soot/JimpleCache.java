@@ -0,0 +1,296 @@
+package soot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.verify.ClassToVerify;
+
+/**
+ * On-disk cache of the Jimple of analyzed classes, keyed by the content hash of
+ * their .class file (see {@link ClassToVerify#getContentHash()}) and by how
+ * Soot loads them (see {@link #describeLoading()}).
+ *
+ * Each entry stores the Jimple of the class with all its active bodies (and
+ * hence their locals and units), deflated. Loading a cached class parses this
+ * Jimple instead of the bytecode, which avoids bytecode parsing and body
+ * construction. The unit graph is rebuilt from the body, which is cheap.
+ *
+ * Entry format: magic, format version, description of the loading, class
+ * name, CRC32 and length of the Jimple, followed by the deflated Jimple. Entries that do not match are
+ * deleted, so that they are rebuilt on the next load.
+ */
+public class JimpleCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(JimpleCache.class);
+
+	private static final int MAGIC = 0x4a494d43;
+
+	/**
+	 * Increase when changing the entry format or how classes are loaded
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Upper bound on the length of the Jimple of an entry, in bytes. Lengths read
+	 * from an entry are checked before allocating, so that a corrupt entry is
+	 * discarded instead of exhausting the heap.
+	 */
+	private static final int MAX_JIMPLE_LENGTH = 64 * 1024 * 1024;
+
+	private final File directory;
+
+	/**
+	 * Version of Soot, see {@link #describeLoading()}
+	 */
+	private static String sootVersion = null;
+
+	/**
+	 *
+	 * @param directory directory holding the cache entries (created if needed)
+	 */
+	public JimpleCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 *
+	 * @param c class to look up
+	 * @return the cached Jimple of c, or null if c is not cached (or its entry was
+	 *         invalid)
+	 */
+	public String lookup(ClassToVerify c) {
+		File entry = this.getEntry(c);
+		if (!entry.exists()) {
+			logger.debug("Jimple cache miss for {}", c);
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(entry))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("unknown format");
+			}
+			String loading = in.readUTF();
+			if (!loading.equals(JimpleCache.describeLoading())) {
+				throw new IOException("entry was loaded with " + loading);
+			}
+			String className = in.readUTF();
+			if (!className.equals(c.getPackageName())) {
+				throw new IOException("entry belongs to " + className);
+			}
+			long checksum = in.readLong();
+			int jimpleLength = in.readInt();
+			int deflatedLength = in.readInt();
+			if (jimpleLength < 0 || jimpleLength > MAX_JIMPLE_LENGTH || deflatedLength < 0
+					|| deflatedLength > entry.length()) {
+				throw new IOException("invalid lengths " + jimpleLength + ", " + deflatedLength);
+			}
+			byte[] jimple = new byte[jimpleLength];
+			byte[] deflated = new byte[deflatedLength];
+			in.readFully(deflated);
+			if (in.read() != -1) {
+				throw new IOException("trailing data");
+			}
+
+			Inflater inflater = new Inflater();
+			inflater.setInput(deflated);
+			int length = inflater.inflate(jimple);
+			boolean finished = inflater.finished();
+			inflater.end();
+			if (length != jimple.length || !finished) {
+				throw new IOException("truncated data");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(jimple);
+			if (crc.getValue() != checksum) {
+				throw new IOException("checksum mismatch");
+			}
+
+			logger.debug("Jimple cache hit for {}", c);
+			return new String(jimple, StandardCharsets.UTF_8);
+		} catch (IOException | DataFormatException e) {
+			logger.warn("Discarding invalid Jimple cache entry {}: {}", entry, e.toString());
+			this.invalidate(c);
+			return null;
+		}
+	}
+
+	/**
+	 * Store the Jimple of a loaded class, failing silently
+	 *
+	 * @param c  class that was loaded
+	 * @param sc the loaded class, with all active bodies retrieved
+	 */
+	public void store(ClassToVerify c, SootClass sc) {
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(text, StandardCharsets.UTF_8))) {
+			Printer.v().printTo(sc, writer);
+		}
+		byte[] jimple = text.toByteArray();
+		if (jimple.length > MAX_JIMPLE_LENGTH) {
+			logger.debug("Not caching the Jimple of {} ({} bytes)", c, jimple.length);
+			return;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(jimple);
+
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, new Deflater(Deflater.BEST_SPEED))) {
+			out.write(jimple);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		File entry = this.getEntry(c);
+		File tmp = null;
+		try {
+			Files.createDirectories(this.directory.toPath());
+			// write to a temporary file first, so that concurrent readers never see
+			// partial entries
+			tmp = File.createTempFile(entry.getName(), ".tmp", this.directory);
+			try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(JimpleCache.describeLoading());
+				out.writeUTF(c.getPackageName());
+				out.writeLong(crc.getValue());
+				out.writeInt(jimple.length);
+				out.writeInt(deflated.size());
+				deflated.writeTo(out);
+			}
+			Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			logger.debug("Stored Jimple of {} in {} ({} bytes)", c, entry, deflated.size());
+		} catch (IOException e) {
+			logger.warn("Could not store Jimple cache entry {}: {}", entry, e.toString());
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Delete the entry of a class (if any)
+	 *
+	 * @param c
+	 */
+	public void invalidate(ClassToVerify c) {
+		this.getEntry(c).delete();
+	}
+
+	/**
+	 * 
+	 * @param c
+	 * @return the entry of c for the current classpath mode, so that both modes
+	 *         can share a cache directory
+	 */
+	File getEntry(ClassToVerify c) {
+		String mode = SootHelper.isMinimalClasspath() ? ".minimal" : "";
+		return new File(this.directory, c.getContentHash() + mode + ".jimc");
+	}
+
+	/**
+	 * The Jimple of a class depends on the Soot version and on the classpath mode
+	 * (with {@link SootHelper#isMinimalClasspath()}, library classes are
+	 * phantoms), so entries stored with other settings are discarded
+	 * 
+	 * @return the Soot version and classpath mode of the current loads
+	 */
+	static String describeLoading() {
+		return "soot=" + JimpleCache.getSootVersion() + ";minimalClasspath=" + SootHelper.isMinimalClasspath();
+	}
+
+	/**
+	 * 
+	 * @return the version of the Soot jar (its file name if the jar has no
+	 *         version in its manifest)
+	 */
+	private static synchronized String getSootVersion() {
+		if (sootVersion == null) {
+			sootVersion = Scene.class.getPackage().getImplementationVersion();
+		}
+		if (sootVersion == null) {
+			CodeSource source = Scene.class.getProtectionDomain().getCodeSource();
+			sootVersion = source == null ? "unknown" : new File(source.getLocation().getPath()).getName();
+		}
+		return sootVersion;
+	}
+
+	/**
+	 * Make Soot load <code>className</code> from the given Jimple instead of its
+	 * bytecode. Replaces the Jimple installed by previous calls.
+	 *
+	 * @param className fully qualified name of the class
+	 * @param jimple    Jimple of the class, or null to load it from bytecode
+	 */
+	public static void install(String className, String jimple) {
+		SourceLocator locator = SourceLocator.v();
+		if (locator.classProviders == null) {
+			locator.setupClassProviders();
+		}
+		Iterator<ClassProvider> it = locator.classProviders.iterator();
+		while (it.hasNext()) {
+			if (it.next() instanceof CachedJimpleProvider) {
+				it.remove();
+			}
+		}
+		if (jimple != null) {
+			locator.classProviders.add(0, new CachedJimpleProvider(className, jimple));
+		}
+	}
+
+	/**
+	 * Provides a single class from its cached Jimple
+	 */
+	private static class CachedJimpleProvider implements ClassProvider {
+
+		private final String className;
+
+		private final byte[] jimple;
+
+		public CachedJimpleProvider(String className, String jimple) {
+			this.className = className;
+			this.jimple = jimple.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public ClassSource find(String className) {
+			if (!this.className.equals(className)) {
+				return null;
+			}
+			final byte[] jimple = this.jimple;
+			FoundFile file = new FoundFile(new File(className + ".jimple")) {
+				@Override
+				public InputStream inputStream() {
+					return new ByteArrayInputStream(jimple);
+				}
+			};
+			return new JimpleClassSource(className, file);
+		}
+	}
+
+}
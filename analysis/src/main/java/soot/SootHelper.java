@@ -1,8 +1,12 @@
 package soot;
 
+import java.io.File;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.ethz.rse.pointer.PointsToInitializer;
+import ch.ethz.rse.pointer.PointsToMode;
 import ch.ethz.rse.utils.Configuration;
 import ch.ethz.rse.verify.ClassToVerify;
 import soot.options.Options;
@@ -17,9 +21,91 @@ public class SootHelper {
 
 	private static final Logger logger = LoggerFactory.getLogger(SootHelper.class);
 
+	/**
+	 * If set, consecutive loads keep the Scene (and in particular the loaded
+	 * library classes) and only swap out the analyzed class
+	 */
+	private static boolean reuseScene = false;
+
+	/**
+	 * If set, the Java library is left out of the Soot classpath, so that only the
+	 * analyzed class and {@link ch.ethz.rse.utils.Constants#FrogClassName} are
+	 * loaded from bytecode, while all other classes are modeled as phantoms
+	 */
+	private static boolean minimalClasspath = false;
+
+	/**
+	 * Soot classpath of the currently loaded Scene
+	 */
+	private static String loadedClasspath = null;
+
+	/**
+	 * Class loaded into the current Scene by the last call to
+	 * {@link #loadClass(ClassToVerify)}
+	 */
+	private static SootClass loadedClass = null;
+
+	/**
+	 * If set, the Jimple of analyzed classes is cached on disk (see
+	 * {@link JimpleCache})
+	 */
+	private static JimpleCache jimpleCache = null;
+
+	/**
+	 * Enable or disable reusing the Scene across consecutive tasks (useful when
+	 * verifying many classes in one JVM). When enabled, {@link G#reset()} is only
+	 * called if the classpath changes.
+	 * 
+	 * @param reuse
+	 */
+	public static void setReuseScene(boolean reuse) {
+		SootHelper.reuseScene = reuse;
+	}
+
+	/**
+	 * Enable or disable loading classes without the Java library (see
+	 * {@link #minimalClasspath}). This avoids resolving the class hierarchy of
+	 * rt.jar, which dominates loading time for the small analyzed classes.
+	 * 
+	 * @param minimal
+	 */
+	public static void setMinimalClasspath(boolean minimal) {
+		SootHelper.minimalClasspath = minimal;
+	}
+
+	/**
+	 * Enable or disable caching the Jimple of analyzed classes
+	 * 
+	 * @param directory cache directory, or null to disable caching
+	 */
+	public static void setJimpleCache(File directory) {
+		SootHelper.jimpleCache = directory == null ? null : new JimpleCache(directory);
+	}
+
+	public static File getJimpleCache() {
+		return SootHelper.jimpleCache == null ? null : SootHelper.jimpleCache.getDirectory();
+	}
+
+	public static boolean isReuseScene() {
+		return SootHelper.reuseScene;
+	}
+
+	public static boolean isMinimalClasspath() {
+		return SootHelper.minimalClasspath;
+	}
+
+	/**
+	 * Load the referenced class, and run the whole-program points-to analysis if
+	 * {@link PointsToInitializer#getMode()} requires it
+	 * 
+	 * @param c the class to test
+	 * @return the Soot representation of c
+	 */
 	public static SootClass loadClassAndAnalyze(ClassToVerify c) {
 		SootClass sc = SootHelper.loadClass(c);
-		SootHelper.runPointsToAnalysis();
+		if (PointsToInitializer.getMode().requiresSpark()) {
+			SootHelper.runPointsToAnalysis(PointsToInitializer.getMode());
+		}
 		return sc;
 	}
 
@@ -42,6 +128,31 @@ public class SootHelper {
 	}
 
 	private static SootClass loadClassInternal(ClassToVerify c) {
+		String cached = jimpleCache == null ? null : jimpleCache.lookup(c);
+		if (cached != null) {
+			try {
+				return SootHelper.loadClassInternal(c, cached);
+			} catch (RuntimeException e) {
+				// the entry passed the checksum, but Soot cannot load it (e.g., it was
+				// written by a different version of Soot)
+				logger.warn("Rebuilding Jimple cache entry of {}: {}", c, e.toString());
+				jimpleCache.invalidate(c);
+			}
+		}
+		SootClass sc = SootHelper.loadClassInternal(c, null);
+		if (jimpleCache != null) {
+			jimpleCache.store(c, sc);
+		}
+		return sc;
+	}
+
+	/**
+	 * 
+	 * @param c      class to load
+	 * @param cached cached Jimple of c, or null to load c from its bytecode
+	 * @return the Soot representation of c
+	 */
+	private static SootClass loadClassInternal(ClassToVerify c, String cached) {
 		// sometimes, the wrong java version leads to weird behavior (bugs or
 		// performance issues)
 		logger.info("Using Java version {}", System.getProperty("java.version"));
@@ -49,6 +160,46 @@ public class SootHelper {
 		String classesDir = c.getClassPath().toString();
 		String classToAnalyze = c.getPackageName();
 
+		// construct classpath to use when loading the examples
+		String javaHome = Configuration.props.getSootJavaHome();
+		if (javaHome == null) {
+			logger.error("JAVA_HOME not set: " + javaHome);
+		}
+		String rt = javaHome + "/jre/lib/rt.jar";
+		String jce = javaHome + "/jre/lib/jce.jar";
+		String classpath = classesDir + ":" + rt + ":" + jce;
+		if (minimalClasspath) {
+			// everything outside classesDir becomes a phantom class
+			classpath = classesDir;
+		}
+
+		boolean reuse = reuseScene && classpath.equals(loadedClasspath);
+		// only mark the Scene as reusable once loading succeeded
+		loadedClasspath = null;
+		SootClass sc;
+		if (reuse) {
+			sc = SootHelper.replaceLoadedClass(classToAnalyze, cached);
+		} else {
+			sc = SootHelper.loadIntoFreshScene(classpath, classToAnalyze, cached);
+		}
+		loadedClasspath = classpath;
+		loadedClass = sc;
+		SootHelper.logSceneStatistics();
+
+		Scene.v().setEntryPoints(sc.getMethods());
+
+		for (SootMethod method : sc.getMethods()) {
+			method.retrieveActiveBody();
+			logger.debug("Loaded method {} with body:\n{}", method.toString(), method.getActiveBody());
+		}
+		for (SootField field : sc.getFields()) {
+			logger.debug("Loaded field {}", field.toString());
+		}
+
+		return sc;
+	}
+
+	private static SootClass loadIntoFreshScene(String classpath, String classToAnalyze, String cached) {
 		// reset previously loaded classes (important for consecutive analysis)
 		logger.info("Resetting Soot.");
 		G.reset();
@@ -58,14 +209,6 @@ public class SootHelper {
 		// https://stackoverflow.com/questions/48620178/how-can-i-set-up-soot-when-using-it-as-a-library
 		// https://o2lab.github.io/710/p/a1.html
 
-		// construct classpath to use when loading the examples
-		String javaHome = Configuration.props.getSootJavaHome();
-		if (javaHome == null) {
-			logger.error("JAVA_HOME not set: " + javaHome);
-		}
-		String rt = javaHome + "/jre/lib/rt.jar";
-		String jce = javaHome + "/jre/lib/jce.jar";
-		String classpath = classesDir + ":" + rt + ":" + jce;
 		// set classpath
 		logger.debug("Soot classpath:" + classpath);
 		Scene.v().setSootClassPath(classpath);
@@ -86,35 +229,83 @@ public class SootHelper {
 
 		// load the class
 		logger.info("Loading {} into Soot", classToAnalyze);
+		JimpleCache.install(classToAnalyze, cached);
 		SootClass sc = Scene.v().loadClass(classToAnalyze, SootClass.BODIES);
 		sc.setApplicationClass();
 
 		Scene.v().loadNecessaryClasses();
 
-		Scene.v().setEntryPoints(sc.getMethods());
+		return sc;
+	}
 
-		for (SootMethod method : sc.getMethods()) {
-			method.retrieveActiveBody();
-			logger.debug("Loaded method {} with body:\n{}", method.toString(), method.getActiveBody());
-		}
-		for (SootField field : sc.getFields()) {
-			logger.debug("Loaded field {}", field.toString());
+	/**
+	 * Replace the previously analyzed class by <code>classToAnalyze</code>,
+	 * keeping all other classes (in particular, the Java library) loaded
+	 */
+	private static SootClass replaceLoadedClass(String classToAnalyze, String cached) {
+		logger.info("Reusing Scene: replacing {} by {}", loadedClass.getName(), classToAnalyze);
+
+		// drop results of the previous points-to analysis
+		Scene.v().releasePointsToAnalysis();
+		Scene.v().releaseCallGraph();
+		Scene.v().releaseReachableMethods();
+		// both hierarchies still contain the previous class and lack the new one
+		Scene.v().releaseActiveHierarchy();
+		Scene.v().releaseFastHierarchy();
+
+		if (loadedClass.isInScene()) {
+			Scene.v().removeClass(loadedClass);
 		}
 
+		// resolving has already finished for the Scene, so force it
+		JimpleCache.install(classToAnalyze, cached);
+		SootClass sc = Scene.v().forceResolve(classToAnalyze, SootClass.BODIES);
+		sc.setApplicationClass();
+
 		return sc;
 	}
 
+	/**
+	 * Report how many classes are loaded in the Scene, and how many of them are
+	 * phantoms (i.e., were referenced, but not loaded). Phantoms are not classes
+	 * whose loading was avoided: a full classpath would also load the classes
+	 * they reference, so their count says nothing about the classes saved.
+	 */
+	private static void logSceneStatistics() {
+		Scene scene = Scene.v();
+		int phantom = scene.getPhantomClasses().size();
+		int application = scene.getApplicationClasses().size();
+		int library = scene.getLibraryClasses().size();
+		if (minimalClasspath) {
+			logger.info("Minimal classpath: loaded {} application and {} library classes ({} phantom classes)",
+					application, library, phantom);
+		} else {
+			logger.debug("Loaded {} application and {} library classes ({} phantom classes)", application, library,
+					phantom);
+		}
+	}
+
 	public static void runPointsToAnalysis() {
+		SootHelper.runPointsToAnalysis(PointsToMode.SPARK);
+	}
+
+	/**
+	 * Run SPARK with the profile of mode
+	 * 
+	 * @param mode {@link PointsToMode#SPARK}, {@link PointsToMode#SPARK_CHEAP} or
+	 *             {@link PointsToMode#SPARK_ALIAS}
+	 */
+	public static void runPointsToAnalysis(PointsToMode mode) {
 		long startTime = System.nanoTime();
 
-		SootHelper.runPointsToAnalysisInternal();
+		SootHelper.runPointsToAnalysisInternal(mode);
 
 		long endTime = System.nanoTime();
 		long durationMilliseconds = (endTime - startTime) / 1000000;
-		logger.debug("Runtime: Ran points-to analysis in {}ms", durationMilliseconds);
+		logger.debug("Runtime: Ran points-to analysis ({}) in {}ms", mode, durationMilliseconds);
 	}
 
-	private static void runPointsToAnalysisInternal() {
+	private static void runPointsToAnalysisInternal(PointsToMode mode) {
 		// Enable SPARK call-graph construction
 		// Documentation of options:
 		// https://soot-build.cs.uni-paderborn.de/public/origin/master/soot/soot-master/3.0.0/options/soot_options.htm#phase_5_2
@@ -127,6 +318,28 @@ public class SootHelper {
 		// resulting callgraph will be inherently unsound. Still, this option
 		// can make sense for efficiency reasons
 		Options.v().setPhaseOption("cg.spark", "apponly:true");
+		// set all options that differ between profiles, as a reused scene keeps the
+		// options of the previous run
+		if (mode == PointsToMode.SPARK_CHEAP || mode == PointsToMode.SPARK_ALIAS) {
+			// single-level bitsets and collapsing of copy chains and cycles in the
+			// pointer assignment graph before propagation
+			Options.v().setPhaseOption("cg.spark", "set-impl:hybrid");
+			Options.v().setPhaseOption("cg.spark", "simplify-offline:true");
+			Options.v().setPhaseOption("cg.spark", "simplify-sccs:true");
+			Options.v().setPhaseOption("cg.spark", "verbose:false");
+		} else {
+			Options.v().setPhaseOption("cg.spark", "set-impl:double");
+			Options.v().setPhaseOption("cg.spark", "double-set-old:hybrid");
+			Options.v().setPhaseOption("cg.spark", "double-set-new:hybrid");
+			Options.v().setPhaseOption("cg.spark", "simplify-offline:false");
+			Options.v().setPhaseOption("cg.spark", "simplify-sccs:false");
+		}
+		if (mode == PointsToMode.SPARK_ALIAS) {
+			// handles field accesses through alias edges between loads and stores
+			Options.v().setPhaseOption("cg.spark", "propagator:alias");
+		} else {
+			Options.v().setPhaseOption("cg.spark", "propagator:worklist");
+		}
 
 		// SPARK requires jimple format
 		// Helpful source: https://github.com/Sable/soot/issues/332
@@ -145,7 +358,14 @@ public class SootHelper {
 				|| val.getType().toString().equals("byte");
 	}
 
-	public final static UnitGraph getUnitGraph(SootMethod method) {
+	/**
+	 * Synchronized, as Soot may lazily build bodies and is not thread-safe (the
+	 * domain portfolio analyzes a method on several threads)
+	 * 
+	 * @param method
+	 * @return a new graph of the active body of method
+	 */
+	public final static synchronized UnitGraph getUnitGraph(SootMethod method) {
 		Body b = method.retrieveActiveBody();
 		logger.debug("Analysing:\n" + b);
 		UnitGraph g = new BriefUnitGraph(b);
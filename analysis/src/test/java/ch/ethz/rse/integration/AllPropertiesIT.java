@@ -0,0 +1,56 @@
+package ch.ethz.rse.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.main.Runner;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.verify.AVerifier;
+
+/**
+ * Checks that verifying all properties in a single pass yields the expected
+ * results, analyzing the class only once
+ */
+public class AllPropertiesIT {
+
+	public static Iterable<VerificationTestCase> getTests() throws IOException {
+		return AllExamplesIT.getTests();
+	}
+
+	@AfterEach
+	public void restoreDefault() {
+		AnalysisConfiguration.setPortfolio(false);
+	}
+
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("getTests")
+	void testExampleClass(VerificationTestCase example) {
+		Assumptions.assumeFalse(example.isDisabled());
+
+		AVerifier.resetAnalysesRun();
+		Map<VerificationProperty, VerificationResult> actual = Runner.verifyAll(example.getTestClass());
+		Assertions.assertEquals(example.expected, actual.get(example.verificationProperty));
+		// a single analysis serves all properties
+		Assertions.assertEquals(1L, AVerifier.getAnalysesRun());
+	}
+
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("getTests")
+	void testPortfolioAllProperties(VerificationTestCase example) {
+		Assumptions.assumeFalse(example.isDisabled());
+
+		AnalysisConfiguration.setPortfolio(true);
+		Map<VerificationProperty, VerificationResult> actual = Runner.verifyAll(example.getTestClass());
+		Assertions.assertEquals(example.expected, actual.get(example.verificationProperty));
+	}
+
+}
@@ -0,0 +1,80 @@
+package ch.ethz.rse.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.main.Runner;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.MethodSummaries;
+import ch.ethz.rse.testing.VerificationTestCase;
+
+/**
+ * Runs the examples calling helper methods (which are not collected by
+ * {@link ch.ethz.rse.testing.VerificationTestCaseCollector}) in
+ * interprocedural mode
+ */
+public class InterproceduralIT {
+
+	/**
+	 * Number of times each example is raced by the portfolio, to expose races
+	 * between its members
+	 */
+	private static final int REPETITIONS = 5;
+
+	private static final String PACKAGE = "ch.ethz.rse.integration.tests.interprocedural.";
+
+	public static List<VerificationTestCase> getTests() {
+		List<VerificationTestCase> ret = new ArrayList<VerificationTestCase>();
+		for (VerificationProperty p : VerificationProperty.values()) {
+			ret.add(new VerificationTestCase(PACKAGE + "Helper_Safe", p, true));
+			ret.add(new VerificationTestCase(PACKAGE + "Helper_Unsafe", p, false));
+			// helpers are only checked in the context of their calls
+			ret.add(new VerificationTestCase(PACKAGE + "Helper_Unguarded", p, true));
+			ret.add(new VerificationTestCase(PACKAGE + "Helper_LossInVoid", p,
+					p != VerificationProperty.ITEM_PROFIT));
+			// public helpers are also entry points, with any arguments
+			ret.add(new VerificationTestCase(PACKAGE + "Helper_PublicUnguarded", p, false));
+		}
+		return ret;
+	}
+
+	@BeforeEach
+	public void enable() {
+		MethodSummaries.setEnabled(true);
+	}
+
+	@AfterEach
+	public void restoreDefault() {
+		MethodSummaries.setEnabled(false);
+		AnalysisConfiguration.setPortfolio(false);
+	}
+
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("getTests")
+	void testHelpers(VerificationTestCase example) {
+		SpecificExampleIT.testOnExample(example);
+	}
+
+	/**
+	 * The members of the portfolio analyze the same methods concurrently,
+	 * including the summaries of helpers
+	 */
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("getTests")
+	void testPortfolioWithSummaries(VerificationTestCase example) {
+		AnalysisConfiguration.setPortfolio(true);
+		for (int i = 0; i < REPETITIONS; i++) {
+			VerificationResult actual = Runner.verify(example.getVerificationTask());
+			Assertions.assertEquals(example.expected, actual);
+		}
+	}
+
+}
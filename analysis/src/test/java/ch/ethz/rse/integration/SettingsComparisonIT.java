@@ -0,0 +1,322 @@
+package ch.ethz.rse.integration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.main.Runner;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.DeadVariables;
+import ch.ethz.rse.numerical.Degradation;
+import ch.ethz.rse.numerical.NumericalDomain;
+import ch.ethz.rse.numerical.PropertySlice;
+import ch.ethz.rse.numerical.VariablePacks;
+import ch.ethz.rse.numerical.WideningThresholds;
+import ch.ethz.rse.numerical.WtoFixpoint;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.utils.Deadline;
+import ch.ethz.rse.verify.AVerifier;
+import ch.ethz.rse.verify.Verifier;
+import soot.SootHelper;
+
+/**
+ * Compares verification under each optional {@link Setting} to verification
+ * with the default settings, on all examples. Settings that keep precision
+ * must report the same verdict as the defaults, the others must stay sound
+ * (never report SAFE for an UNSAFE example). Runtimes, iterations and lost
+ * verdicts are logged per example and in total.
+ */
+public class SettingsComparisonIT {
+
+	private static final Logger logger = LoggerFactory.getLogger(SettingsComparisonIT.class);
+
+	/**
+	 * Example whose locals partly never reach a sell or a branch (not collected by
+	 * {@link ch.ethz.rse.testing.VerificationTestCaseCollector})
+	 */
+	private static final String SLICING_EXAMPLE = "ch.ethz.rse.integration.tests.slicing.Slice_IrrelevantLocals";
+
+	/**
+	 * Settings compared to the defaults
+	 */
+	enum Setting {
+		BOX(false) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setDomain(NumericalDomain.BOX);
+			}
+		},
+		OCTAGON(false) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setDomain(NumericalDomain.OCTAGON);
+			}
+		},
+		POLKA_EQ(false) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setDomain(NumericalDomain.POLKA_EQ);
+			}
+		},
+		POLKA_LOOSE(false) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setDomain(NumericalDomain.POLKA_LOOSE);
+			}
+		},
+		REFINEMENT(true) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setRefinement(true);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				Assertions.assertEquals(1L, (long) AVerifier.getRungsReached().get(NumericalDomain.BOX));
+				if (!run.result.isSafe) {
+					// only the selected domain may report UNSAFE
+					NumericalDomain selected = AnalysisConfiguration.getDomain(example.verificationProperty);
+					Assertions.assertEquals(1L, (long) AVerifier.getRungsReached().get(selected));
+				}
+			}
+		},
+		PORTFOLIO(true) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setPortfolio(true);
+			}
+		},
+		PORTFOLIO_TINY_BUDGET(false) {
+			@Override
+			void apply() {
+				AnalysisConfiguration.setPortfolio(true);
+				Runner.setBudget(1);
+			}
+		},
+		PACKING(false) {
+			@Override
+			void apply() {
+				VariablePacks.setEnabled(true);
+			}
+		},
+		WTO(true) {
+			@Override
+			void apply() {
+				WtoFixpoint.setEnabled(true);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				Assertions.assertTrue(run.iterations <= defaults.iterations,
+						run.iterations + " > " + defaults.iterations);
+			}
+		},
+		THRESHOLDS(true) {
+			@Override
+			void apply() {
+				WideningThresholds.setEnabled(true);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				Assertions.assertTrue(run.iterations <= defaults.iterations,
+						run.iterations + " > " + defaults.iterations);
+			}
+		},
+		SLICING(true) {
+			@Override
+			void apply() {
+				PropertySlice.setEnabled(true);
+			}
+		},
+		FORGET_DEAD(true) {
+			@Override
+			void apply() {
+				DeadVariables.setEnabled(true);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				Assertions.assertTrue(run.constrainedAtJoins <= defaults.constrainedAtJoins,
+						run.constrainedAtJoins + " > " + defaults.constrainedAtJoins);
+			}
+		},
+		TINY_BUDGET(false) {
+			@Override
+			void apply() {
+				Runner.setBudget(1);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				if (!run.result.isSafe) {
+					Assertions.assertFalse(run.result.getDegradations().isEmpty());
+				}
+			}
+		},
+		LARGE_BUDGET(true) {
+			@Override
+			void apply() {
+				Runner.setBudget(60000);
+			}
+
+			@Override
+			void check(VerificationTestCase example, Run defaults, Run run) {
+				Assertions.assertFalse(run.result.getDegradations().contains(Degradation.GAVE_UP));
+			}
+		};
+
+		/**
+		 * If true, verdicts must be identical to those of the defaults
+		 */
+		final boolean precise;
+
+		Setting(boolean precise) {
+			this.precise = precise;
+		}
+
+		/**
+		 * Change the defaults to this setting
+		 */
+		abstract void apply();
+
+		/**
+		 * Check properties specific to this setting
+		 *
+		 * @param example  verified example
+		 * @param defaults verification with the defaults
+		 * @param run      verification with this setting
+		 */
+		void check(VerificationTestCase example, Run defaults, Run run) {
+		}
+	}
+
+	/**
+	 * Result and cost of verifying an example
+	 */
+	static class Run {
+
+		final VerificationResult result;
+
+		final long nanos;
+
+		final long iterations;
+
+		final long constrainedAtJoins;
+
+		Run(VerificationResult result, long nanos, long iterations, long constrainedAtJoins) {
+			this.result = result;
+			this.nanos = nanos;
+			this.iterations = iterations;
+			this.constrainedAtJoins = constrainedAtJoins;
+		}
+	}
+
+	/**
+	 * Verification with the defaults, keyed by example
+	 */
+	private static final Map<String, Run> defaults = new HashMap<String, Run>();
+
+	private static final Map<Setting, long[]> totals = new EnumMap<Setting, long[]>(Setting.class);
+
+	private String saved;
+
+	public static List<Arguments> getTests() throws IOException {
+		List<VerificationTestCase> examples = new ArrayList<VerificationTestCase>(AllExamplesIT.getTests());
+		for (VerificationProperty p : VerificationProperty.values()) {
+			examples.add(new VerificationTestCase(SLICING_EXAMPLE, p, true));
+		}
+		List<Arguments> ret = new ArrayList<Arguments>();
+		for (Setting setting : Setting.values()) {
+			for (VerificationTestCase example : examples) {
+				ret.add(Arguments.of(setting, example));
+			}
+		}
+		return ret;
+	}
+
+	@BeforeEach
+	public void saveSettings() {
+		this.saved = Runner.exportSettings();
+	}
+
+	@AfterEach
+	public void restoreSettings() {
+		Runner.applySettings(this.saved);
+	}
+
+	@AfterAll
+	public static void logTotal() {
+		for (Map.Entry<Setting, long[]> e : totals.entrySet()) {
+			long[] t = e.getValue();
+			logger.info("Runtime: {}ms with the defaults, {}ms with {}, {} verdicts lost", t[0] / 1000000,
+					t[1] / 1000000, e.getKey(), t[2]);
+		}
+	}
+
+	@ParameterizedTest(name = "{index}: {0} {1}")
+	@MethodSource("getTests")
+	void testSetting(Setting setting, VerificationTestCase example) {
+		Assumptions.assumeFalse(example.isDisabled());
+
+		Run defaults = SettingsComparisonIT.defaults.get(example.toString());
+		if (defaults == null) {
+			defaults = SettingsComparisonIT.verify(example);
+			SettingsComparisonIT.defaults.put(example.toString(), defaults);
+		}
+
+		setting.apply();
+		AVerifier.resetRungsReached();
+		Run run = SettingsComparisonIT.verify(example);
+
+		long[] t = totals.computeIfAbsent(setting, s -> new long[3]);
+		t[0] += defaults.nanos;
+		t[1] += run.nanos;
+		if (!run.result.equals(defaults.result)) {
+			t[2]++;
+		}
+		logger.info("Runtime: {} in {}ms with the defaults ({}, {} iterations), {}ms with {} ({}, {} iterations)",
+				example, defaults.nanos / 1000000, defaults.result, defaults.iterations, run.nanos / 1000000, setting,
+				run.result, run.iterations);
+
+		if (run.result.isSafe) {
+			Assertions.assertTrue(example.expected.isSafe,
+					"UNSOUND with " + setting + ": " + run.result.getDegradations());
+		}
+		if (setting.precise) {
+			Assertions.assertEquals(defaults.result, run.result);
+		}
+		setting.check(example, defaults, run);
+	}
+
+	/**
+	 * Verify an example like {@link Runner#verify}, but keep the verifier to read
+	 * its counters
+	 */
+	private static Run verify(VerificationTestCase example) {
+		long startTime = System.nanoTime();
+		Deadline deadline = Runner.newDeadline();
+		AVerifier v = new Verifier(SootHelper.loadClassAndAnalyze(example.getTestClass()));
+		v.setDeadline(deadline);
+		VerificationResult result = new VerificationResult(v.check(example.verificationProperty),
+				v.getDegradations());
+		return new Run(result, System.nanoTime() - startTime, v.getFlowThroughCalls(), v.getConstrainedAtJoins());
+	}
+
+}
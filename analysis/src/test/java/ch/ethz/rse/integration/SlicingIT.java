@@ -0,0 +1,97 @@
+package ch.ethz.rse.integration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.numerical.PropertySlice;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.utils.Constants;
+import soot.Body;
+import soot.IntType;
+import soot.Local;
+import soot.SootClass;
+import soot.SootHelper;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+/**
+ * Checks {@link PropertySlice} on an example whose locals partly never reach a
+ * sell or a branch: the slice must drop them and keep the sell argument (that
+ * the verdicts are unchanged is checked by {@link SettingsComparisonIT})
+ */
+public class SlicingIT {
+
+	private static final Logger logger = LoggerFactory.getLogger(SlicingIT.class);
+
+	private static final String EXAMPLE = "ch.ethz.rse.integration.tests.slicing.Slice_IrrelevantLocals";
+
+	public static List<VerificationTestCase> getTests() {
+		List<VerificationTestCase> ret = new ArrayList<VerificationTestCase>();
+		for (VerificationProperty p : VerificationProperty.values()) {
+			ret.add(new VerificationTestCase(EXAMPLE, p, true));
+		}
+		return ret;
+	}
+
+	@AfterEach
+	public void restoreDefault() {
+		PropertySlice.setEnabled(false);
+	}
+
+	@ParameterizedTest(name = "{index}: {0}")
+	@MethodSource("getTests")
+	void testSliceDropsIrrelevantLocals(VerificationTestCase example) {
+		PropertySlice.setEnabled(true);
+		SootClass c = SootHelper.loadClass(example.getTestClass());
+		SootMethod m = c.getMethodByName("m");
+		Body body = m.getActiveBody();
+		// n only flows into sum and scaled
+		Local n = body.getParameterLocal(0);
+
+		PropertySlice slice = PropertySlice.of(m, example.verificationProperty);
+		Assertions.assertFalse(slice.contains(n.getName()));
+		Assertions.assertTrue(slice.contains(SlicingIT.getSellArgument(body).getName()));
+		Assertions.assertEquals(example.verificationProperty == VerificationProperty.OVERALL_PROFIT,
+				slice.tracksProfit());
+
+		int ints = 0;
+		int tracked = 0;
+		for (Local l : body.getLocals()) {
+			if (l.getType() instanceof IntType) {
+				ints++;
+				if (slice.contains(l.getName())) {
+					tracked++;
+				}
+			}
+		}
+		logger.info("{}: slice tracks {} of {} int locals", example, tracked, ints);
+		Assertions.assertTrue(tracked < ints);
+
+		PropertySlice.setEnabled(false);
+		Assertions.assertTrue(PropertySlice.of(m, example.verificationProperty).contains(n.getName()));
+	}
+
+	private static Local getSellArgument(Body body) {
+		for (Unit unit : body.getUnits()) {
+			Stmt s = (Stmt) unit;
+			if (s.containsInvokeExpr()) {
+				InvokeExpr invokeExpr = s.getInvokeExpr();
+				if (invokeExpr.getMethod().getName().equals(Constants.sellFunctionName)) {
+					return (Local) invokeExpr.getArg(0);
+				}
+			}
+		}
+		throw new IllegalStateException("No sell in " + body.getMethod().getName());
+	}
+
+}
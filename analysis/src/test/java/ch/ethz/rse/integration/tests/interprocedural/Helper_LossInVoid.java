@@ -0,0 +1,21 @@
+package ch.ethz.rse.integration.tests.interprocedural;
+
+import ch.ethz.rse.Frog;
+
+// expected results (with --interprocedural):
+// NON_NEGATIVE SAFE
+// ITEM_PROFIT UNSAFE
+// OVERALL_PROFIT SAFE
+public class Helper_LossInVoid {
+
+    public void m() {
+      Frog frog = new Frog(1);
+      frog.sell(20);
+      sellAtLoss();
+    }
+
+    private void sellAtLoss() {
+      Frog frog = new Frog(5);
+      frog.sell(3);
+    }
+  }
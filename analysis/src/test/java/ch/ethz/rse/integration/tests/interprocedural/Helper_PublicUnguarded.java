@@ -0,0 +1,22 @@
+package ch.ethz.rse.integration.tests.interprocedural;
+
+import ch.ethz.rse.Frog;
+
+// expected results (with --interprocedural):
+// NON_NEGATIVE UNSAFE
+// ITEM_PROFIT UNSAFE
+// OVERALL_PROFIT UNSAFE
+public class Helper_PublicUnguarded {
+
+    public void run() {
+      for (int n = 1; n <= 5; n++) {
+        sellOne(n);
+      }
+    }
+
+    // safe for the calls of run, but may be called with any price
+    public void sellOne(int price) {
+      Frog frog = new Frog(1);
+      frog.sell(price);
+    }
+  }
@@ -0,0 +1,28 @@
+package ch.ethz.rse.integration.tests.interprocedural;
+
+import ch.ethz.rse.Frog;
+
+// expected results (with --interprocedural):
+// NON_NEGATIVE SAFE
+// ITEM_PROFIT SAFE
+// OVERALL_PROFIT SAFE
+public class Helper_Safe {
+
+    public void m() {
+      int price = bonus(3);
+      Frog frog = new Frog(4);
+      frog.sell(price);
+      sellOne(6);
+    }
+
+    private static int bonus(int x) {
+      return x + 2;
+    }
+
+    private void sellOne(int price) {
+      if (price >= 5) {
+        Frog frog = new Frog(5);
+        frog.sell(price);
+      }
+    }
+  }
@@ -0,0 +1,21 @@
+package ch.ethz.rse.integration.tests.interprocedural;
+
+import ch.ethz.rse.Frog;
+
+// expected results (with --interprocedural):
+// NON_NEGATIVE SAFE
+// ITEM_PROFIT SAFE
+// OVERALL_PROFIT SAFE
+public class Helper_Unguarded {
+
+    public void m() {
+      Frog frog = new Frog(4);
+      frog.sell(4);
+      sellOne(6);
+    }
+
+    private void sellOne(int price) {
+      Frog frog = new Frog(5);
+      frog.sell(price);
+    }
+  }
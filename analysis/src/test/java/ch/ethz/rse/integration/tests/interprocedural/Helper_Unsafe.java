@@ -0,0 +1,26 @@
+package ch.ethz.rse.integration.tests.interprocedural;
+
+import ch.ethz.rse.Frog;
+
+// expected results (with --interprocedural):
+// NON_NEGATIVE UNSAFE
+// ITEM_PROFIT UNSAFE
+// OVERALL_PROFIT UNSAFE
+public class Helper_Unsafe {
+
+    public void m() {
+      Frog frog = new Frog(4);
+      int price = discount(3);
+      frog.sell(price);
+      sellAtLoss();
+    }
+
+    private static int discount(int x) {
+      return x - 5;
+    }
+
+    private void sellAtLoss() {
+      Frog frog = new Frog(10);
+      frog.sell(1);
+    }
+  }
@@ -0,0 +1,21 @@
+package ch.ethz.rse.integration.tests.pointer;
+
+import ch.ethz.rse.Frog;
+
+// Frogs reaching sell only through a field (used by PointsToBenchmarkIT)
+public class Frog_ThroughField {
+
+	private Frog stored;
+
+	public void m() {
+		store();
+		Frog frog = this.stored;
+		frog.sell(2);
+		Frog other = new Frog(3);
+		other.sell(4);
+	}
+
+	private void store() {
+		this.stored = new Frog(6);
+	}
+}
@@ -0,0 +1,18 @@
+package ch.ethz.rse.integration.tests.pointer;
+
+import ch.ethz.rse.Frog;
+
+// Frogs reaching sell only through return values (used by PointsToBenchmarkIT)
+public class Frog_ThroughReturn {
+
+	public void m() {
+		Frog cheap = make();
+		cheap.sell(2);
+		Frog other = new Frog(3);
+		other.sell(4);
+	}
+
+	private Frog make() {
+		return new Frog(6);
+	}
+}
@@ -0,0 +1,22 @@
+package ch.ethz.rse.integration.tests.slicing;
+
+import ch.ethz.rse.Frog;
+
+// expected results:
+// NON_NEGATIVE SAFE
+// ITEM_PROFIT SAFE
+// OVERALL_PROFIT SAFE
+public class Slice_IrrelevantLocals {
+
+	public void m(int n) {
+		Frog frog = new Frog(2);
+		int sum = 0;
+		int scaled = n * 3;
+		for (int i = 2; i < 6; i++) {
+			// sum and scaled never reach a sell or a branch
+			sum = sum + scaled;
+			scaled = scaled - i;
+			frog.sell(i);
+		}
+	}
+}
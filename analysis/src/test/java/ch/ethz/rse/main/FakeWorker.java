@@ -0,0 +1,52 @@
+package ch.ethz.rse.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Stands in for a {@link VerificationDaemon} in {@link WorkerPoolTest}, without
+ * loading Soot. Understands the requests <code>echo x</code> (answers
+ * <code>x@id</code>, where id identifies this process), <code>sleep ms</code>,
+ * <code>hang</code>, <code>crash</code> (exits) and
+ * {@link VerificationDaemon#SHUTDOWN}. Other requests are answered with
+ * {@link Constants#crash}, like a task whose analysis threw.
+ */
+public class FakeWorker {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String id = UUID.randomUUID().toString();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] parts = line.trim().split("\\s+", 2);
+			switch (parts[0]) {
+			case VerificationDaemon.SHUTDOWN:
+				return;
+			case "crash":
+				System.exit(1);
+				break;
+			case "hang":
+				Thread.sleep(Long.MAX_VALUE);
+				break;
+			case "sleep":
+				Thread.sleep(Long.parseLong(parts[1]));
+				System.out.println(Constants.finalOutput + parts[1] + "@" + id);
+				break;
+			case "echo":
+				// console output that is not an answer
+				System.out.println("received " + line);
+				System.out.println(Constants.finalOutput + parts[1] + "@" + id);
+				break;
+			default:
+				System.out.println(Constants.finalOutput + Constants.crash);
+			}
+			System.out.flush();
+		}
+	}
+
+}
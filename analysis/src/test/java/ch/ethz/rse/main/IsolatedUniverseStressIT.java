@@ -0,0 +1,73 @@
+package ch.ethz.rse.main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.testing.VerificationTestCaseCollector;
+
+/**
+ * Verifies all examples concurrently in several {@link IsolatedUniverse}s and
+ * checks that the results match sequential verification
+ */
+public class IsolatedUniverseStressIT {
+
+	private static final int UNIVERSES = 4;
+
+	private static final int ROUNDS = 3;
+
+	@Test
+	public void universesAreIsolated() throws Exception {
+		try (IsolatedUniverse a = new IsolatedUniverse(); IsolatedUniverse b = new IsolatedUniverse()) {
+			Class<?> gA = a.loadClass("soot.G");
+			Class<?> gB = b.loadClass("soot.G");
+			Assertions.assertNotSame(gA, gB);
+			Assertions.assertNotSame(soot.G.class, gA);
+			Assertions.assertNotSame(gA.getMethod("v").invoke(null), gB.getMethod("v").invoke(null));
+
+			// native managers are shared
+			Assertions.assertSame(a.loadClass("apron.Manager"), b.loadClass("apron.Manager"));
+			Assertions.assertSame(a.loadClass("ch.ethz.rse.numerical.ManagerPool"),
+					b.loadClass("ch.ethz.rse.numerical.ManagerPool"));
+		}
+	}
+
+	@Test
+	public void concurrentResultsMatchSequential() throws IOException {
+		List<VerificationTestCase> tests = VerificationTestCaseCollector.getTests();
+
+		List<String> expected = new ArrayList<String>();
+		for (VerificationTestCase t : tests) {
+			expected.add(Runner.verifyOrCrash(t.getVerificationTask()));
+		}
+
+		// repeat and shuffle the tasks, so that each universe sees different
+		// classes concurrently with the others
+		List<Integer> order = new ArrayList<Integer>();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int i = 0; i < tests.size(); i++) {
+				order.add(i);
+			}
+		}
+		Collections.shuffle(order, new Random(42));
+		List<VerificationTask> tasks = new ArrayList<VerificationTask>();
+		for (int i : order) {
+			tasks.add(tests.get(i).getVerificationTask());
+		}
+
+		List<String> actual = Runner.verifyIsolated(tasks, UNIVERSES);
+
+		Assertions.assertEquals(tasks.size(), actual.size());
+		for (int i = 0; i < order.size(); i++) {
+			Assertions.assertEquals(expected.get(order.get(i)), actual.get(i), tests.get(order.get(i)).toString());
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package ch.ethz.rse.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+
+/**
+ * Checks that the {@link ResultStore} persists results and tolerates
+ * concurrent writers and torn records
+ */
+public class ResultStoreTest {
+
+	private static final String HASH_A = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+	private static final String HASH_B = "ffeeddccbbaa99887766554433221100ffeeddccbbaa99887766554433221100";
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void testStoreAndReopen() throws IOException {
+		File file = new File(this.dir, "results");
+		try (ResultStore store = new ResultStore(file)) {
+			Assertions.assertNull(store.lookup(HASH_A, VerificationProperty.NON_NEGATIVE, 1));
+			store.store(HASH_A, VerificationProperty.NON_NEGATIVE, 1, new VerificationResult(true));
+			store.store(HASH_A, VerificationProperty.ITEM_PROFIT, 1, new VerificationResult(false));
+			Assertions.assertEquals(new VerificationResult(true),
+					store.lookup(HASH_A, VerificationProperty.NON_NEGATIVE, 1));
+		}
+		try (ResultStore store = new ResultStore(file)) {
+			Assertions.assertEquals(new VerificationResult(true),
+					store.lookup(HASH_A, VerificationProperty.NON_NEGATIVE, 1));
+			Assertions.assertEquals(new VerificationResult(false),
+					store.lookup(HASH_A, VerificationProperty.ITEM_PROFIT, 1));
+			// different configuration, class, or property
+			Assertions.assertNull(store.lookup(HASH_A, VerificationProperty.NON_NEGATIVE, 2));
+			Assertions.assertNull(store.lookup(HASH_B, VerificationProperty.NON_NEGATIVE, 1));
+			Assertions.assertNull(store.lookup(HASH_A, VerificationProperty.OVERALL_PROFIT, 1));
+		}
+	}
+
+	@Test
+	public void testSeesOtherWriters() throws IOException {
+		File file = new File(this.dir, "results");
+		try (ResultStore reader = new ResultStore(file); ResultStore writer = new ResultStore(file)) {
+			Assertions.assertNull(reader.lookup(HASH_B, VerificationProperty.OVERALL_PROFIT, 7));
+			writer.store(HASH_B, VerificationProperty.OVERALL_PROFIT, 7, new VerificationResult(true));
+			Assertions.assertEquals(new VerificationResult(true),
+					reader.lookup(HASH_B, VerificationProperty.OVERALL_PROFIT, 7));
+		}
+	}
+
+	@Test
+	public void testTornRecordsAreIgnored() throws IOException {
+		File file = new File(this.dir, "results");
+		try (ResultStore store = new ResultStore(file)) {
+			store.store(HASH_A, VerificationProperty.NON_NEGATIVE, 1, new VerificationResult(true));
+			store.store(HASH_B, VerificationProperty.NON_NEGATIVE, 1, new VerificationResult(true));
+		}
+		try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+			// corrupt the result of the last record
+			f.seek(f.length() - 6);
+			f.write(0);
+			// simulate a crash while appending
+			f.seek(f.length());
+			f.write(new byte[] { 1, 2, 3 });
+		}
+		try (ResultStore store = new ResultStore(file)) {
+			Assertions.assertEquals(new VerificationResult(true),
+					store.lookup(HASH_A, VerificationProperty.NON_NEGATIVE, 1));
+			Assertions.assertNull(store.lookup(HASH_B, VerificationProperty.NON_NEGATIVE, 1));
+
+			store.store(HASH_B, VerificationProperty.ITEM_PROFIT, 1, new VerificationResult(false));
+		}
+		try (ResultStore store = new ResultStore(file)) {
+			Assertions.assertEquals(new VerificationResult(false),
+					store.lookup(HASH_B, VerificationProperty.ITEM_PROFIT, 1));
+		}
+	}
+
+}
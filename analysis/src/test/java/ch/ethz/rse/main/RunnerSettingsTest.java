@@ -0,0 +1,55 @@
+package ch.ethz.rse.main;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.numerical.AnalysisConfiguration;
+import ch.ethz.rse.numerical.NumericalDomain;
+import ch.ethz.rse.numerical.VariablePacks;
+import ch.ethz.rse.pointer.PointsToInitializer;
+import ch.ethz.rse.pointer.PointsToMode;
+
+/**
+ * Checks that {@link Runner#applySettings(String)} restores every setting
+ * exported by {@link Runner#exportSettings()}, as needed to configure an
+ * {@link IsolatedUniverse}
+ */
+public class RunnerSettingsTest {
+
+	private String original;
+
+	@BeforeEach
+	public void save() {
+		this.original = Runner.exportSettings();
+	}
+
+	@AfterEach
+	public void restore() {
+		Runner.applySettings(this.original);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		VariablePacks.setEnabled(!VariablePacks.isEnabled());
+		PointsToInitializer.setMode(PointsToMode.TYPE_BASED);
+		AnalysisConfiguration.setDomain(VerificationProperty.ITEM_PROFIT, NumericalDomain.OCTAGON);
+		Runner.setBudget(1234);
+		String changed = Runner.exportSettings();
+		Assertions.assertNotEquals(this.original, changed);
+
+		Runner.applySettings(this.original);
+		Assertions.assertEquals(this.original, Runner.exportSettings());
+
+		Runner.applySettings(changed);
+		Assertions.assertEquals(changed, Runner.exportSettings());
+	}
+
+	@Test
+	public void testRejectsUnknownSettings() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> Runner.applySettings("noSuchSetting=true"));
+	}
+
+}
@@ -0,0 +1,130 @@
+package ch.ethz.rse.main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Checks that the {@link VerificationDaemon} answers requests and rejects those
+ * sent with other settings, and that the {@link VerificationClient} round-trips
+ * a task or gives up on missing daemons
+ */
+public class VerificationDaemonTest {
+
+	private static final String EXAMPLE = "ch.ethz.rse.integration.tests.Basic_Test_Safe";
+
+	private static String serve(String requests) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VerificationDaemon.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out);
+		return out.toString(StandardCharsets.UTF_8.name());
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@Test
+	public void testRejectsMalformedRequests() {
+		Assertions.assertEquals(Constants.crash, VerificationDaemon.process(EXAMPLE));
+		Assertions.assertEquals(Constants.crash, VerificationDaemon.process(EXAMPLE + " NO_SUCH_PROPERTY"));
+		Assertions.assertEquals(Constants.crash, VerificationDaemon.process("a b c d"));
+	}
+
+	@Test
+	public void testRejectsOtherSettings() throws IOException {
+		String answer = serve(EXAMPLE + " NON_NEGATIVE other-settings\n");
+		Assertions.assertEquals(VerificationDaemon.SETTINGS_MISMATCH + Runner.describeSettings(), answer.trim());
+	}
+
+	@Test
+	public void testStopsOnShutdown() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		String requests = "\n" + VerificationDaemon.SHUTDOWN + "\n" + EXAMPLE + " NON_NEGATIVE\n";
+		Assertions.assertFalse(
+				VerificationDaemon.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out));
+		Assertions.assertEquals(0, out.size());
+		Assertions.assertTrue(VerificationDaemon.serve(new ByteArrayInputStream(new byte[0]), out));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		int port = freePort();
+		Thread daemon = new Thread(() -> {
+			try {
+				VerificationDaemon.listen(port);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		daemon.start();
+		try {
+			VerificationTask t = new VerificationTask(EXAMPLE, VerificationProperty.NON_NEGATIVE);
+			String output = null;
+			for (int i = 0; i < 50 && output == null; i++) {
+				// retry until the daemon listens
+				output = VerificationClient.tryVerify(port, t, 60000);
+				if (output == null) {
+					Thread.sleep(100);
+				}
+			}
+			Assertions.assertEquals(Constants.safe, output);
+		} finally {
+			try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+				socket.getOutputStream().write((VerificationDaemon.SHUTDOWN + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			daemon.join(10000);
+		}
+		Assertions.assertFalse(daemon.isAlive());
+	}
+
+	@Test
+	public void testFallsBackWithoutDaemon() throws IOException {
+		VerificationTask t = new VerificationTask(EXAMPLE, VerificationProperty.NON_NEGATIVE);
+		// connection refused
+		Assertions.assertNull(VerificationClient.tryVerify(freePort(), t, 1000));
+		// no time left
+		Assertions.assertNull(VerificationClient.tryVerify(freePort(), t, 0));
+	}
+
+	@Test
+	public void testTimeoutLeavesTimeForLocalRun() {
+		int timeout = VerificationClient.getDaemonTimeout();
+		Assertions.assertTrue(timeout >= 0);
+		Assertions.assertTrue(timeout <= VerificationClient.RUN_TIMEOUT_MILLIS / 3);
+	}
+
+	@Test
+	public void testValidPorts() {
+		Assertions.assertTrue(VerificationClient.isValidPort(1));
+		Assertions.assertTrue(VerificationClient.isValidPort(65535));
+		Assertions.assertFalse(VerificationClient.isValidPort(0));
+		Assertions.assertFalse(VerificationClient.isValidPort(-1));
+		Assertions.assertFalse(VerificationClient.isValidPort(65536));
+	}
+
+	@Test
+	public void testPortFromEnvironment() {
+		String value = System.getenv(VerificationClient.PORT_VARIABLE);
+		Integer port = VerificationClient.getPortFromEnvironment();
+		if (value == null || value.isEmpty()) {
+			Assertions.assertNull(port);
+		} else if (port != null) {
+			Assertions.assertEquals(value, port.toString());
+			Assertions.assertTrue(VerificationClient.isValidPort(port));
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package ch.ethz.rse.main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.rse.utils.Constants;
+
+/**
+ * Checks that the {@link WorkerPool} keeps the order of the tasks, balances
+ * them between workers, and replaces workers that time out or crash (but not
+ * those reporting a crashed task). Workers run {@link FakeWorker}.
+ */
+public class WorkerPoolTest {
+
+	private static WorkerPool pool(int size, long timeoutMillis) {
+		return new WorkerPool(size, timeoutMillis, "64M", Collections.<String>emptyList()) {
+			@Override
+			List<String> workerCommand() {
+				String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+				return Arrays.asList(java, "-Xmx64M", "-cp", System.getProperty("java.class.path"),
+						FakeWorker.class.getName());
+			}
+		};
+	}
+
+	private static String payload(String result) {
+		return result.substring(0, result.indexOf('@'));
+	}
+
+	private static String worker(String result) {
+		return result.substring(result.indexOf('@') + 1);
+	}
+
+	@Test
+	public void testKeepsOrder() {
+		List<String> requests = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			requests.add("echo " + i);
+		}
+		List<String> results = pool(3, 10000).verifyRequests(requests);
+		Assertions.assertEquals(requests.size(), results.size());
+		for (int i = 0; i < 10; i++) {
+			Assertions.assertEquals(Integer.toString(i), payload(results.get(i)));
+		}
+	}
+
+	@Test
+	public void testStealsFromBusyWorker() {
+		// round-robin: worker 0 gets tasks 0 and 2, worker 1 gets tasks 1 and 3
+		List<String> results = pool(2, 20000).verifyRequests(Arrays.asList("sleep 3000", "echo a", "echo b", "echo c"));
+		Assertions.assertEquals("3000", payload(results.get(0)));
+		Assertions.assertEquals("b", payload(results.get(2)));
+		Assertions.assertNotEquals(worker(results.get(0)), worker(results.get(2)));
+		Assertions.assertEquals(worker(results.get(1)), worker(results.get(2)));
+	}
+
+	@Test
+	public void testRestartsAfterTimeout() {
+		List<String> results = pool(1, 1000).verifyRequests(Arrays.asList("echo a", "hang", "echo b"));
+		Assertions.assertEquals("a", payload(results.get(0)));
+		Assertions.assertEquals(Constants.timeout, results.get(1));
+		Assertions.assertEquals("b", payload(results.get(2)));
+		Assertions.assertNotEquals(worker(results.get(0)), worker(results.get(2)));
+	}
+
+	@Test
+	public void testRestartsAfterCrash() {
+		List<String> results = pool(1, 10000).verifyRequests(Arrays.asList("echo a", "crash", "echo b"));
+		Assertions.assertEquals("a", payload(results.get(0)));
+		Assertions.assertEquals(Constants.crash, results.get(1));
+		Assertions.assertEquals("b", payload(results.get(2)));
+		Assertions.assertNotEquals(worker(results.get(0)), worker(results.get(2)));
+	}
+
+	@Test
+	public void testKeepsWorkerAfterReportedCrash() {
+		List<String> results = pool(1, 10000).verifyRequests(Arrays.asList("echo a", "fail", "echo b"));
+		Assertions.assertEquals("a", payload(results.get(0)));
+		Assertions.assertEquals(Constants.crash, results.get(1));
+		Assertions.assertEquals("b", payload(results.get(2)));
+		Assertions.assertEquals(worker(results.get(0)), worker(results.get(2)));
+	}
+
+	@Test
+	public void testWorkerFailingToStart() {
+		WorkerPool pool = new WorkerPool(2, 10000, "64M", Collections.<String>emptyList()) {
+			@Override
+			List<String> workerCommand() {
+				return Arrays.asList(new File("does-not-exist").getAbsolutePath());
+			}
+		};
+		List<String> results = pool.verifyRequests(Arrays.asList("echo a", "echo b", "echo c"));
+		Assertions.assertEquals(Arrays.asList(Constants.crash, Constants.crash, Constants.crash), results);
+	}
+
+}
@@ -0,0 +1,43 @@
+package ch.ethz.rse.pointer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class InitializerSetTest {
+
+	private static List<Integer> members(InitializerSet s) {
+		List<Integer> ret = new ArrayList<Integer>();
+		for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1)) {
+			ret.add(i);
+		}
+		return ret;
+	}
+
+	@Test
+	public void testMembers() {
+		InitializerSet s = InitializerSet.of(3, 0, 64, 130);
+		Assertions.assertEquals(Arrays.asList(0, 3, 64, 130), members(s));
+		Assertions.assertEquals(4, s.size());
+		Assertions.assertEquals("{0, 3, 64, 130}", s.toString());
+	}
+
+	@Test
+	public void testEmpty() {
+		Assertions.assertTrue(InitializerSet.of().isEmpty());
+		Assertions.assertEquals(InitializerSet.EMPTY, InitializerSet.of());
+		Assertions.assertEquals(-1, InitializerSet.EMPTY.nextSetBit(0));
+		Assertions.assertEquals(0, InitializerSet.EMPTY.size());
+	}
+
+	@Test
+	public void testEquality() {
+		Assertions.assertEquals(InitializerSet.of(1, 2, 70), InitializerSet.of(70, 2, 1, 2));
+		Assertions.assertEquals(InitializerSet.of(1, 2, 70).hashCode(), InitializerSet.of(70, 2, 1, 2).hashCode());
+		Assertions.assertNotEquals(InitializerSet.of(1), InitializerSet.of(1, 70));
+	}
+
+}
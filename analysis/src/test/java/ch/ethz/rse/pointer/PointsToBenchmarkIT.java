@@ -0,0 +1,163 @@
+package ch.ethz.rse.pointer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationTask;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.testing.VerificationTestCaseCollector;
+import ch.ethz.rse.verify.ClassToVerify;
+import soot.Local;
+import soot.SootClass;
+import soot.SootHelper;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.internal.JInvokeStmt;
+import soot.jimple.internal.JVirtualInvokeExpr;
+
+/**
+ * Compares runtime, memory and results of all {@link PointsToMode}s on all
+ * examples, using SPARK as the reference. Every mode must be sound (include the
+ * targets found by SPARK). Except for the type-based mode, modes must also be
+ * as precise as SPARK on the collected examples, where Frogs never leave the
+ * method allocating them.
+ */
+public class PointsToBenchmarkIT {
+
+	private static final Logger logger = LoggerFactory.getLogger(PointsToBenchmarkIT.class);
+
+	/**
+	 * Examples passing Frogs between methods, where the intraprocedural mode is
+	 * expected to be coarser
+	 */
+	private static final List<String> INTERPROCEDURAL = Arrays.asList(
+			"ch.ethz.rse.integration.tests.interprocedural.Helper_Safe",
+			"ch.ethz.rse.integration.tests.interprocedural.Helper_Unsafe",
+			"ch.ethz.rse.integration.tests.interprocedural.Helper_Unguarded",
+			"ch.ethz.rse.integration.tests.interprocedural.Helper_LossInVoid",
+			"ch.ethz.rse.integration.tests.interprocedural.Helper_PublicUnguarded",
+			"ch.ethz.rse.integration.tests.pointer.Frog_ThroughReturn",
+			"ch.ethz.rse.integration.tests.pointer.Frog_ThroughField");
+
+	@Test
+	public void compareWithSpark() throws IOException {
+		Set<String> packageNames = new LinkedHashSet<String>();
+		List<ClassToVerify> classes = new ArrayList<ClassToVerify>();
+		for (VerificationTestCase t : VerificationTestCaseCollector.getTests()) {
+			if (packageNames.add(t.getTestClass().getPackageName())) {
+				classes.add(t.getTestClass());
+			}
+		}
+		int collected = classes.size();
+		for (String packageName : INTERPROCEDURAL) {
+			classes.add(new VerificationTask(packageName, VerificationProperty.NON_NEGATIVE).getTestClass());
+		}
+
+		Map<PointsToMode, Long> totalTime = new EnumMap<PointsToMode, Long>(PointsToMode.class);
+		Map<PointsToMode, Integer> totalDifferences = new EnumMap<PointsToMode, Integer>(PointsToMode.class);
+		for (PointsToMode mode : PointsToMode.values()) {
+			totalTime.put(mode, 0L);
+			totalDifferences.put(mode, 0);
+		}
+		for (int k = 0; k < classes.size(); k++) {
+			ClassToVerify c = classes.get(k);
+			TreeMap<String, Set<String>> expected = null;
+			for (PointsToMode mode : PointsToMode.values()) {
+				// fresh scene, so that SPARK profiles do not see each other's results
+				SootClass sc = SootHelper.loadClass(c);
+				long usedBefore = PointsToBenchmarkIT.getUsedMemory();
+
+				long startTime = System.nanoTime();
+				if (mode.requiresSpark()) {
+					SootHelper.runPointsToAnalysis(mode);
+				}
+				PointsToInitializer pointsTo = new PointsToInitializer(sc, mode);
+				long time = System.nanoTime() - startTime;
+
+				long memory = PointsToBenchmarkIT.getUsedMemory() - usedBefore;
+				TreeMap<String, Set<String>> actual = PointsToBenchmarkIT.getSellTargets(sc, pointsTo);
+				if (expected == null) {
+					expected = actual;
+				}
+				int differences = 0;
+				for (Map.Entry<String, Set<String>> e : expected.entrySet()) {
+					if (!e.getValue().equals(actual.get(e.getKey()))) {
+						logger.info("{} {} at {}: expected {}, got {}", c, mode, e.getKey(), e.getValue(),
+								actual.get(e.getKey()));
+						differences++;
+						Assertions.assertTrue(actual.get(e.getKey()).containsAll(e.getValue()),
+								c + " " + mode + " misses targets at " + e.getKey());
+					}
+				}
+				logger.info("Runtime: Points-to analysis ({}) of {} in {}ms, using {}KB, {} of {} sell targets differ",
+						mode, c, time / 1000000, memory / 1024, differences, expected.size());
+				totalTime.put(mode, totalTime.get(mode) + time);
+				totalDifferences.put(mode, totalDifferences.get(mode) + differences);
+
+				if (mode != PointsToMode.TYPE_BASED && k < collected) {
+					// type-based results (and intraprocedural results across
+					// methods) are expected to be coarser
+					Assertions.assertEquals(expected, actual, c + " " + mode);
+				}
+			}
+		}
+		for (PointsToMode mode : PointsToMode.values()) {
+			logger.info("Runtime: Points-to analysis ({}) of {} classes in {}ms, {} sell targets differ", mode,
+					classes.size(), totalTime.get(mode) / 1000000, totalDifferences.get(mode));
+		}
+	}
+
+	/**
+	 * 
+	 * @return heap memory in use after a garbage collection (approximately)
+	 */
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * 
+	 * @return for each sell call (by method and position), the initializers its
+	 *         receiver may point to
+	 */
+	private static TreeMap<String, Set<String>> getSellTargets(SootClass sc, PointsToInitializer pointsTo) {
+		TreeMap<String, Set<String>> ret = new TreeMap<String, Set<String>>();
+		for (SootMethod method : sc.getMethods()) {
+			int position = 0;
+			for (Unit unit : method.getActiveBody().getUnits()) {
+				position++;
+				if (!(unit instanceof JInvokeStmt)) {
+					continue;
+				}
+				InvokeExpr expr = ((JInvokeStmt) unit).getInvokeExpr();
+				if (expr instanceof JVirtualInvokeExpr) {
+					Local base = (Local) ((JVirtualInvokeExpr) expr).getBase();
+					Set<String> targets = new TreeSet<String>();
+					for (FrogInitializer i : pointsTo.pointsTo(base)) {
+						targets.add(i.toString() + "(" + i.argument + ")");
+					}
+					ret.put(method.getName() + ":" + position, targets);
+				}
+			}
+		}
+		return ret;
+	}
+
+}
@@ -0,0 +1,35 @@
+package ch.ethz.rse.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+
+	@Test
+	public void testNone() {
+		Assertions.assertFalse(Deadline.NONE.isExpired());
+		Assertions.assertEquals(0, Deadline.NONE.elapsedFraction());
+		Assertions.assertSame(Deadline.NONE, Deadline.NONE.share(0.5));
+	}
+
+	@Test
+	public void testExpires() throws InterruptedException {
+		Deadline d = Deadline.after(20);
+		Assertions.assertFalse(d.isExpired());
+		Thread.sleep(30);
+		Assertions.assertTrue(d.isExpired());
+		Assertions.assertTrue(d.elapsedFraction() >= 1);
+		Assertions.assertEquals(0, d.remainingMillis());
+		// no time left to share
+		Assertions.assertTrue(d.share(0.5).isExpired());
+	}
+
+	@Test
+	public void testShare() {
+		Deadline d = Deadline.after(10000);
+		Deadline half = d.share(0.5);
+		Assertions.assertTrue(half.remainingMillis() <= 5000);
+		Assertions.assertTrue(half.remainingMillis() > 4000);
+	}
+
+}
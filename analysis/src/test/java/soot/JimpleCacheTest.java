@@ -0,0 +1,116 @@
+package soot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.verify.ClassToVerify;
+
+/**
+ * Checks that classes loaded from the {@link JimpleCache} match classes loaded
+ * from bytecode, and that broken entries are rebuilt
+ */
+public class JimpleCacheTest {
+
+	@TempDir
+	File cacheDir;
+
+	@AfterEach
+	public void restoreDefault() {
+		SootHelper.setJimpleCache(null);
+	}
+
+	private ClassToVerify getExampleClassToVerify() {
+		String packageName = "ch.ethz.rse.integration.tests.Basic_Test_Safe";
+		VerificationTestCase c = new VerificationTestCase(packageName, VerificationProperty.NON_NEGATIVE, true);
+		return c.getTestClass();
+	}
+
+	private static String getBodies(SootClass sc) {
+		StringBuilder ret = new StringBuilder();
+		for (SootMethod m : sc.getMethods()) {
+			ret.append(m.getSignature()).append('\n').append(m.getActiveBody()).append('\n');
+		}
+		return ret.toString();
+	}
+
+	@Test
+	public void testCacheHit() {
+		ClassToVerify c = this.getExampleClassToVerify();
+		String expected = JimpleCacheTest.getBodies(SootHelper.loadClass(c));
+
+		SootHelper.setJimpleCache(this.cacheDir);
+		SootHelper.loadClass(c);
+		JimpleCache cache = new JimpleCache(this.cacheDir);
+		Assertions.assertNotNull(cache.lookup(c));
+
+		String actual = JimpleCacheTest.getBodies(SootHelper.loadClass(c));
+		Assertions.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testClasspathModesAreSeparate() {
+		ClassToVerify c = this.getExampleClassToVerify();
+		SootHelper.setJimpleCache(this.cacheDir);
+		JimpleCache cache = new JimpleCache(this.cacheDir);
+		SootHelper.loadClass(c);
+
+		SootHelper.setMinimalClasspath(true);
+		try {
+			Assertions.assertNull(cache.lookup(c));
+			SootHelper.loadClass(c);
+			Assertions.assertNotNull(cache.lookup(c));
+		} finally {
+			SootHelper.setMinimalClasspath(false);
+		}
+		Assertions.assertNotNull(cache.lookup(c));
+	}
+
+	@Test
+	public void testCorruptedEntryIsRebuilt() throws IOException {
+		ClassToVerify c = this.getExampleClassToVerify();
+		SootHelper.setJimpleCache(this.cacheDir);
+		SootHelper.loadClass(c);
+
+		File entry = new JimpleCache(this.cacheDir).getEntry(c);
+		Assertions.assertTrue(entry.exists());
+		try (RandomAccessFile f = new RandomAccessFile(entry, "rw")) {
+			f.seek(f.length() - 1);
+			int last = f.read();
+			f.seek(f.length() - 1);
+			f.write(~last);
+		}
+		Assertions.assertNull(new JimpleCache(this.cacheDir).lookup(c));
+		Assertions.assertFalse(entry.exists());
+
+		SootClass sc = SootHelper.loadClass(c);
+		Assertions.assertEquals(2, sc.getMethods().size());
+		Assertions.assertNotNull(new JimpleCache(this.cacheDir).lookup(c));
+	}
+
+	@Test
+	public void testHugeLengthIsRejected() throws IOException {
+		ClassToVerify c = this.getExampleClassToVerify();
+		SootHelper.setJimpleCache(this.cacheDir);
+		SootHelper.loadClass(c);
+
+		File entry = new JimpleCache(this.cacheDir).getEntry(c);
+		Assertions.assertTrue(entry.exists());
+		try (RandomAccessFile f = new RandomAccessFile(entry, "rw")) {
+			// magic, version, loading, class name and checksum precede the length of
+			// the Jimple
+			f.seek(4 + 4 + 2 + JimpleCache.describeLoading().length() + 2 + c.getPackageName().length() + 8);
+			f.writeInt(Integer.MAX_VALUE);
+		}
+		Assertions.assertNull(new JimpleCache(this.cacheDir).lookup(c));
+		Assertions.assertFalse(entry.exists());
+	}
+
+}
@@ -0,0 +1,128 @@
+package soot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ethz.rse.VerificationProperty;
+import ch.ethz.rse.VerificationResult;
+import ch.ethz.rse.main.Runner;
+import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.testing.VerificationTestCaseCollector;
+import ch.ethz.rse.utils.Constants;
+import ch.ethz.rse.verify.ClassToVerify;
+
+/**
+ * Compares loading all examples with and without reusing the Soot Scene, and
+ * checks that a reused Scene reflects the replaced class
+ */
+public class SceneReuseBenchmarkIT {
+
+	private static final Logger logger = LoggerFactory.getLogger(SceneReuseBenchmarkIT.class);
+
+	@AfterEach
+	public void restoreDefault() {
+		SootHelper.setReuseScene(false);
+	}
+
+	@Test
+	public void benchmarkLoading() throws IOException {
+		List<ClassToVerify> classes = SceneReuseBenchmarkIT.getClasses();
+
+		long fresh = SceneReuseBenchmarkIT.timeLoading(classes, false);
+		long reused = SceneReuseBenchmarkIT.timeLoading(classes, true);
+
+		logger.info("Runtime: Loaded {} classes in {}ms with fresh Scenes ({}ms per task)", classes.size(), fresh,
+				fresh / classes.size());
+		logger.info("Runtime: Loaded {} classes in {}ms with reused Scene ({}ms per task)", classes.size(), reused,
+				reused / classes.size());
+	}
+
+	@Test
+	public void sameResults() throws IOException {
+		List<VerificationTestCase> tests = VerificationTestCaseCollector.getTests();
+
+		List<VerificationResult> fresh = new ArrayList<VerificationResult>();
+		SootHelper.setReuseScene(false);
+		for (VerificationTestCase t : tests) {
+			fresh.add(Runner.verify(t.getVerificationTask()));
+		}
+
+		SootHelper.setReuseScene(true);
+		for (int i = 0; i < tests.size(); i++) {
+			VerificationResult reused = Runner.verify(tests.get(i).getVerificationTask());
+			Assertions.assertEquals(fresh.get(i), reused, tests.get(i).toString());
+		}
+	}
+
+	@Test
+	public void hierarchiesFollowReplacedClass() {
+		ClassToVerify safe = new VerificationTestCase("ch.ethz.rse.integration.tests.Basic_Test_Safe",
+				VerificationProperty.NON_NEGATIVE, true).getTestClass();
+		ClassToVerify unsafe = new VerificationTestCase("ch.ethz.rse.integration.tests.Basic_Test_Unsafe",
+				VerificationProperty.NON_NEGATIVE, false).getTestClass();
+
+		SootHelper.setReuseScene(true);
+		ClassToVerify previous = null;
+		for (ClassToVerify c : new ClassToVerify[] { safe, unsafe, safe, unsafe }) {
+			SootClass sc = SootHelper.loadClassAndAnalyze(c);
+			SootClass object = Scene.v().getObjectType().getSootClass();
+
+			Collection<SootClass> fast = Scene.v().getOrMakeFastHierarchy().getSubclassesOf(object);
+			List<SootClass> active = Scene.v().getActiveHierarchy().getDirectSubclassesOf(object);
+			Assertions.assertTrue(fast.contains(sc), c.toString());
+			Assertions.assertTrue(active.contains(sc), c.toString());
+			Assertions.assertTrue(Scene.v().getOrMakeFastHierarchy().canStoreType(sc.getType(), object.getType()));
+			if (previous != null) {
+				for (SootClass sub : fast) {
+					Assertions.assertNotEquals(previous.getPackageName(), sub.getName());
+				}
+				for (SootClass sub : active) {
+					Assertions.assertNotEquals(previous.getPackageName(), sub.getName());
+				}
+			}
+			// Frog must still be found by its type after the swap
+			SootClass frog = Scene.v().getSootClass(Constants.FrogClassName);
+			Assertions.assertTrue(Scene.v().getOrMakeFastHierarchy().canStoreType(frog.getType(), object.getType()));
+			Assertions.assertFalse(Scene.v().getOrMakeFastHierarchy().canStoreType(sc.getType(), frog.getType()));
+			previous = c;
+		}
+	}
+
+	private static List<ClassToVerify> getClasses() throws IOException {
+		Set<String> names = new LinkedHashSet<String>();
+		List<ClassToVerify> classes = new ArrayList<ClassToVerify>();
+		for (VerificationTestCase t : VerificationTestCaseCollector.getTests()) {
+			if (names.add(t.getTestClass().getPackageName())) {
+				classes.add(t.getTestClass());
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * 
+	 * @return time in ms needed to load and run points-to analysis on all classes
+	 */
+	private static long timeLoading(List<ClassToVerify> classes, boolean reuse) {
+		SootHelper.setReuseScene(reuse);
+		// warm-up (and initial Scene when reusing)
+		SootHelper.loadClassAndAnalyze(classes.get(0));
+
+		long startTime = System.nanoTime();
+		for (ClassToVerify c : classes) {
+			SootHelper.loadClassAndAnalyze(c);
+		}
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+}
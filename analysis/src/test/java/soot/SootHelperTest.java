@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import ch.ethz.rse.VerificationProperty;
 import ch.ethz.rse.testing.VerificationTestCase;
+import ch.ethz.rse.utils.Constants;
 import ch.ethz.rse.verify.ClassToVerify;
 
 /**
@@ -39,6 +40,22 @@ public class SootHelperTest {
 		Assertions.assertNotNull(body);
 	}
 
+	@Test
+	public void testLoadMinimalClasspath() {
+		ClassToVerify c = this.getExampleClassToVerify();
+		SootHelper.setMinimalClasspath(true);
+		try {
+			SootClass sc = SootHelper.loadClass(c);
+			Assertions.assertEquals(2, sc.getMethods().size());
+
+			// Frog is loaded from bytecode, the Java library is not
+			Assertions.assertFalse(Scene.v().getSootClass(Constants.FrogClassName).isPhantom());
+			Assertions.assertTrue(Scene.v().getSootClass("java.lang.Object").isPhantom());
+		} finally {
+			SootHelper.setMinimalClasspath(false);
+		}
+	}
+
 	@Test
 	public void testLoadAndAnalyze() {
 		ClassToVerify c = this.getExampleClassToVerify();